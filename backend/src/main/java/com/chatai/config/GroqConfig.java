@@ -4,6 +4,9 @@ import lombok.Data;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
 
+import java.util.HashMap;
+import java.util.Map;
+
 @Data
 @Configuration
 @ConfigurationProperties(prefix = "groq")
@@ -13,4 +16,21 @@ public class GroqConfig {
     private String model;
     private Double temperature;
     private Integer maxTokens;
+    private Streaming streaming = new Streaming();
+    
+    @Data
+    public static class Streaming {
+        // Bytes of SSE frames merged into one flush at most
+        private int bufferSize = 8192;
+        // Coalescing window in milliseconds; 0 sends every upstream delta as its own frame
+        private long chunkDelay = 50;
+        // Per-model overrides of chunk-delay / buffer-size, keyed by public model id
+        private Map<String, Window> models = new HashMap<>();
+    }
+    
+    @Data
+    public static class Window {
+        private Long chunkDelay;
+        private Integer bufferSize;
+    }
 }
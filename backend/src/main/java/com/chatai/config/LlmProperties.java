@@ -0,0 +1,35 @@
+package com.chatai.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Additional LLM providers next to Groq (which keeps its own groq.* settings)
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "llm")
+public class LlmProperties {
+    
+    private Map<String, Provider> providers = new LinkedHashMap<>();
+    
+    @Data
+    public static class Provider {
+        // "openai" for any OpenAI-compatible server, "stub" for the in-process synthetic backend
+        private String type = "openai";
+        private String baseUrl;
+        private String chatPath = "/v1/chat/completions";
+        private String apiKey;
+        private boolean streamUsage = true;
+        private boolean reasoning = false;
+        
+        // Stub only
+        private int firstTokenDelayMs = 200;
+        private int tokensPerSecond = 50;
+        private int responseTokens = 200;
+    }
+}
@@ -2,8 +2,10 @@ package com.chatai.config;
 
 import com.chatai.security.AuthEntryPointJwt;
 import com.chatai.security.AuthTokenFilter;
+import com.chatai.security.BoundedPasswordEncoder;
 import com.chatai.security.CustomUserDetailsService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.authentication.AuthenticationManager;
@@ -15,7 +17,6 @@ import org.springframework.security.config.annotation.web.configuration.EnableWe
 import org.springframework.security.config.annotation.web.configurers.AbstractHttpConfigurer;
 import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 import org.springframework.web.cors.CorsConfiguration;
@@ -34,9 +35,22 @@ public class SecurityConfig {
     private final AuthEntryPointJwt unauthorizedHandler;
     private final AuthTokenFilter authTokenFilter;
     
+    @Value("${app.cors.allowed-origins:http://localhost:3000,http://127.0.0.1:3000}")
+    private String[] corsAllowedOrigins;
+    
+    @Value("${app.login-protection.hash-threads:2}")
+    private int hashThreads;
+    
+    @Value("${app.login-protection.hash-queue-capacity:64}")
+    private int hashQueueCapacity;
+    
+    @Value("${app.login-protection.hash-max-queue-ms:2000}")
+    private long hashMaxQueueMillis;
+    
+    // BCrypt runs on its own small pool so login storms cannot starve request threads
     @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+    public BoundedPasswordEncoder passwordEncoder() {
+        return new BoundedPasswordEncoder(new BCryptPasswordEncoder(), hashThreads, hashQueueCapacity, hashMaxQueueMillis);
     }
     
     @Bean
@@ -71,6 +85,7 @@ public class SecurityConfig {
                 // User endpoints
                 .requestMatchers("/api/chat/**").hasAnyRole("USER", "ADMIN")
                 .requestMatchers("/api/user/**").hasAnyRole("USER", "ADMIN")
+                .requestMatchers(WebSocketConfig.CHAT_PATH).hasAnyRole("USER", "ADMIN")
                 
                 // All other requests require authentication
                 .anyRequest().authenticated()
@@ -87,7 +102,7 @@ public class SecurityConfig {
         CorsConfiguration configuration = new CorsConfiguration();
         // Allow all origins for development
         configuration.setAllowedOriginPatterns(Arrays.asList("*"));
-        configuration.setAllowedOrigins(Arrays.asList("http://localhost:3000", "http://127.0.0.1:3000"));
+        configuration.setAllowedOrigins(Arrays.asList(corsAllowedOrigins));
         
         // Include streaming-specific methods
         configuration.setAllowedMethods(Arrays.asList("GET", "POST", "PUT", "PATCH", "DELETE", "OPTIONS", "HEAD"));
@@ -104,6 +119,8 @@ public class SecurityConfig {
         configuration.addExposedHeader("Content-Type");
         configuration.addExposedHeader("Transfer-Encoding");
         configuration.addExposedHeader("Connection");
+        configuration.addExposedHeader("ETag");
+        configuration.addExposedHeader("Retry-After");
         
         configuration.setAllowCredentials(true);
         configuration.setMaxAge(3600L); // Cache preflight for 1 hour
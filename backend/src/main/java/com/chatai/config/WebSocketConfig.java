@@ -0,0 +1,73 @@
+package com.chatai.config;
+
+import com.chatai.controller.ChatWebSocketHandler;
+import com.chatai.security.AuthTokenFilter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.http.server.ServletServerHttpRequest;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.config.annotation.EnableWebSocket;
+import org.springframework.web.socket.config.annotation.WebSocketConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketHandlerRegistry;
+import org.springframework.web.socket.server.HandshakeInterceptor;
+import org.springframework.web.socket.server.standard.ServletServerContainerFactoryBean;
+
+import java.util.Map;
+
+@Configuration
+@EnableWebSocket
+@RequiredArgsConstructor
+public class WebSocketConfig implements WebSocketConfigurer {
+    
+    public static final String CHAT_PATH = "/ws/chat";
+    
+    private final ChatWebSocketHandler chatWebSocketHandler;
+    
+    // Browsers send cookies with a cross-site handshake, so only the CORS origins may open a socket
+    @Value("${app.websocket.allowed-origins:${app.cors.allowed-origins:http://localhost:3000,http://127.0.0.1:3000}}")
+    private String[] allowedOrigins;
+    
+    @Value("${app.websocket.max-message-bytes:65536}")
+    private int maxMessageBytes;
+    
+    @Value("${app.websocket.idle-timeout-ms:300000}")
+    private long idleTimeoutMillis;
+    
+    @Override
+    public void registerWebSocketHandlers(WebSocketHandlerRegistry registry) {
+        // The handshake goes through the security filter chain; its token is kept to re-check later messages
+        registry.addHandler(chatWebSocketHandler, CHAT_PATH)
+                .addInterceptors(new HandshakeInterceptor() {
+                    @Override
+                    public boolean beforeHandshake(ServerHttpRequest request, ServerHttpResponse response,
+                                                   WebSocketHandler wsHandler, Map<String, Object> attributes) {
+                        if (request instanceof ServletServerHttpRequest servletRequest) {
+                            String token = AuthTokenFilter.parseJwt(servletRequest.getServletRequest());
+                            if (token != null) {
+                                attributes.put(ChatWebSocketHandler.CREDENTIAL_ATTRIBUTE, token);
+                            }
+                        }
+                        return true;
+                    }
+
+                    @Override
+                    public void afterHandshake(ServerHttpRequest request, ServerHttpResponse response,
+                                               WebSocketHandler wsHandler, Exception exception) {
+                    }
+                })
+                .setAllowedOriginPatterns(allowedOrigins);
+    }
+    
+    @Bean
+    public ServletServerContainerFactoryBean webSocketContainer() {
+        ServletServerContainerFactoryBean container = new ServletServerContainerFactoryBean();
+        // Client messages are small commands; a chat request is the largest of them
+        container.setMaxTextMessageBufferSize(maxMessageBytes);
+        container.setMaxSessionIdleTimeout(idleTimeoutMillis);
+        return container;
+    }
+}
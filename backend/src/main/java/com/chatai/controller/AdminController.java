@@ -5,6 +5,8 @@ import com.chatai.dto.admin.UpdateUserRequest;
 import com.chatai.dto.admin.UserManagementResponse;
 import com.chatai.dto.admin.ModelManagementRequest;
 import com.chatai.dto.admin.ModelManagementResponse;
+import com.chatai.dto.admin.ModelPermissionRequest;
+import com.chatai.dto.admin.ModelPermissionResponse;
 import com.chatai.dto.auth.MessageResponse;
 import com.chatai.service.AdminService;
 import com.chatai.service.ModelManagementService;
@@ -17,6 +19,7 @@ import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/admin")
@@ -58,6 +61,18 @@ public class AdminController {
         }
     }
     
+    @GetMapping("/users/{userId}/model-permissions")
+    public ResponseEntity<List<ModelPermissionResponse>> getUserModelPermissions(@PathVariable Long userId) {
+        return ResponseEntity.ok(adminService.getUserModelPermissions(userId));
+    }
+    
+    // Model ids contain slashes, so the model is named in the body rather than the path
+    @PutMapping("/users/{userId}/model-permissions")
+    public ResponseEntity<ModelPermissionResponse> updateModelPermission(@PathVariable Long userId,
+                                                                         @RequestBody ModelPermissionRequest request) {
+        return ResponseEntity.ok(adminService.updateModelPermission(userId, request));
+    }
+    
     @PostMapping("/users/{userId}/reset-limit")
     public ResponseEntity<MessageResponse> resetUserDailyLimit(@PathVariable Long userId) {
         adminService.resetUserDailyLimit(userId);
@@ -70,6 +85,41 @@ public class AdminController {
         return ResponseEntity.ok(stats);
     }
     
+    @GetMapping("/security/login-protection")
+    public ResponseEntity<Map<String, Object>> getLoginProtectionStats() {
+        return ResponseEntity.ok(adminService.getLoginProtectionStats());
+    }
+    
+    @GetMapping("/security/api-tokens")
+    public ResponseEntity<Map<String, Object>> getApiTokenStats() {
+        return ResponseEntity.ok(adminService.getApiTokenStats());
+    }
+    
+    @GetMapping("/routing/models")
+    public ResponseEntity<Map<String, Object>> getModelRoutingStats() {
+        return ResponseEntity.ok(adminService.getModelRoutingStats());
+    }
+    
+    @GetMapping("/streams")
+    public ResponseEntity<Map<String, Object>> getStreamStats() {
+        return ResponseEntity.ok(adminService.getStreamStats());
+    }
+    
+    @GetMapping("/cache/principals")
+    public ResponseEntity<Map<String, Object>> getPrincipalCacheStats() {
+        return ResponseEntity.ok(adminService.getPrincipalCacheStats());
+    }
+    
+    @GetMapping("/purge/status")
+    public ResponseEntity<Map<String, Object>> getPurgeStatus() {
+        return ResponseEntity.ok(adminService.getPurgeStatus());
+    }
+    
+    @GetMapping("/storage/compression")
+    public ResponseEntity<Map<String, Object>> getCompressionStats() {
+        return ResponseEntity.ok(adminService.getCompressionStats());
+    }
+    
     @GetMapping("/health")
     public ResponseEntity<String> adminHealth() {
         return ResponseEntity.ok("Admin API is running!");
@@ -0,0 +1,47 @@
+package com.chatai.controller;
+
+import com.chatai.dto.auth.ApiTokenResponse;
+import com.chatai.dto.auth.CreateApiTokenRequest;
+import com.chatai.dto.auth.MessageResponse;
+import com.chatai.security.UserPrincipal;
+import com.chatai.service.ApiTokenService;
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/user/tokens")
+@RequiredArgsConstructor
+@Slf4j
+public class ApiTokenController {
+    
+    private final ApiTokenService apiTokenService;
+    
+    @GetMapping
+    public ResponseEntity<List<ApiTokenResponse>> getTokens(@AuthenticationPrincipal UserPrincipal currentUser) {
+        return ResponseEntity.ok(apiTokenService.getTokens(currentUser.getId()));
+    }
+    
+    @PostMapping
+    public ResponseEntity<?> createToken(@Valid @RequestBody CreateApiTokenRequest request,
+                                         @AuthenticationPrincipal UserPrincipal currentUser) {
+        try {
+            return ResponseEntity.ok(apiTokenService.createToken(currentUser.getId(), request));
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest()
+                    .body(MessageResponse.error("Cannot create API token: " + e.getMessage()));
+        }
+    }
+    
+    @DeleteMapping("/{tokenId}")
+    public ResponseEntity<MessageResponse> revokeToken(@PathVariable Long tokenId,
+                                                       @AuthenticationPrincipal UserPrincipal currentUser) {
+        apiTokenService.revokeToken(currentUser.getId(), tokenId);
+        return ResponseEntity.ok(MessageResponse.success("API token revoked"));
+    }
+}
@@ -9,12 +9,16 @@ import com.chatai.entity.User;
 import com.chatai.repository.RoleRepository;
 import com.chatai.repository.UserRepository;
 import com.chatai.security.JwtUtils;
+import com.chatai.security.LoginAttemptLimiter;
 import com.chatai.security.UserPrincipal;
+import com.chatai.service.RequestLimitService;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.authentication.BadCredentialsException;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
@@ -38,12 +42,24 @@ public class AuthController {
     private final RoleRepository roleRepository;
     private final PasswordEncoder encoder;
     private final JwtUtils jwtUtils;
+    private final RequestLimitService requestLimitService;
+    private final LoginAttemptLimiter loginAttemptLimiter;
     
     @PostMapping("/signin")
-    public ResponseEntity<?> authenticateUser(@Valid @RequestBody LoginRequest loginRequest) {
+    public ResponseEntity<?> authenticateUser(@Valid @RequestBody LoginRequest loginRequest,
+                                              HttpServletRequest httpRequest) {
+        // Abusive traffic is rejected before any BCrypt work is queued
+        loginAttemptLimiter.checkAttempt(httpRequest.getRemoteAddr(), loginRequest.getUsername());
         
-        Authentication authentication = authenticationManager.authenticate(
-                new UsernamePasswordAuthenticationToken(loginRequest.getUsername(), loginRequest.getPassword()));
+        Authentication authentication;
+        try {
+            authentication = authenticationManager.authenticate(
+                    new UsernamePasswordAuthenticationToken(loginRequest.getUsername(), loginRequest.getPassword()));
+        } catch (BadCredentialsException e) {
+            loginAttemptLimiter.recordFailure(loginRequest.getUsername());
+            throw e;
+        }
+        loginAttemptLimiter.recordSuccess(loginRequest.getUsername());
         
         SecurityContextHolder.getContext().setAuthentication(authentication);
         String jwt = jwtUtils.generateJwtToken(authentication);
@@ -63,11 +79,15 @@ public class AuthController {
                 user != null ? user.getFullName() : null,
                 roles,
                 user != null ? user.getDailyRequestLimit() : 100,
-                user != null ? user.getRequestsUsedToday() : 0));
+                // Live counter; the users column is only written behind
+                user != null ? requestLimitService.getRequestsUsedToday(user.getId()) : 0));
     }
     
     @PostMapping("/signup")
-    public ResponseEntity<?> registerUser(@Valid @RequestBody SignupRequest signUpRequest) {
+    public ResponseEntity<?> registerUser(@Valid @RequestBody SignupRequest signUpRequest,
+                                          HttpServletRequest httpRequest) {
+        loginAttemptLimiter.checkAttempt(httpRequest.getRemoteAddr(), null);
+        
         if (userRepository.existsByUsername(signUpRequest.getUsername())) {
             return ResponseEntity.badRequest()
                     .body(MessageResponse.error("Username is already taken!"));
@@ -2,21 +2,26 @@ package com.chatai.controller;
 
 import com.chatai.dto.chat.ChatRequest;
 import com.chatai.dto.chat.ChatSessionResponse;
-import com.chatai.dto.chat.ModelResponse;
-import com.chatai.dto.chat.ModelsResponse;
+import com.chatai.dto.chat.MessageReasoningResponse;
 import com.chatai.entity.ChatMessage;
 import com.chatai.entity.ChatSession;
 import com.chatai.security.UserPrincipal;
 import com.chatai.service.ChatHistoryService;
-import com.chatai.service.ChatService;
+import com.chatai.service.ChatTurnService;
 import com.chatai.service.RequestLimitService;
-import com.chatai.service.ModelManagementService;
+import com.chatai.service.StreamRelayService;
+import com.chatai.service.TokenQuotaService;
+import com.chatai.service.ModelCatalog;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 import jakarta.validation.Valid;
 import reactor.core.publisher.Flux;
@@ -30,47 +35,46 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 public class ChatController {
     
-    private final ChatService chatService;
+    private final ChatTurnService chatTurnService;
     private final ChatHistoryService chatHistoryService;
     private final RequestLimitService requestLimitService;
-    private final ModelManagementService modelManagementService;
+    private final TokenQuotaService tokenQuotaService;
+    private final ModelCatalog modelCatalog;
+    private final StreamRelayService streamRelayService;
     
     // Streaming endpoint with authentication and history
     @PostMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
-    public Flux<String> chatStream(@Valid @RequestBody ChatRequest request, 
+    public Flux<ServerSentEvent<String>> chatStream(@Valid @RequestBody ChatRequest request, 
                                    @AuthenticationPrincipal UserPrincipal currentUser) {
         log.info("User {} requesting chat stream for model: {}", currentUser.getUsername(), request.getModel());
-        
-        // Check request limit
-        if (!requestLimitService.canMakeRequest(currentUser.getId())) {
-            return Flux.error(new RuntimeException("Daily request limit exceeded"));
-        }
-        
-        // Increment request count
-        requestLimitService.incrementRequestCount(currentUser.getId());
-        
-        // Create or get chat session
-        ChatSession session;
-        if (request.getSessionId() != null) {
-            session = chatHistoryService.getSession(request.getSessionId(), currentUser.getId())
-                    .orElseThrow(() -> new RuntimeException("Session not found or access denied"));
-        } else {
-            session = chatHistoryService.createNewSession(currentUser.getId(), request.getModel());
-        }
-        
-        // Save user message FIRST
-        chatHistoryService.saveMessage(session.getId(), request.getMessage(), null, 
-                ChatMessage.MessageRole.USER, request.getModel(), null);
-        
-        // Process chat stream and save assistant response (now with user message in history)
-        return chatService.processChatStreamWithHistory(request, session.getId(), currentUser.getId())
-                .startWith("data: SESSION_ID:" + session.getId() + "\n\n");
+        return chatTurnService.start(request, currentUser.getId()).frames();
+    }
+    
+    /**
+     * Re-attaches to the session's in-flight (or just finished) answer; frames after Last-Event-ID
+     * are replayed from the buffer. 204 when there is no such answer - load the session instead.
+     */
+    @GetMapping(value = "/sessions/{sessionId}/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<Flux<ServerSentEvent<String>>> resumeStream(@PathVariable Long sessionId,
+                                                                      @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId,
+                                                                      @AuthenticationPrincipal UserPrincipal currentUser) {
+        return streamRelayService.attach(currentUser.getId(), sessionId, lastEventId)
+                .map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.noContent().build());
     }
     
     // Chat History Endpoints
     @GetMapping("/sessions")
-    public ResponseEntity<List<ChatSessionResponse>> getUserSessions(@AuthenticationPrincipal UserPrincipal currentUser) {
+    public ResponseEntity<List<ChatSessionResponse>> getUserSessions(@AuthenticationPrincipal UserPrincipal currentUser,
+                                                                     WebRequest webRequest) {
         log.info("Getting sessions for user: {} (ID: {})", currentUser.getUsername(), currentUser.getId());
+        
+        // Cheap aggregate ETag first - unchanged lists never load sessions
+        String etag = chatHistoryService.getSessionListEtag(currentUser.getId());
+        if (webRequest.checkNotModified(etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+        }
+        
         List<ChatSession> sessions = chatHistoryService.getUserSessions(currentUser.getId());
         
         // Get message counts efficiently in batch
@@ -87,26 +91,25 @@ public class ChatController {
                         .build())
                 .collect(Collectors.toList());
         
-        return ResponseEntity.ok(response);
+        return ResponseEntity.ok().eTag(etag).body(response);
     }
     
     @GetMapping("/sessions/{sessionId}")
     public ResponseEntity<ChatSessionResponse> getSession(@PathVariable Long sessionId,
-                                                          @AuthenticationPrincipal UserPrincipal currentUser) {
-        List<ChatMessage> messages = chatHistoryService.getSessionMessages(sessionId, currentUser.getId());
+                                                          @AuthenticationPrincipal UserPrincipal currentUser,
+                                                          WebRequest webRequest) {
         ChatSession session = chatHistoryService.getSession(sessionId, currentUser.getId())
                 .orElseThrow(() -> new RuntimeException("Session not found"));
         
+        String etag = chatHistoryService.getSessionEtag(session);
+        if (webRequest.checkNotModified(etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+        }
+        
+        List<ChatMessage> messages = chatHistoryService.getSessionMessages(session);
+        
         List<ChatSessionResponse.ChatMessageResponse> messageResponses = messages.stream()
-                .map(msg -> ChatSessionResponse.ChatMessageResponse.builder()
-                        .id(msg.getId())
-                        .role(msg.getRole().name().toLowerCase())
-                        .content(msg.getContent())
-                        .thinking(msg.getThinking())
-                        .modelUsed(msg.getModelUsed())
-                        .tokensUsed(msg.getTokensUsed())
-                        .createdAt(msg.getCreatedAt())
-                        .build())
+                .map(this::mapToMessageResponse)
                 .collect(Collectors.toList());
         
         ChatSessionResponse response = ChatSessionResponse.builder()
@@ -119,7 +122,40 @@ public class ChatController {
                 .messages(messageResponses)
                 .build();
         
-        return ResponseEntity.ok(response);
+        return ResponseEntity.ok().eTag(etag).body(response);
+    }
+    
+    // Delta sync: only messages newer than the client's last seen message id
+    @GetMapping("/sessions/{sessionId}/messages")
+    public ResponseEntity<List<ChatSessionResponse.ChatMessageResponse>> getSessionMessages(
+            @PathVariable Long sessionId,
+            @RequestParam(defaultValue = "0") Long after,
+            @AuthenticationPrincipal UserPrincipal currentUser,
+            WebRequest webRequest) {
+        ChatSession session = chatHistoryService.getSession(sessionId, currentUser.getId())
+                .orElseThrow(() -> new RuntimeException("Session not found"));
+        
+        String etag = chatHistoryService.getSessionEtag(session, after);
+        if (webRequest.checkNotModified(etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+        }
+        
+        List<ChatSessionResponse.ChatMessageResponse> messageResponses = chatHistoryService
+                .getSessionMessagesAfter(session, after).stream()
+                .map(this::mapToMessageResponse)
+                .collect(Collectors.toList());
+        
+        return ResponseEntity.ok().eTag(etag).body(messageResponses);
+    }
+    
+    // Reasoning is fetched only when the client expands it
+    @GetMapping("/sessions/{sessionId}/messages/{messageId}/reasoning")
+    public ResponseEntity<MessageReasoningResponse> getMessageReasoning(@PathVariable Long sessionId,
+                                                                        @PathVariable Long messageId,
+                                                                        @AuthenticationPrincipal UserPrincipal currentUser) {
+        String thinking = chatHistoryService.getMessageReasoning(sessionId, messageId, currentUser.getId())
+                .orElseThrow(() -> new RuntimeException("Reasoning not found"));
+        return ResponseEntity.ok(new MessageReasoningResponse(messageId, thinking));
     }
     
     @DeleteMapping("/sessions/{sessionId}")
@@ -154,10 +190,12 @@ public class ChatController {
     public ResponseEntity<?> getUserUsage(@AuthenticationPrincipal UserPrincipal currentUser) {
         log.info("Getting usage for user: {} (ID: {})", currentUser.getUsername(), currentUser.getId());
         int remaining = requestLimitService.getRemainingRequests(currentUser.getId());
+        long tokensUsed = tokenQuotaService.getTokensUsedToday(currentUser.getId());
         
         return ResponseEntity.ok(new java.util.HashMap<String, Object>() {{
             put("dailyLimit", currentUser.getId() == 1 ? -1 : 100); // Admin check
             put("remainingRequests", remaining);
+            put("tokensUsedToday", tokensUsed);
             put("username", currentUser.getUsername());
         }});
     }
@@ -168,45 +206,29 @@ public class ChatController {
     }
     
     @GetMapping("/models")
-    public ResponseEntity<ModelsResponse> getAvailableModels() {
-        try {
-            // Get enabled models from database
-            var enabledModels = modelManagementService.getEnabledModels();
-            
-            // Convert to DTO
-            List<ModelResponse> modelDtos = enabledModels.stream()
-                .map(model -> new ModelResponse(
-                    model.getModelName(),
-                    model.getModelId(), 
-                    model.getDescription(),
-                    model.getCategory()
-                ))
-                .collect(Collectors.toList());
-            
-            // Create usage info
-            Map<String, Object> usage = Map.of(
-                "streaming_endpoint", "POST /api/chat/stream",
-                "note", "Model field is REQUIRED. Only streaming is supported."
-            );
-            
-            ModelsResponse response = new ModelsResponse(modelDtos, usage);
-            return ResponseEntity.ok(response);
-        } catch (Exception e) {
-            log.error("Error getting available models: {}", e.getMessage());
-            // Fallback to enabled models from database if service is not available
-            List<ModelResponse> fallbackModels = List.of(
-                new ModelResponse("Llama 3.1 8B Instant", "llama-3.1-8b-instant", 
-                    "Fastest model, good for quick responses", "Llama"),
-                new ModelResponse("Gemma2 9B", "gemma2-9b-it", 
-                    "Google's Gemma2 model, 9B parameters", "Google")
-            );
-            
-            Map<String, Object> usage = Map.of(
-                "streaming_endpoint", "POST /api/chat/stream",
-                "note", "Model field is REQUIRED. Only streaming is supported."
-            );
-            
-            return ResponseEntity.ok(new ModelsResponse(fallbackModels, usage));
+    public ResponseEntity<byte[]> getAvailableModels(WebRequest webRequest) {
+        // Pre-serialized snapshot; unchanged catalogs are answered with 304
+        ModelCatalog.Snapshot catalog = modelCatalog.current();
+        if (webRequest.checkNotModified(catalog.getEtag())) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(catalog.getEtag()).build();
         }
+        return ResponseEntity.ok()
+                .eTag(catalog.getEtag())
+                .cacheControl(CacheControl.noCache())
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(catalog.getPublicJson());
+    }
+    
+    private ChatSessionResponse.ChatMessageResponse mapToMessageResponse(ChatMessage msg) {
+        return ChatSessionResponse.ChatMessageResponse.builder()
+                .id(msg.getId())
+                .role(msg.getRole().name().toLowerCase())
+                .content(msg.getContent())
+                .hasReasoning(Boolean.TRUE.equals(msg.getHasReasoning()))
+                .modelUsed(msg.getModelUsed())
+                .tokensUsed(msg.getTokensUsed())
+                .partial(msg.getPartial())
+                .createdAt(msg.getCreatedAt())
+                .build();
     }
 }
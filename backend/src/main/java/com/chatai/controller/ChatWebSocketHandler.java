@@ -0,0 +1,404 @@
+package com.chatai.controller;
+
+import com.chatai.dto.chat.ChatRequest;
+import com.chatai.exception.RateLimitExceededException;
+import com.chatai.security.AuthTokenFilter;
+import com.chatai.security.UserChangedEvent;
+import com.chatai.security.UserPrincipal;
+import com.chatai.service.ChatTurnService;
+import com.chatai.service.StreamRelayService;
+import com.chatai.service.TransportStats;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.extern.slf4j.Slf4j;
+import org.reactivestreams.Subscription;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.security.core.Authentication;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator;
+import org.springframework.web.socket.handler.TextWebSocketHandler;
+import reactor.core.publisher.BaseSubscriber;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.SignalType;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Chat over one WebSocket (/ws/chat), authenticated at the handshake. The handshake's token is
+ * checked again before every start or attach and whenever the user changes; sockets whose token
+ * no longer passes (revoked tokens, deactivation, deletion) are closed. Each message names a
+ * client-chosen stream id, so many turns and sessions share the connection:
+ * <pre>
+ * → {"type":"start","stream":"a","request":{...ChatRequest}}
+ * → {"type":"attach","stream":"b","sessionId":7,"lastEventId":"k:40"}
+ * → {"type":"credit","stream":"a","frames":64}      more frames may be sent on stream a
+ * → {"type":"cancel","stream":"a"}                  stops generation of that turn
+ * ← {"stream":"a","type":"frame","id":"k:1","event":"c","data":"..."}
+ * ← {"stream":"a","type":"end"} | {"stream":"a","type":"error","status":429,"message":"...","retryAfter":3}
+ * </pre>
+ * Turns run through the same pipeline as POST /api/chat/stream, including limits and the relay.
+ */
+@Component
+@Slf4j
+public class ChatWebSocketHandler extends TextWebSocketHandler implements TransportStats {
+
+    public static final String CREDENTIAL_ATTRIBUTE = "chatCredential";
+
+    private static final String STREAMS_ATTRIBUTE = "chatStreams";
+    private static final CloseStatus CREDENTIALS_CHANGED = CloseStatus.POLICY_VIOLATION.withReason("Credentials changed");
+
+    private final ChatTurnService chatTurnService;
+    private final StreamRelayService streamRelayService;
+    private final AuthTokenFilter authTokenFilter;
+    private final ObjectMapper objectMapper;
+    private final Validator validator;
+    private final int initialCredit;
+    private final int maxStreams;
+    private final int sendTimeLimitMillis;
+    private final int sendBufferBytes;
+
+    private final Map<String, WebSocketSession> connections = new ConcurrentHashMap<>();
+    private final LongAdder turnsStarted = new LongAdder();
+    private final LongAdder framesSent = new LongAdder();
+
+    public ChatWebSocketHandler(ChatTurnService chatTurnService,
+                                StreamRelayService streamRelayService,
+                                AuthTokenFilter authTokenFilter,
+                                ObjectMapper objectMapper,
+                                Validator validator,
+                                @Value("${app.websocket.initial-credit:64}") int initialCredit,
+                                @Value("${app.websocket.max-streams-per-connection:16}") int maxStreams,
+                                @Value("${app.websocket.send-time-limit-ms:10000}") int sendTimeLimitMillis,
+                                @Value("${app.websocket.send-buffer-bytes:524288}") int sendBufferBytes) {
+        this.chatTurnService = chatTurnService;
+        this.streamRelayService = streamRelayService;
+        this.authTokenFilter = authTokenFilter;
+        this.objectMapper = objectMapper;
+        this.validator = validator;
+        this.initialCredit = initialCredit;
+        this.maxStreams = maxStreams;
+        this.sendTimeLimitMillis = sendTimeLimitMillis;
+        this.sendBufferBytes = sendBufferBytes;
+    }
+
+    @Override
+    public void afterConnectionEstablished(WebSocketSession session) {
+        // Sends come from many stream threads; the decorator serializes them and closes slow consumers
+        WebSocketSession concurrent = new ConcurrentWebSocketSessionDecorator(session, sendTimeLimitMillis, sendBufferBytes);
+        session.getAttributes().put(STREAMS_ATTRIBUTE, new ConcurrentHashMap<String, TurnSubscriber>());
+        connections.put(session.getId(), concurrent);
+    }
+
+    @Override
+    protected void handleTextMessage(WebSocketSession session, TextMessage message) throws IOException {
+        WebSocketSession connection = connections.get(session.getId());
+        UserPrincipal user = principal(session);
+        if (connection == null || user == null) {
+            session.close(CloseStatus.POLICY_VIOLATION);
+            return;
+        }
+
+        JsonNode command;
+        try {
+            command = objectMapper.readTree(message.getPayload());
+        } catch (IOException e) {
+            sendError(connection, null, HttpStatus.BAD_REQUEST, "Malformed message", 0);
+            return;
+        }
+        String streamId = command.path("stream").asText(null);
+        if (streamId == null) {
+            sendError(connection, null, HttpStatus.BAD_REQUEST, "Missing stream id", 0);
+            return;
+        }
+
+        String type = command.path("type").asText("");
+        if ((type.equals("start") || type.equals("attach")) && !credentialStillValid(session)) {
+            sendError(connection, streamId, HttpStatus.UNAUTHORIZED, "Token is no longer valid", 0);
+            session.close(CREDENTIALS_CHANGED);
+            return;
+        }
+
+        Map<String, TurnSubscriber> streams = streams(session);
+        switch (type) {
+            case "start" -> start(connection, streams, user, streamId, command.path("request"));
+            case "attach" -> attach(connection, streams, user, streamId, command);
+            case "credit" -> {
+                TurnSubscriber stream = streams.get(streamId);
+                if (stream != null) {
+                    stream.grant(Math.max(1, command.path("frames").asInt(initialCredit)));
+                }
+            }
+            case "cancel" -> {
+                TurnSubscriber stream = streams.remove(streamId);
+                if (stream != null) {
+                    if (stream.sessionId != null) {
+                        streamRelayService.cancel(user.getId(), stream.sessionId);
+                    }
+                    stream.dispose();
+                }
+            }
+            default -> sendError(connection, streamId, HttpStatus.BAD_REQUEST, "Unknown message type", 0);
+        }
+    }
+
+    private void start(WebSocketSession connection, Map<String, TurnSubscriber> streams, UserPrincipal user,
+                       String streamId, JsonNode body) throws IOException {
+        if (!reserveStream(connection, streams, streamId)) {
+            return;
+        }
+        try {
+            ChatRequest request = objectMapper.treeToValue(body, ChatRequest.class);
+            Set<ConstraintViolation<ChatRequest>> violations = validator.validate(request);
+            if (!violations.isEmpty()) {
+                streams.remove(streamId);
+                sendError(connection, streamId, HttpStatus.BAD_REQUEST, violations.iterator().next().getMessage(), 0);
+                return;
+            }
+
+            ChatTurnService.Turn turn = chatTurnService.start(request, user.getId());
+            turnsStarted.increment();
+            subscribe(connection, streams, streamId, turn.sessionId(), turn.frames());
+        } catch (RateLimitExceededException e) {
+            streams.remove(streamId);
+            sendError(connection, streamId, HttpStatus.TOO_MANY_REQUESTS, e.getMessage(), e.getRetryAfterSeconds());
+        } catch (AccessDeniedException e) {
+            streams.remove(streamId);
+            sendError(connection, streamId, HttpStatus.FORBIDDEN, "Access denied: Insufficient permissions", 0);
+        } catch (IOException e) {
+            streams.remove(streamId);
+            sendError(connection, streamId, HttpStatus.BAD_REQUEST, "Malformed chat request", 0);
+        } catch (RuntimeException e) {
+            streams.remove(streamId);
+            String error = e.getMessage() != null ? e.getMessage() : "Unexpected error";
+            boolean notFound = error.contains("not found") || error.contains("access denied");
+            log.error("WebSocket turn failed for user {}: {}", user.getId(), error);
+            sendError(connection, streamId, notFound ? HttpStatus.NOT_FOUND : HttpStatus.INTERNAL_SERVER_ERROR, error, 0);
+        }
+    }
+
+    private void attach(WebSocketSession connection, Map<String, TurnSubscriber> streams, UserPrincipal user,
+                        String streamId, JsonNode command) throws IOException {
+        if (!reserveStream(connection, streams, streamId)) {
+            return;
+        }
+        long sessionId = command.path("sessionId").asLong();
+        String lastEventId = command.path("lastEventId").asText(null);
+        var frames = streamRelayService.attach(user.getId(), sessionId, lastEventId);
+        if (frames.isEmpty()) {
+            streams.remove(streamId);
+            // Same meaning as the 204 of the SSE resume endpoint: load the session instead
+            sendControl(connection, streamId, "end");
+            return;
+        }
+        subscribe(connection, streams, streamId, sessionId, frames.get());
+    }
+
+    private boolean reserveStream(WebSocketSession connection, Map<String, TurnSubscriber> streams,
+                                  String streamId) throws IOException {
+        if (streams.size() >= maxStreams) {
+            sendError(connection, streamId, HttpStatus.TOO_MANY_REQUESTS, "Too many streams on this connection", 1);
+            return false;
+        }
+        if (streams.putIfAbsent(streamId, new TurnSubscriber(connection, streams, streamId)) != null) {
+            sendError(connection, streamId, HttpStatus.CONFLICT, "Stream id already in use", 0);
+            return false;
+        }
+        return true;
+    }
+
+    private void subscribe(WebSocketSession connection, Map<String, TurnSubscriber> streams, String streamId,
+                           Long sessionId, Flux<ServerSentEvent<String>> frames) {
+        TurnSubscriber subscriber = streams.get(streamId);
+        if (subscriber == null) {
+            // Cancelled while the turn was being set up
+            return;
+        }
+        subscriber.sessionId = sessionId;
+        frames.subscribe(subscriber);
+    }
+
+    @Override
+    public void afterConnectionClosed(WebSocketSession session, CloseStatus status) {
+        connections.remove(session.getId());
+        // Detaching lets the relay keep the turns resumable for its grace period
+        streams(session).values().forEach(TurnSubscriber::dispose);
+        streams(session).clear();
+    }
+
+    /**
+     * Closes the user's sockets whose handshake token no longer passes; limit changes and quota
+     * resets publish the same event and leave running turns alone. Ordered after the principal
+     * cache and token index have caught up with the change.
+     */
+    @Order(Ordered.LOWEST_PRECEDENCE)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUserChanged(UserChangedEvent event) {
+        for (WebSocketSession connection : connections.values()) {
+            UserPrincipal user = principal(connection);
+            if (user == null || !user.getId().equals(event.userId()) || credentialStillValid(connection)) {
+                continue;
+            }
+            try {
+                connection.close(CREDENTIALS_CHANGED);
+            } catch (IOException e) {
+                log.debug("Could not close WebSocket {}: {}", connection.getId(), e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public void handleTransportError(WebSocketSession session, Throwable exception) {
+        log.debug("WebSocket transport error on {}: {}", session.getId(), exception.getMessage());
+    }
+
+    @Override
+    public String getTransportName() {
+        return "websocket";
+    }
+
+    @Override
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("connections", connections.size());
+        stats.put("turnsStarted", turnsStarted.sum());
+        stats.put("framesSent", framesSent.sum());
+        return stats;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, TurnSubscriber> streams(WebSocketSession session) {
+        Object streams = session.getAttributes().get(STREAMS_ATTRIBUTE);
+        return streams != null ? (Map<String, TurnSubscriber>) streams : new ConcurrentHashMap<>();
+    }
+
+    private boolean credentialStillValid(WebSocketSession session) {
+        Object token = session.getAttributes().get(CREDENTIAL_ATTRIBUTE);
+        return token instanceof String credential && authTokenFilter.isStillValid(credential);
+    }
+
+    private static UserPrincipal principal(WebSocketSession session) {
+        if (session.getPrincipal() instanceof Authentication authentication
+                && authentication.getPrincipal() instanceof UserPrincipal user) {
+            return user;
+        }
+        return null;
+    }
+
+    private void sendControl(WebSocketSession connection, String streamId, String type) throws IOException {
+        ObjectNode node = objectMapper.createObjectNode();
+        node.put("stream", streamId);
+        node.put("type", type);
+        send(connection, node);
+    }
+
+    private void sendError(WebSocketSession connection, String streamId, HttpStatus status, String message,
+                           long retryAfterSeconds) throws IOException {
+        ObjectNode node = objectMapper.createObjectNode();
+        node.put("stream", streamId);
+        node.put("type", "error");
+        node.put("status", status.value());
+        node.put("message", message);
+        if (retryAfterSeconds > 0) {
+            node.put("retryAfter", retryAfterSeconds);
+        }
+        send(connection, node);
+    }
+
+    private void send(WebSocketSession connection, ObjectNode node) throws IOException {
+        if (connection.isOpen()) {
+            connection.sendMessage(new TextMessage(node.toString()));
+        }
+    }
+
+    /**
+     * Forwards one turn's frames as long as the client has granted credit for them
+     */
+    private final class TurnSubscriber extends BaseSubscriber<ServerSentEvent<String>> {
+        private final WebSocketSession connection;
+        private final Map<String, TurnSubscriber> streams;
+        private final String streamId;
+        private final AtomicInteger pendingCredit = new AtomicInteger();
+        private volatile Long sessionId;
+
+        private TurnSubscriber(WebSocketSession connection, Map<String, TurnSubscriber> streams, String streamId) {
+            this.connection = connection;
+            this.streams = streams;
+            this.streamId = streamId;
+        }
+
+        @Override
+        protected void hookOnSubscribe(Subscription subscription) {
+            // Credit granted before the turn was subscribed is added to the initial window
+            request(initialCredit + pendingCredit.getAndSet(0));
+        }
+
+        void grant(int frames) {
+            pendingCredit.addAndGet(frames);
+            int credit;
+            if (upstream() != null && (credit = pendingCredit.getAndSet(0)) > 0) {
+                request(credit);
+            }
+        }
+
+        @Override
+        protected void hookOnNext(ServerSentEvent<String> frame) {
+            ObjectNode node = objectMapper.createObjectNode();
+            node.put("stream", streamId);
+            node.put("type", "frame");
+            node.put("id", frame.id());
+            if (frame.event() != null) {
+                node.put("event", frame.event());
+            }
+            node.put("data", frame.data());
+            try {
+                send(connection, node);
+                framesSent.increment();
+            } catch (IOException | IllegalStateException e) {
+                // Send buffer overflow or a closed connection; the close handler cleans up
+                log.debug("Dropping WebSocket stream {}: {}", streamId, e.getMessage());
+                dispose();
+            }
+        }
+
+        @Override
+        protected void hookOnComplete() {
+            try {
+                sendControl(connection, streamId, "end");
+            } catch (IOException | IllegalStateException e) {
+                log.debug("Could not end WebSocket stream {}: {}", streamId, e.getMessage());
+            }
+        }
+
+        @Override
+        protected void hookOnError(Throwable error) {
+            try {
+                sendError(connection, streamId, HttpStatus.INTERNAL_SERVER_ERROR, "Stream failed", 0);
+            } catch (IOException | IllegalStateException e) {
+                log.debug("Could not report WebSocket stream error {}: {}", streamId, e.getMessage());
+            }
+        }
+
+        @Override
+        protected void hookFinally(SignalType type) {
+            streams.remove(streamId, this);
+        }
+    }
+}
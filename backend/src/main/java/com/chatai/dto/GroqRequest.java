@@ -1,17 +1,24 @@
 package com.chatai.dto;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.Data;
 import lombok.Builder;
 import java.util.List;
 
 @Data
 @Builder
+@JsonInclude(JsonInclude.Include.NON_NULL)
 public class GroqRequest {
     private String model;
     private List<Message> messages;
     private Double temperature;
     private Integer max_tokens;
     private Boolean stream;
+    private StreamOptions stream_options;
+    // Reasoning delivery for models that support it: raw | parsed | hidden
+    private String reasoning_format;
+    // gpt-oss models take this instead of reasoning_format
+    private Boolean include_reasoning;
     
     @Data
     @Builder
@@ -19,4 +26,11 @@ public class GroqRequest {
         private String role;
         private String content;
     }
+    
+    // Asks for a final chunk carrying token usage when streaming
+    @Data
+    @Builder
+    public static class StreamOptions {
+        private Boolean include_usage;
+    }
 }
@@ -36,4 +36,7 @@ public class ModelManagementRequest {
     private Integer priority;
     
     private String groqModelId;
+    
+    // LLM provider name (e.g. groq, local); empty means groq
+    private String provider;
 }
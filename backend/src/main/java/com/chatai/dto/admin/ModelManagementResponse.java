@@ -23,6 +23,7 @@ public class ModelManagementResponse {
     private boolean isDefault;
     private Integer priority;
     private String groqModelId;
+    private String provider;
     private LocalDateTime createdAt;
     private LocalDateTime updatedAt;
     private String updatedBy;
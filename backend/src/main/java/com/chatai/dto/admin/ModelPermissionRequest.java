@@ -0,0 +1,13 @@
+package com.chatai.dto.admin;
+
+import lombok.Data;
+
+@Data
+public class ModelPermissionRequest {
+    
+    private String modelId;
+    private String modelName;
+    private Boolean allowed; // false revokes; limits only apply when allowed
+    private Integer dailyRequestLimit; // null = no per-model request limit
+    private Integer dailyTokenLimit; // null = no per-model token limit, -1 = unlimited
+}
@@ -0,0 +1,21 @@
+package com.chatai.dto.admin;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ModelPermissionResponse {
+    
+    private String modelId;
+    private String modelName;
+    private Boolean allowed;
+    private Integer dailyRequestLimit;
+    private Integer requestsUsedToday;
+    private Integer dailyTokenLimit;
+    private Long tokensUsedToday;
+}
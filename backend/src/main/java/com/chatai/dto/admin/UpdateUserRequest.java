@@ -9,5 +9,6 @@ public class UpdateUserRequest {
     private String email;
     private Boolean isActive;
     private Integer dailyRequestLimit;
+    private Integer dailyTokenLimit; // null keeps the current value, -1 = unlimited
     private String[] roles; // Array of role names like ["USER", "ADMIN"]
 }
@@ -22,6 +22,8 @@ public class UserManagementResponse {
     private Integer dailyRequestLimit;
     private Integer requestsUsedToday;
     private LocalDateTime lastRequestReset;
+    private Integer dailyTokenLimit;
+    private Long tokensUsedToday;
     private LocalDateTime createdAt;
     private List<String> roles;
     private Integer totalSessions;
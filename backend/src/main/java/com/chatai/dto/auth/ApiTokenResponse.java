@@ -0,0 +1,31 @@
+package com.chatai.dto.auth;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ApiTokenResponse {
+    
+    private Long id;
+    private String name;
+    private String tokenPrefix;
+    private List<String> scopes;
+    private Integer requestsPerMinute;
+    private LocalDateTime expiresAt;
+    private LocalDateTime revokedAt;
+    private LocalDateTime lastUsedAt;
+    private LocalDateTime createdAt;
+    
+    // Plaintext token, only returned once when it is created
+    private String token;
+}
@@ -0,0 +1,32 @@
+package com.chatai.dto.auth;
+
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Pattern;
+import jakarta.validation.constraints.Size;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class CreateApiTokenRequest {
+    
+    @NotBlank(message = "Name is required")
+    @Size(max = 100, message = "Name must be at most 100 characters")
+    private String name;
+    
+    @NotEmpty(message = "At least one scope is required")
+    private List<@Pattern(regexp = "chat:read|chat:write", message = "Scope must be chat:read or chat:write") String> scopes;
+    
+    // Null keeps the server default
+    @Min(value = 1, message = "Rate must be at least 1 request per minute")
+    @Max(value = 600, message = "Rate must be at most 600 requests per minute")
+    private Integer requestsPerMinute;
+    
+    // Null means the token does not expire
+    @Min(value = 1, message = "Expiry must be at least 1 day")
+    @Max(value = 365, message = "Expiry must be at most 365 days")
+    private Integer expiresInDays;
+}
@@ -6,6 +6,7 @@ import jakarta.validation.constraints.DecimalMax;
 import jakarta.validation.constraints.DecimalMin;
 import jakarta.validation.constraints.Max;
 import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.Pattern;
 import lombok.Data;
 
 @Data
@@ -27,4 +28,12 @@ public class ChatRequest {
     
     // Optional: existing session ID for continuing conversation
     private Long sessionId;
+    
+    // "raw" passes provider chunks through; "compact" sends only text deltas plus a final usage event
+    @Pattern(regexp = "raw|compact", message = "Stream format must be raw or compact")
+    private String streamFormat = "raw";
+    
+    // How much reasoning is streamed: everything, a short excerpt, or nothing
+    @Pattern(regexp = "full|summary|hidden", message = "Reasoning must be full, summary or hidden")
+    private String reasoning = "full";
 }
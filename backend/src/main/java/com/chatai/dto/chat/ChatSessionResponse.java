@@ -30,9 +30,10 @@ public class ChatSessionResponse {
         private Long id;
         private String role;
         private String content;
-        private String thinking;
+        private Boolean hasReasoning;
         private String modelUsed;
         private Integer tokensUsed;
+        private Boolean partial;
         private LocalDateTime createdAt;
     }
 }
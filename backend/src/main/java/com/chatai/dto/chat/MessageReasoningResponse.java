@@ -0,0 +1,13 @@
+package com.chatai.dto.chat;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class MessageReasoningResponse {
+    private Long messageId;
+    private String thinking;
+}
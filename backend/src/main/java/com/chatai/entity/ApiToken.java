@@ -0,0 +1,67 @@
+package com.chatai.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.UpdateTimestamp;
+
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "api_tokens",
+       indexes = @Index(name = "idx_api_tokens_updated", columnList = "updated_at"))
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ApiToken {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "user_id", nullable = false)
+    private User user;
+    
+    @Column(nullable = false, length = 100)
+    private String name;
+    
+    // HMAC-SHA256 (hex) of the plaintext token; the plaintext itself is never stored
+    @Column(name = "token_hash", nullable = false, unique = true, length = 64)
+    private String tokenHash;
+    
+    // First characters of the plaintext, so users can tell their tokens apart
+    @Column(name = "token_prefix", nullable = false, length = 16)
+    private String tokenPrefix;
+    
+    // Comma-separated, e.g. "chat:read,chat:write"
+    @Column(nullable = false)
+    private String scopes;
+    
+    // Null uses app.api-tokens.default-requests-per-minute
+    @Column(name = "requests_per_minute")
+    private Integer requestsPerMinute;
+    
+    @Column(name = "expires_at")
+    private LocalDateTime expiresAt;
+    
+    @Column(name = "revoked_at")
+    private LocalDateTime revokedAt;
+    
+    // Written behind by ApiTokenIndex, never through the entity
+    @Column(name = "last_used_at", updatable = false)
+    private LocalDateTime lastUsedAt;
+    
+    @CreationTimestamp
+    @Column(name = "created_at")
+    private LocalDateTime createdAt;
+    
+    // Drives the incremental reload of the in-memory token index
+    @UpdateTimestamp
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+}
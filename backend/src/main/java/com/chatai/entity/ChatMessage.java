@@ -1,5 +1,6 @@
 package com.chatai.entity;
 
+import com.chatai.storage.CompressedTextConverter;
 import jakarta.persistence.*;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -25,11 +26,14 @@ public class ChatMessage {
     @Column(nullable = false)
     private MessageRole role;
     
-    @Column(nullable = false, columnDefinition = "TEXT")
+    @Convert(converter = CompressedTextConverter.class)
+    @Column(nullable = false, columnDefinition = "MEDIUMBLOB")
     private String content;
     
-    @Column(columnDefinition = "TEXT")
-    private String thinking; // For models with reasoning capability
+    // Reasoning lives in chat_message_reasoning and is only loaded on demand
+    @Builder.Default
+    @Column(name = "has_reasoning")
+    private Boolean hasReasoning = false;
     
     @Column(name = "model_used")
     private String modelUsed;
@@ -37,12 +41,19 @@ public class ChatMessage {
     @Column(name = "tokens_used")
     private Integer tokensUsed;
     
+    // Set while an answer is still streaming; stays set when generation was cancelled or failed
+    @Builder.Default
+    @Column(name = "is_partial")
+    private Boolean partial = false;
+    
     @ManyToOne(fetch = FetchType.LAZY)
-    @JoinColumn(name = "chat_session_id", nullable = false)
+    // No FK constraint: MySQL does not allow foreign keys on partitioned tables
+    @JoinColumn(name = "chat_session_id", nullable = false, foreignKey = @ForeignKey(ConstraintMode.NO_CONSTRAINT))
     private ChatSession chatSession;
     
+    // Partition key: part of the primary key (id, created_at) in the database
     @CreationTimestamp
-    @Column(name = "created_at")
+    @Column(name = "created_at", nullable = false)
     private LocalDateTime createdAt;
     
     public enum MessageRole {
@@ -0,0 +1,38 @@
+package com.chatai.entity;
+
+import com.chatai.storage.CompressedTextConverter;
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import org.hibernate.annotations.CreationTimestamp;
+
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "chat_message_reasoning")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ChatMessageReasoning {
+    
+    // Shares the primary key of the owning message (one reasoning trace per message)
+    @Id
+    private Long messageId;
+    
+    @MapsId
+    @OneToOne(fetch = FetchType.LAZY)
+    // No FK constraint: chat_messages is partitioned; rows are removed explicitly with their messages
+    @JoinColumn(name = "chat_message_id", foreignKey = @ForeignKey(ConstraintMode.NO_CONSTRAINT))
+    private ChatMessage chatMessage;
+    
+    @Convert(converter = CompressedTextConverter.class)
+    @Column(nullable = false, columnDefinition = "MEDIUMBLOB")
+    private String thinking;
+    
+    @CreationTimestamp
+    @Column(name = "created_at")
+    private LocalDateTime createdAt;
+}
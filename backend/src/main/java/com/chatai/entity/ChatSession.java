@@ -42,8 +42,17 @@ public class ChatSession {
     @Column(name = "updated_at")
     private LocalDateTime updatedAt;
     
+    // Non-null while the messages live in chat_session_archives
+    @Column(name = "archived_at")
+    private LocalDateTime archivedAt;
+    
+    // Soft delete marker; rows are removed set-based by PurgeService
+    @Column(name = "deleted_at")
+    private LocalDateTime deletedAt;
+    
+    // Never cascaded: deleting through the persistence context loads every message
     @Builder.Default
-    @OneToMany(mappedBy = "chatSession", cascade = CascadeType.ALL, fetch = FetchType.LAZY)
+    @OneToMany(mappedBy = "chatSession", fetch = FetchType.LAZY)
     @OrderBy("createdAt ASC")
     private List<ChatMessage> messages = new ArrayList<>();
     
@@ -0,0 +1,44 @@
+package com.chatai.entity;
+
+import com.chatai.storage.CompressedTextConverter;
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.OnDelete;
+import org.hibernate.annotations.OnDeleteAction;
+
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "chat_session_archives")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ChatSessionArchive {
+    
+    // Shares the primary key of the archived session (one archive blob per session)
+    @Id
+    private Long sessionId;
+    
+    @MapsId
+    @OneToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "chat_session_id")
+    @OnDelete(action = OnDeleteAction.CASCADE)
+    private ChatSession chatSession;
+    
+    @Column(name = "message_count", nullable = false)
+    private Integer messageCount;
+    
+    // Columnar JSON of all messages and reasoning, compressed by the message codec
+    @Convert(converter = CompressedTextConverter.class)
+    @Column(nullable = false, columnDefinition = "LONGBLOB")
+    private String payload;
+    
+    @CreationTimestamp
+    @Column(name = "archived_at")
+    private LocalDateTime archivedAt;
+}
@@ -41,6 +41,10 @@ public class ModelManagement {
     @Column
     private String groqModelId;
     
+    // Name of the LlmProvider serving this model; null means Groq
+    @Column(length = 50)
+    private String provider;
+    
     @CreationTimestamp
     @Column(name = "created_at", nullable = false, updatable = false)
     private LocalDateTime createdAt;
@@ -87,6 +91,9 @@ public class ModelManagement {
     public String getGroqModelId() { return groqModelId; }
     public void setGroqModelId(String groqModelId) { this.groqModelId = groqModelId; }
     
+    public String getProvider() { return provider; }
+    public void setProvider(String provider) { this.provider = provider; }
+    
     public LocalDateTime getCreatedAt() { return createdAt; }
     public void setCreatedAt(LocalDateTime createdAt) { this.createdAt = createdAt; }
     
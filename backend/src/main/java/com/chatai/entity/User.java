@@ -8,6 +8,7 @@ import lombok.Builder;
 import org.hibernate.annotations.CreationTimestamp;
 import org.hibernate.annotations.UpdateTimestamp;
 
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.HashSet;
 import java.util.Set;
@@ -40,17 +41,35 @@ public class User {
     @Column(name = "is_active")
     private Boolean isActive = true;
     
+    // Written behind by RequestLimitService together with last_request_reset
     @Builder.Default
-    @Column(name = "requests_used_today")
+    @Column(name = "requests_used_today", updatable = false)
     private Integer requestsUsedToday = 0;
     
     @Builder.Default
     @Column(name = "daily_request_limit")
     private Integer dailyRequestLimit = 100;
     
-    @Column(name = "last_request_reset")
+    @Column(name = "last_request_reset", updatable = false)
     private LocalDateTime lastRequestReset;
     
+    // Null falls back to app.user-limits.default-tokens-per-day, -1 is unlimited
+    @Column(name = "daily_token_limit")
+    private Integer dailyTokenLimit;
+    
+    // Written behind by TokenQuotaService; only meaningful for token_usage_date
+    @Builder.Default
+    @Column(name = "tokens_used_today", updatable = false)
+    private Long tokensUsedToday = 0L;
+    
+    @Column(name = "token_usage_date", updatable = false)
+    private LocalDate tokenUsageDate;
+    
+    // Bumped to revoke every JWT issued before; see TokenVersionStore. Only ever written with SQL
+    @Builder.Default
+    @Column(name = "token_version", updatable = false)
+    private Integer tokenVersion = 0;
+    
     @CreationTimestamp
     @Column(name = "created_at")
     private LocalDateTime createdAt;
@@ -59,6 +78,10 @@ public class User {
     @Column(name = "updated_at")
     private LocalDateTime updatedAt;
     
+    // Soft delete marker; rows are removed set-based by PurgeService
+    @Column(name = "deleted_at")
+    private LocalDateTime deletedAt;
+    
     @Builder.Default
     @ManyToMany(fetch = FetchType.EAGER)
     @JoinTable(
@@ -68,11 +91,12 @@ public class User {
     )
     private Set<Role> roles = new HashSet<>();
     
+    // Never cascaded: deleting through the persistence context loads every session and message
     @Builder.Default
-    @OneToMany(mappedBy = "user", cascade = CascadeType.ALL, fetch = FetchType.LAZY)
+    @OneToMany(mappedBy = "user", fetch = FetchType.LAZY)
     private Set<ChatSession> chatSessions = new HashSet<>();
     
     @Builder.Default
-    @OneToMany(mappedBy = "user", cascade = CascadeType.ALL, fetch = FetchType.LAZY)
+    @OneToMany(mappedBy = "user", fetch = FetchType.LAZY)
     private Set<UserModelPermission> modelPermissions = new HashSet<>();
 }
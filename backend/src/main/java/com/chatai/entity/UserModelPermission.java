@@ -8,6 +8,7 @@ import lombok.Builder;
 import org.hibernate.annotations.CreationTimestamp;
 import org.hibernate.annotations.UpdateTimestamp;
 
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 
 @Entity
@@ -47,6 +48,17 @@ public class UserModelPermission {
     @Column(name = "last_request_reset")
     private LocalDateTime lastRequestReset;
     
+    // Null means the model has no token limit of its own for this user
+    @Column(name = "daily_token_limit")
+    private Integer dailyTokenLimit;
+    
+    @Builder.Default
+    @Column(name = "tokens_used_today", updatable = false)
+    private Long tokensUsedToday = 0L;
+    
+    @Column(name = "token_usage_date", updatable = false)
+    private LocalDate tokenUsageDate;
+    
     @CreationTimestamp
     @Column(name = "created_at")
     private LocalDateTime createdAt;
@@ -0,0 +1,17 @@
+package com.chatai.exception;
+
+import lombok.Getter;
+
+/**
+ * Thrown when a user hits a request or stream limit; mapped to 429 with Retry-After
+ */
+@Getter
+public class RateLimitExceededException extends RuntimeException {
+    
+    private final long retryAfterSeconds;
+    
+    public RateLimitExceededException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+}
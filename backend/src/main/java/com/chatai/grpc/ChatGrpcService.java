@@ -0,0 +1,328 @@
+package com.chatai.grpc;
+
+import com.chatai.dto.chat.ChatRequest;
+import com.chatai.entity.ChatMessage;
+import com.chatai.entity.ChatSession;
+import com.chatai.exception.RateLimitExceededException;
+import com.chatai.grpc.proto.ChatApiGrpc;
+import com.chatai.grpc.proto.ChatFrame;
+import com.chatai.grpc.proto.ChatTurnRequest;
+import com.chatai.grpc.proto.GetSessionMessagesRequest;
+import com.chatai.grpc.proto.GetSessionMessagesResponse;
+import com.chatai.grpc.proto.ListModelsRequest;
+import com.chatai.grpc.proto.ListModelsResponse;
+import com.chatai.grpc.proto.ListSessionsRequest;
+import com.chatai.grpc.proto.ListSessionsResponse;
+import com.chatai.grpc.proto.Message;
+import com.chatai.grpc.proto.Model;
+import com.chatai.grpc.proto.Session;
+import com.chatai.grpc.proto.Usage;
+import com.chatai.security.GrpcAuthInterceptor;
+import com.chatai.security.UserPrincipal;
+import com.chatai.service.ChatHistoryService;
+import com.chatai.service.ChatTurnService;
+import com.chatai.service.ModelCatalog;
+import com.chatai.service.StreamFrameEncoder;
+import com.chatai.service.StreamRelayService;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.grpc.Metadata;
+import io.grpc.Status;
+import io.grpc.stub.ServerCallStreamObserver;
+import io.grpc.stub.StreamObserver;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.reactivestreams.Subscription;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.BaseSubscriber;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The chat API for internal services (chat_api.proto). Turns go through ChatTurnService like the
+ * SSE and WebSocket transports, so limits, quota and history are shared; frames are the compact
+ * events mapped to ChatFrame. Frames are only requested while the call's transport is ready,
+ * so a slow caller holds the turn back instead of buffering it here.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ChatGrpcService extends ChatApiGrpc.ChatApiImplBase {
+
+    private final ChatTurnService chatTurnService;
+    private final ChatHistoryService chatHistoryService;
+    private final StreamRelayService streamRelayService;
+    private final ModelCatalog modelCatalog;
+    private final ObjectMapper objectMapper;
+    private final Validator validator;
+
+    private final LongAdder turnsStarted = new LongAdder();
+    private final LongAdder framesSent = new LongAdder();
+    private final LongAdder cancelledTurns = new LongAdder();
+
+    @Override
+    public void streamChat(ChatTurnRequest turnRequest, StreamObserver<ChatFrame> responseObserver) {
+        UserPrincipal user = GrpcAuthInterceptor.currentUser();
+        ServerCallStreamObserver<ChatFrame> observer = (ServerCallStreamObserver<ChatFrame>) responseObserver;
+        TurnSubscriber subscriber = new TurnSubscriber(observer, user.getId());
+        observer.setOnReadyHandler(subscriber::onReady);
+        observer.setOnCancelHandler(subscriber::onCancel);
+
+        try {
+            ChatRequest request = toChatRequest(turnRequest);
+            Set<ConstraintViolation<ChatRequest>> violations = validator.validate(request);
+            if (!violations.isEmpty()) {
+                throw Status.INVALID_ARGUMENT.withDescription(violations.iterator().next().getMessage()).asRuntimeException();
+            }
+
+            ChatTurnService.Turn turn = chatTurnService.start(request, user.getId());
+            turnsStarted.increment();
+            subscriber.sessionId = turn.sessionId();
+            turn.frames().subscribe(subscriber);
+        } catch (RuntimeException e) {
+            responseObserver.onError(toStatus(e, user.getId()));
+        }
+    }
+
+    @Override
+    public void listSessions(ListSessionsRequest request, StreamObserver<ListSessionsResponse> responseObserver) {
+        try {
+            Long userId = GrpcAuthInterceptor.currentUser().getId();
+            Map<Long, Long> messageCounts = chatHistoryService.getSessionMessageCounts(userId);
+            ListSessionsResponse.Builder response = ListSessionsResponse.newBuilder();
+            for (ChatSession session : chatHistoryService.getUserSessions(userId)) {
+                response.addSessions(Session.newBuilder()
+                        .setId(session.getId())
+                        .setTitle(nullToEmpty(session.getTitle()))
+                        .setModelUsed(nullToEmpty(session.getModelUsed()))
+                        .setCreatedAt(toEpochMillis(session.getCreatedAt()))
+                        .setUpdatedAt(toEpochMillis(session.getUpdatedAt()))
+                        .setMessageCount(messageCounts.getOrDefault(session.getId(), 0L)));
+            }
+            responseObserver.onNext(response.build());
+            responseObserver.onCompleted();
+        } catch (RuntimeException e) {
+            responseObserver.onError(toStatus(e, GrpcAuthInterceptor.currentUser().getId()));
+        }
+    }
+
+    @Override
+    public void getSessionMessages(GetSessionMessagesRequest request,
+                                   StreamObserver<GetSessionMessagesResponse> responseObserver) {
+        try {
+            ChatSession session = chatHistoryService.getSession(request.getSessionId(), GrpcAuthInterceptor.currentUser().getId())
+                    .orElseThrow(() -> new RuntimeException("Session not found"));
+            GetSessionMessagesResponse.Builder response = GetSessionMessagesResponse.newBuilder();
+            for (ChatMessage message : chatHistoryService.getSessionMessagesAfter(session, request.getAfterMessageId())) {
+                response.addMessages(Message.newBuilder()
+                        .setId(message.getId())
+                        .setRole(message.getRole().name().toLowerCase())
+                        .setContent(nullToEmpty(message.getContent()))
+                        .setHasReasoning(Boolean.TRUE.equals(message.getHasReasoning()))
+                        .setModelUsed(nullToEmpty(message.getModelUsed()))
+                        .setTokensUsed(message.getTokensUsed() != null ? message.getTokensUsed() : 0)
+                        .setPartial(Boolean.TRUE.equals(message.getPartial()))
+                        .setCreatedAt(toEpochMillis(message.getCreatedAt())));
+            }
+            responseObserver.onNext(response.build());
+            responseObserver.onCompleted();
+        } catch (RuntimeException e) {
+            responseObserver.onError(toStatus(e, GrpcAuthInterceptor.currentUser().getId()));
+        }
+    }
+
+    @Override
+    public void listModels(ListModelsRequest request, StreamObserver<ListModelsResponse> responseObserver) {
+        // Same in-memory catalog as GET /api/chat/models
+        ListModelsResponse.Builder response = ListModelsResponse.newBuilder();
+        for (ModelCatalog.CatalogModel model : modelCatalog.current().getEnabledModels()) {
+            response.addModels(Model.newBuilder()
+                    .setModelId(model.modelId())
+                    .setName(nullToEmpty(model.modelName()))
+                    .setDescription(nullToEmpty(model.description()))
+                    .setCategory(nullToEmpty(model.category())));
+        }
+        responseObserver.onNext(response.build());
+        responseObserver.onCompleted();
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("turnsStarted", turnsStarted.sum());
+        stats.put("framesSent", framesSent.sum());
+        stats.put("cancelledTurns", cancelledTurns.sum());
+        return stats;
+    }
+
+    private static ChatRequest toChatRequest(ChatTurnRequest turnRequest) {
+        ChatRequest request = new ChatRequest();
+        request.setMessage(turnRequest.getMessage());
+        request.setModel(turnRequest.getModel().isEmpty() ? null : turnRequest.getModel());
+        if (turnRequest.hasTemperature()) {
+            request.setTemperature(turnRequest.getTemperature());
+        }
+        if (turnRequest.hasMaxTokens()) {
+            request.setMaxTokens(turnRequest.getMaxTokens());
+        }
+        if (turnRequest.hasSessionId()) {
+            request.setSessionId(turnRequest.getSessionId());
+        }
+        if (!turnRequest.getReasoning().isEmpty()) {
+            request.setReasoning(turnRequest.getReasoning());
+        }
+        // ChatFrame carries text and usage only, which is exactly the compact format
+        request.setStreamFormat(StreamFrameEncoder.FORMAT_COMPACT);
+        return request;
+    }
+
+    // Same mapping as GlobalExceptionHandler, in gRPC status codes
+    private static Throwable toStatus(RuntimeException e, Long userId) {
+        if (e instanceof io.grpc.StatusRuntimeException) {
+            return e;
+        }
+        if (e instanceof RateLimitExceededException limited) {
+            Metadata trailers = new Metadata();
+            trailers.put(GrpcAuthInterceptor.RETRY_AFTER, String.valueOf(limited.getRetryAfterSeconds()));
+            return Status.RESOURCE_EXHAUSTED.withDescription(e.getMessage()).asRuntimeException(trailers);
+        }
+        if (e instanceof AccessDeniedException) {
+            return Status.PERMISSION_DENIED.withDescription("Access denied: Insufficient permissions").asRuntimeException();
+        }
+        String error = e.getMessage() != null ? e.getMessage() : "Unexpected error";
+        if (error.contains("not found") || error.contains("access denied")) {
+            return Status.NOT_FOUND.withDescription(error).asRuntimeException();
+        }
+        log.error("gRPC call failed for user {}: {}", userId, error);
+        return Status.INTERNAL.withDescription(error).asRuntimeException();
+    }
+
+    private static String nullToEmpty(String value) {
+        return value != null ? value : "";
+    }
+
+    private static long toEpochMillis(LocalDateTime dateTime) {
+        return dateTime != null ? dateTime.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli() : 0;
+    }
+
+    /**
+     * Requests one frame at a time while the call is ready; otherwise waits for its onReady signal
+     */
+    private final class TurnSubscriber extends BaseSubscriber<ServerSentEvent<String>> {
+        private final ServerCallStreamObserver<ChatFrame> observer;
+        private final Long userId;
+        private final AtomicBoolean waiting = new AtomicBoolean();
+        private volatile Long sessionId;
+
+        private TurnSubscriber(ServerCallStreamObserver<ChatFrame> observer, Long userId) {
+            this.observer = observer;
+            this.userId = userId;
+        }
+
+        @Override
+        protected void hookOnSubscribe(Subscription subscription) {
+            requestWhenReady();
+        }
+
+        @Override
+        protected void hookOnNext(ServerSentEvent<String> frame) {
+            if (StreamFrameEncoder.EVENT_ERROR.equals(frame.event())) {
+                // Last frame of a failed turn; what was generated is in history as a partial message
+                if (!observer.isCancelled()) {
+                    observer.onError(Status.UNAVAILABLE.withDescription(frame.data()).asRuntimeException());
+                }
+                cancel();
+                return;
+            }
+            ChatFrame message = toFrame(frame);
+            if (message != null && !observer.isCancelled()) {
+                observer.onNext(message);
+                framesSent.increment();
+            }
+            requestWhenReady();
+        }
+
+        @Override
+        protected void hookOnComplete() {
+            if (!observer.isCancelled()) {
+                observer.onCompleted();
+            }
+        }
+
+        @Override
+        protected void hookOnError(Throwable error) {
+            if (!observer.isCancelled()) {
+                observer.onError(Status.INTERNAL.withDescription("Stream failed").asRuntimeException());
+            }
+        }
+
+        // Marked waiting first, so an onReady between the check and the mark is not lost
+        private void requestWhenReady() {
+            waiting.set(true);
+            if (observer.isReady() && waiting.compareAndSet(true, false)) {
+                request(1);
+            }
+        }
+
+        void onReady() {
+            if (upstream() != null && waiting.compareAndSet(true, false)) {
+                request(1);
+            }
+        }
+
+        // gRPC callers have no way to resume, so a cancelled call (or missed deadline) stops the turn
+        void onCancel() {
+            cancelledTurns.increment();
+            Long session = sessionId;
+            if (session != null) {
+                streamRelayService.cancel(userId, session);
+            }
+            dispose();
+        }
+
+        private ChatFrame toFrame(ServerSentEvent<String> frame) {
+            ChatFrame.Builder message = ChatFrame.newBuilder();
+            if (frame.id() != null) {
+                message.setId(frame.id());
+            }
+            String data = frame.data();
+            switch (frame.event() != null ? frame.event() : "") {
+                case StreamFrameEncoder.EVENT_SESSION -> message.setSessionId(Long.parseLong(data));
+                case StreamFrameEncoder.EVENT_CONTENT -> message.setContent(data);
+                case StreamFrameEncoder.EVENT_REASONING -> message.setReasoning(data);
+                case StreamFrameEncoder.EVENT_USAGE -> message.setUsage(toUsage(data));
+                default -> {
+                    return null;
+                }
+            }
+            return message.build();
+        }
+
+        private Usage toUsage(String data) {
+            Usage.Builder usage = Usage.newBuilder();
+            try {
+                JsonNode meta = objectMapper.readTree(data);
+                usage.setModel(meta.path("model").asText(""));
+                if (meta.hasNonNull("finish_reason")) {
+                    usage.setFinishReason(meta.get("finish_reason").asText());
+                }
+                JsonNode tokens = meta.path("usage");
+                usage.setPromptTokens(tokens.path("prompt_tokens").asLong());
+                usage.setCompletionTokens(tokens.path("completion_tokens").asLong());
+                usage.setTotalTokens(tokens.path("total_tokens").asLong());
+            } catch (Exception e) {
+                log.warn("Unreadable usage frame: {}", e.getMessage());
+            }
+            return usage.build();
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package com.chatai.grpc;
+
+import com.chatai.security.GrpcAuthInterceptor;
+import com.chatai.service.TransportStats;
+import io.grpc.Metadata;
+import io.grpc.Server;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptors;
+import io.grpc.Status;
+import io.grpc.netty.shaded.io.grpc.netty.NettyServerBuilder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Netty gRPC server for {@link ChatGrpcService}, off by default and bound to an internal address
+ * (app.grpc.address, app.grpc.port). Netty's event loops only do I/O; calls run on a dedicated
+ * fixed pool, so internal traffic neither takes Tomcat request threads nor is starved by them.
+ * The pool's queue is bounded: a new call that finds it full is refused with RESOURCE_EXHAUSTED.
+ * Stopped before the rest of the context so running turns get app.grpc.shutdown-grace-ms to finish.
+ */
+@Component
+@Slf4j
+public class GrpcServer implements SmartLifecycle, TransportStats {
+
+    private final ChatGrpcService chatGrpcService;
+    private final GrpcAuthInterceptor authInterceptor;
+    private final boolean enabled;
+    private final String address;
+    private final int port;
+    private final int threads;
+    private final int queueCapacity;
+    private final int maxConcurrentCallsPerConnection;
+    private final int maxMessageBytes;
+    private final long keepAliveMillis;
+    private final long shutdownGraceMillis;
+
+    // Calls refused by the executor supplier, until the interceptor has seen them
+    private final Set<ServerCall<?, ?>> refusedCalls = ConcurrentHashMap.newKeySet();
+    private final LongAdder rejected = new LongAdder();
+
+    private ThreadPoolExecutor executor;
+    private Server server;
+
+    public GrpcServer(ChatGrpcService chatGrpcService,
+                      GrpcAuthInterceptor authInterceptor,
+                      @Value("${app.grpc.enabled:false}") boolean enabled,
+                      @Value("${app.grpc.address:127.0.0.1}") String address,
+                      @Value("${app.grpc.port:9090}") int port,
+                      @Value("${app.grpc.threads:16}") int threads,
+                      @Value("${app.grpc.queue-capacity:256}") int queueCapacity,
+                      @Value("${app.grpc.max-concurrent-calls-per-connection:100}") int maxConcurrentCallsPerConnection,
+                      @Value("${app.grpc.max-message-bytes:65536}") int maxMessageBytes,
+                      @Value("${app.grpc.keep-alive-ms:60000}") long keepAliveMillis,
+                      @Value("${app.grpc.shutdown-grace-ms:10000}") long shutdownGraceMillis) {
+        this.chatGrpcService = chatGrpcService;
+        this.authInterceptor = authInterceptor;
+        this.enabled = enabled;
+        this.address = address;
+        this.port = port;
+        this.threads = threads;
+        this.queueCapacity = queueCapacity;
+        this.maxConcurrentCallsPerConnection = maxConcurrentCallsPerConnection;
+        this.maxMessageBytes = maxMessageBytes;
+        this.keepAliveMillis = keepAliveMillis;
+        this.shutdownGraceMillis = shutdownGraceMillis;
+    }
+
+    @Override
+    public synchronized void start() {
+        if (!enabled || server != null) {
+            return;
+        }
+        AtomicInteger threadCount = new AtomicInteger();
+        // New calls are refused before the queue fills up; a callback of an admitted call that still
+        // finds it full runs on the submitting thread rather than failing the call
+        executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "grpc-call-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.CallerRunsPolicy());
+        try {
+            server = NettyServerBuilder.forAddress(new InetSocketAddress(address, port))
+                    // Method lookup runs on the transport thread, so a full queue is seen before a call is queued
+                    .directExecutor()
+                    .callExecutor(this::callExecutor)
+                    // Listed last, so it runs first
+                    .addService(ServerInterceptors.intercept(chatGrpcService, authInterceptor, this::dropRefused))
+                    .maxConcurrentCallsPerConnection(maxConcurrentCallsPerConnection)
+                    // Requests are single chat messages; anything larger is refused before parsing
+                    .maxInboundMessageSize(maxMessageBytes)
+                    .keepAliveTime(keepAliveMillis, TimeUnit.MILLISECONDS)
+                    .permitKeepAliveTime(keepAliveMillis / 2, TimeUnit.MILLISECONDS)
+                    .build()
+                    .start();
+        } catch (IOException e) {
+            executor.shutdownNow();
+            throw new UncheckedIOException("Could not start gRPC server on " + address + ":" + port, e);
+        }
+        log.info("gRPC server listening on {}:{} with {} call threads", address, port, threads);
+    }
+
+    private <Q, R> Executor callExecutor(ServerCall<Q, R> call, Metadata headers) {
+        if (executor.getQueue().remainingCapacity() > 0) {
+            return executor;
+        }
+        rejected.increment();
+        refusedCalls.add(call);
+        call.close(Status.RESOURCE_EXHAUSTED.withDescription("gRPC server is busy"), new Metadata());
+        // Only the no-op listener below runs for a refused call
+        return Runnable::run;
+    }
+
+    private <Q, R> ServerCall.Listener<Q> dropRefused(ServerCall<Q, R> call, Metadata headers,
+                                                      ServerCallHandler<Q, R> next) {
+        if (refusedCalls.remove(call)) {
+            return new ServerCall.Listener<>() {
+            };
+        }
+        return next.startCall(call, headers);
+    }
+
+    @Override
+    public synchronized void stop() {
+        if (server == null) {
+            return;
+        }
+        server.shutdown();
+        try {
+            if (!server.awaitTermination(shutdownGraceMillis, TimeUnit.MILLISECONDS)) {
+                server.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            server.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        executor.shutdownNow();
+        server = null;
+    }
+
+    @Override
+    public synchronized boolean isRunning() {
+        return server != null;
+    }
+
+    // Stop before the web server and the services the calls depend on
+    @Override
+    public int getPhase() {
+        return Integer.MAX_VALUE - 1;
+    }
+
+    @Override
+    public String getTransportName() {
+        return "grpc";
+    }
+    
+    @Override
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("address", address);
+        stats.put("port", port);
+        ThreadPoolExecutor pool = executor;
+        if (pool != null) {
+            stats.put("threads", pool.getMaximumPoolSize());
+            stats.put("activeCalls", pool.getActiveCount());
+            stats.put("queuedCalls", pool.getQueue().size());
+            stats.put("queueCapacity", queueCapacity);
+        }
+        stats.put("rejectedCalls", rejected.sum());
+        stats.putAll(chatGrpcService.getStats());
+        return stats;
+    }
+}
@@ -0,0 +1,28 @@
+package com.chatai.llm;
+
+import com.chatai.config.GroqConfig;
+import com.fasterxml.jackson.databind.JsonNode;
+import org.springframework.web.reactive.function.client.WebClient;
+
+/**
+ * Groq's OpenAI-compatible endpoint; usage may also arrive under x_groq.usage
+ */
+public class GroqProvider extends OpenAiCompatibleProvider {
+    
+    public static final String NAME = "groq";
+    
+    public GroqProvider(GroqConfig config, WebClient.Builder webClientBuilder) {
+        super(NAME, webClientBuilder, config.getBaseUrl(), "/openai/v1/chat/completions", config.getApiKey(),
+                new LlmCapabilities(true, true));
+    }
+    
+    @Override
+    public JsonNode extractUsage(JsonNode chunk) {
+        JsonNode usage = super.extractUsage(chunk);
+        if (usage != null) {
+            return usage;
+        }
+        usage = chunk.path("x_groq").path("usage");
+        return usage.hasNonNull("total_tokens") ? usage : null;
+    }
+}
@@ -0,0 +1,10 @@
+package com.chatai.llm;
+
+/**
+ * What a provider supports beyond plain chat completions.
+ *
+ * @param streamUsage accepts stream_options.include_usage and reports usage in the last chunk
+ * @param reasoning   may emit reasoning (delta.reasoning or &lt;think&gt; blocks)
+ */
+public record LlmCapabilities(boolean streamUsage, boolean reasoning) {
+}
@@ -0,0 +1,43 @@
+package com.chatai.llm;
+
+import com.chatai.dto.GroqRequest;
+import com.chatai.dto.GroqResponse;
+import com.fasterxml.jackson.databind.JsonNode;
+import reactor.core.publisher.Flux;
+
+/**
+ * A backend that serves OpenAI-style chat completions (Groq, a local llama.cpp/vLLM server, a stub).
+ * Which provider serves a model is decided per model_management row.
+ */
+public interface LlmProvider {
+    
+    String getName();
+    
+    LlmCapabilities getCapabilities();
+    
+    /**
+     * Blocking, non-streaming completion
+     */
+    GroqResponse complete(GroqRequest request);
+    
+    /**
+     * Streaming completion; emits the upstream SSE payload as it arrives (one or more "data: ..." lines per element)
+     */
+    Flux<String> stream(GroqRequest request);
+    
+    /**
+     * Usage object (prompt/completion/total tokens) of one parsed stream chunk, or null when it carries none
+     */
+    default JsonNode extractUsage(JsonNode chunk) {
+        JsonNode usage = chunk.path("usage");
+        return usage.hasNonNull("total_tokens") ? usage : null;
+    }
+    
+    /**
+     * Total tokens reported in one parsed stream chunk, or null when the chunk carries no usage
+     */
+    default Long extractTotalTokens(JsonNode chunk) {
+        JsonNode usage = extractUsage(chunk);
+        return usage != null ? usage.get("total_tokens").asLong() : null;
+    }
+}
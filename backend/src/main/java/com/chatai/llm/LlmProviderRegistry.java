@@ -0,0 +1,74 @@
+package com.chatai.llm;
+
+import com.chatai.config.GroqConfig;
+import com.chatai.config.LlmProperties;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * All configured providers by name. Groq is always present and serves models without a provider.
+ */
+@Component
+@Slf4j
+public class LlmProviderRegistry {
+    
+    private final Map<String, LlmProvider> providers;
+    
+    public LlmProviderRegistry(GroqConfig groqConfig, LlmProperties properties,
+                               WebClient.Builder webClientBuilder, ObjectMapper objectMapper) {
+        Map<String, LlmProvider> byName = new LinkedHashMap<>();
+        byName.put(GroqProvider.NAME, new GroqProvider(groqConfig, webClientBuilder));
+        
+        properties.getProviders().forEach((name, config) -> {
+            if (byName.containsKey(name)) {
+                throw new IllegalStateException("Duplicate LLM provider name: " + name);
+            }
+            LlmProvider provider = switch (config.getType()) {
+                case "openai" -> new OpenAiCompatibleProvider(name, webClientBuilder, config.getBaseUrl(),
+                        config.getChatPath(), config.getApiKey(),
+                        new LlmCapabilities(config.isStreamUsage(), config.isReasoning()));
+                case "stub" -> new StubProvider(name, objectMapper, config.getFirstTokenDelayMs(),
+                        config.getTokensPerSecond(), config.getResponseTokens());
+                default -> throw new IllegalStateException("Unknown LLM provider type '" + config.getType() + "' for " + name);
+            };
+            byName.put(name, provider);
+        });
+        
+        this.providers = Collections.unmodifiableMap(byName);
+        log.info("LLM providers: {}", providers.keySet());
+    }
+    
+    /**
+     * Provider by name; blank means Groq
+     */
+    public LlmProvider get(String name) {
+        if (!StringUtils.hasText(name)) {
+            return getDefault();
+        }
+        LlmProvider provider = providers.get(name);
+        if (provider == null) {
+            throw new RuntimeException("LLM provider not found: " + name);
+        }
+        return provider;
+    }
+    
+    public LlmProvider getDefault() {
+        return providers.get(GroqProvider.NAME);
+    }
+    
+    public boolean contains(String name) {
+        return !StringUtils.hasText(name) || providers.containsKey(name);
+    }
+    
+    public Set<String> getNames() {
+        return providers.keySet();
+    }
+}
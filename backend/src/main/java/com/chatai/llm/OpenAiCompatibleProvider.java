@@ -0,0 +1,68 @@
+package com.chatai.llm;
+
+import com.chatai.dto.GroqRequest;
+import com.chatai.dto.GroqResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.util.StringUtils;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+
+/**
+ * Any server speaking the OpenAI chat completions protocol. The WebClient is built once per
+ * provider; requests only differ in their body.
+ */
+@Slf4j
+public class OpenAiCompatibleProvider implements LlmProvider {
+    
+    private final String name;
+    private final String chatPath;
+    private final LlmCapabilities capabilities;
+    private final WebClient webClient;
+    
+    public OpenAiCompatibleProvider(String name, WebClient.Builder webClientBuilder, String baseUrl, String chatPath,
+                                    String apiKey, LlmCapabilities capabilities) {
+        this.name = name;
+        this.chatPath = chatPath;
+        this.capabilities = capabilities;
+        
+        WebClient.Builder builder = webClientBuilder.clone()
+                .baseUrl(baseUrl)
+                .defaultHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE);
+        if (StringUtils.hasText(apiKey)) {
+            builder.defaultHeader(HttpHeaders.AUTHORIZATION, "Bearer " + apiKey);
+        }
+        this.webClient = builder.build();
+        log.info("LLM provider '{}' -> {}{}", name, baseUrl, chatPath);
+    }
+    
+    @Override
+    public String getName() {
+        return name;
+    }
+    
+    @Override
+    public LlmCapabilities getCapabilities() {
+        return capabilities;
+    }
+    
+    @Override
+    public GroqResponse complete(GroqRequest request) {
+        return webClient.post()
+                .uri(chatPath)
+                .bodyValue(request)
+                .retrieve()
+                .bodyToMono(GroqResponse.class)
+                .block();
+    }
+    
+    @Override
+    public Flux<String> stream(GroqRequest request) {
+        return webClient.post()
+                .uri(chatPath)
+                .bodyValue(request)
+                .retrieve()
+                .bodyToFlux(String.class);
+    }
+}
@@ -0,0 +1,100 @@
+package com.chatai.llm;
+
+import com.chatai.dto.GroqRequest;
+import com.chatai.dto.GroqResponse;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Synthetic in-process backend for offline runs and load tests: streams a fixed number of
+ * word tokens at a configured pace in the OpenAI chunk format, followed by a usage chunk.
+ */
+public class StubProvider implements LlmProvider {
+    
+    private static final String[] WORDS = {
+        "Đây", "là", "câu", "trả", "lời", "mô", "phỏng", "từ", "máy", "chủ", "thử", "nghiệm", "nội", "bộ."
+    };
+    
+    private final String name;
+    private final ObjectMapper objectMapper;
+    private final Duration firstTokenDelay;
+    private final Duration tokenInterval;
+    private final int responseTokens;
+    
+    public StubProvider(String name, ObjectMapper objectMapper, int firstTokenDelayMs, int tokensPerSecond, int responseTokens) {
+        this.name = name;
+        this.objectMapper = objectMapper;
+        this.firstTokenDelay = Duration.ofMillis(firstTokenDelayMs);
+        this.tokenInterval = Duration.ofMillis(Math.max(1, 1000 / Math.max(1, tokensPerSecond)));
+        this.responseTokens = responseTokens;
+    }
+    
+    @Override
+    public String getName() {
+        return name;
+    }
+    
+    @Override
+    public LlmCapabilities getCapabilities() {
+        return new LlmCapabilities(true, false);
+    }
+    
+    @Override
+    public GroqResponse complete(GroqRequest request) {
+        GroqResponse.Message message = new GroqResponse.Message();
+        message.setRole("assistant");
+        message.setContent(IntStream.range(0, tokenCount(request)).mapToObj(this::word).collect(Collectors.joining()));
+        GroqResponse.Choice choice = new GroqResponse.Choice();
+        choice.setIndex(0);
+        choice.setMessage(message);
+        choice.setFinish_reason("stop");
+        GroqResponse response = new GroqResponse();
+        response.setModel(request.getModel());
+        response.setChoices(List.of(choice));
+        return response;
+    }
+    
+    @Override
+    public Flux<String> stream(GroqRequest request) {
+        int tokens = tokenCount(request);
+        long promptTokens = request.getMessages().stream()
+                .mapToLong(msg -> msg.getContent() != null ? (msg.getContent().length() + 3) / 4 : 0)
+                .sum();
+        
+        Flux<String> content = Flux.interval(firstTokenDelay, tokenInterval)
+                .take(tokens)
+                .map(index -> chunk(request.getModel(), word(index.intValue())));
+        Flux<String> usage = Flux.just(usageChunk(request.getModel(), promptTokens, tokens), "data: [DONE]");
+        return content.concatWith(usage);
+    }
+    
+    private int tokenCount(GroqRequest request) {
+        return request.getMax_tokens() != null ? Math.min(responseTokens, request.getMax_tokens()) : responseTokens;
+    }
+    
+    private String word(int index) {
+        return (index == 0 ? "" : " ") + WORDS[index % WORDS.length];
+    }
+    
+    private String chunk(String model, String content) {
+        ObjectNode node = objectMapper.createObjectNode().put("object", "chat.completion.chunk").put("model", model);
+        node.putArray("choices").addObject().put("index", 0).putObject("delta").put("content", content);
+        return "data: " + node;
+    }
+    
+    private String usageChunk(String model, long promptTokens, long completionTokens) {
+        ObjectNode node = objectMapper.createObjectNode().put("object", "chat.completion.chunk").put("model", model);
+        node.putArray("choices");
+        node.putObject("usage")
+                .put("prompt_tokens", promptTokens)
+                .put("completion_tokens", completionTokens)
+                .put("total_tokens", promptTokens + completionTokens);
+        return "data: " + node;
+    }
+}
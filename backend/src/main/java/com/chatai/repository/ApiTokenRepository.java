@@ -0,0 +1,21 @@
+package com.chatai.repository;
+
+import com.chatai.entity.ApiToken;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface ApiTokenRepository extends JpaRepository<ApiToken, Long> {
+    
+    List<ApiToken> findByUserIdOrderByCreatedAtDesc(Long userId);
+    
+    Optional<ApiToken> findByIdAndUserId(Long id, Long userId);
+    
+    @Query("SELECT COUNT(t) FROM ApiToken t WHERE t.user.id = :userId AND t.revokedAt IS NULL")
+    long countActiveByUserId(@Param("userId") Long userId);
+}
@@ -0,0 +1,25 @@
+package com.chatai.repository;
+
+import com.chatai.entity.ChatMessageReasoning;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface ChatMessageReasoningRepository extends JpaRepository<ChatMessageReasoning, Long> {
+    
+    @Query("SELECT r.thinking FROM ChatMessageReasoning r JOIN r.chatMessage cm JOIN cm.chatSession cs " +
+           "WHERE cm.id = :messageId AND cs.id = :sessionId AND cs.user.id = :userId AND cs.deletedAt IS NULL")
+    Optional<String> findThinkingByMessageIdAndSessionIdAndUserId(@Param("messageId") Long messageId,
+                                                                  @Param("sessionId") Long sessionId,
+                                                                  @Param("userId") Long userId);
+    
+    @Modifying
+    @Query("DELETE FROM ChatMessageReasoning r WHERE r.messageId IN :messageIds")
+    int deleteByMessageIdIn(@Param("messageIds") List<Long> messageIds);
+}
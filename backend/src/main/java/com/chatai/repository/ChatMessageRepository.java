@@ -3,6 +3,7 @@ package com.chatai.repository;
 import com.chatai.entity.ChatMessage;
 import com.chatai.entity.ChatSession;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
@@ -21,10 +22,23 @@ public interface ChatMessageRepository extends JpaRepository<ChatMessage, Long>
     
     long countByChatSessionId(Long chatSessionId);
     
-    @Query("SELECT cm FROM ChatMessage cm JOIN cm.chatSession cs WHERE cs.id = :sessionId AND cs.user.id = :userId ORDER BY cm.createdAt ASC")
+    @Query("SELECT cm FROM ChatMessage cm JOIN cm.chatSession cs WHERE cs.id = :sessionId AND cs.user.id = :userId AND cs.deletedAt IS NULL ORDER BY cm.createdAt ASC")
     List<ChatMessage> findByChatSessionIdAndUserIdOrderByCreatedAtAsc(@Param("sessionId") Long sessionId, @Param("userId") Long userId);
     
-    @Query("SELECT cs.id as sessionId, COUNT(cm) as messageCount FROM ChatMessage cm JOIN cm.chatSession cs WHERE cs.user.id = :userId GROUP BY cs.id")
+    // chat_messages is range-partitioned by created_at: the :since lower bound lets MySQL prune
+    // every monthly partition older than the session itself
+    @Query("SELECT cm FROM ChatMessage cm WHERE cm.chatSession.id = :sessionId AND cm.createdAt >= :since ORDER BY cm.createdAt ASC")
+    List<ChatMessage> findSessionMessagesSince(@Param("sessionId") Long sessionId, @Param("since") LocalDateTime since);
+    
+    // Partial answers are returned again until they are complete, since checkpoints rewrite them in place
+    @Query("SELECT cm FROM ChatMessage cm WHERE cm.chatSession.id = :sessionId AND cm.createdAt >= :since AND (cm.id > :afterId OR cm.partial = true) ORDER BY cm.id ASC")
+    List<ChatMessage> findSessionMessagesSinceAfterId(@Param("sessionId") Long sessionId, @Param("since") LocalDateTime since, @Param("afterId") Long afterId);
+    
+    // Single-row aggregate: [messageCount, maxMessageId] used for session ETags
+    @Query("SELECT COUNT(cm), MAX(cm.id) FROM ChatMessage cm WHERE cm.chatSession.id = :sessionId AND cm.createdAt >= :since")
+    List<Object[]> findSessionMessageStatsRaw(@Param("sessionId") Long sessionId, @Param("since") LocalDateTime since);
+    
+    @Query("SELECT cs.id as sessionId, COUNT(cm) as messageCount FROM ChatMessage cm JOIN cm.chatSession cs WHERE cs.user.id = :userId AND cs.deletedAt IS NULL GROUP BY cs.id")
     List<Object[]> findSessionMessageCountsByUserIdRaw(@Param("userId") Long userId);
     
     default Map<Long, Long> findSessionMessageCountsByUserId(Long userId) {
@@ -35,15 +49,36 @@ public interface ChatMessageRepository extends JpaRepository<ChatMessage, Long>
                 ));
     }
     
-    @Query("SELECT COUNT(cm) FROM ChatMessage cm WHERE cm.chatSession.user.id = :userId AND cm.createdAt >= :date")
+    // Messages of soft-deleted sessions stay in the table until purged but no longer count
+    @Query("SELECT COUNT(cm) FROM ChatMessage cm WHERE cm.chatSession.deletedAt IS NULL")
+    long countLiveMessages();
+    
+    @Query("SELECT COUNT(cm) FROM ChatMessage cm WHERE cm.chatSession.user.id = :userId AND cm.chatSession.deletedAt IS NULL AND cm.createdAt >= :date")
     long countUserMessagesAfter(@Param("userId") Long userId, @Param("date") LocalDateTime date);
     
-    @Query("SELECT SUM(cm.tokensUsed) FROM ChatMessage cm WHERE cm.chatSession.user.id = :userId AND cm.createdAt >= :date")
-    Long sumTokensUsedByUserAfter(@Param("userId") Long userId, @Param("date") LocalDateTime date);
+    @Query("SELECT COUNT(cm) FROM ChatMessage cm WHERE cm.chatSession.user.id = :userId AND cm.chatSession.deletedAt IS NULL")
+    long countUserMessages(@Param("userId") Long userId);
     
-    @Query("SELECT cm FROM ChatMessage cm WHERE cm.chatSession.user.id = :userId AND cm.content LIKE %:search%")
-    List<ChatMessage> searchUserMessages(@Param("userId") Long userId, @Param("search") String search);
+    @Query("SELECT SUM(cm.tokensUsed) FROM ChatMessage cm WHERE cm.chatSession.user.id = :userId AND cm.chatSession.deletedAt IS NULL AND cm.createdAt >= :date")
+    Long sumTokensUsedByUserAfter(@Param("userId") Long userId, @Param("date") LocalDateTime date);
     
-    @Query("SELECT COUNT(cm) FROM ChatMessage cm WHERE cm.role = 'ASSISTANT' AND cm.createdAt >= :date")
+    @Query("SELECT COUNT(cm) FROM ChatMessage cm WHERE cm.role = 'ASSISTANT' AND cm.createdAt >= :date AND cm.chatSession.deletedAt IS NULL")
     long countAssistantMessagesAfter(@Param("date") LocalDateTime date);
+    
+    // Half-open range on the partition key so only the partitions covering [from, to) are scanned
+    @Query("SELECT COUNT(cm) FROM ChatMessage cm WHERE cm.role = 'ASSISTANT' AND cm.createdAt >= :from AND cm.createdAt < :to AND cm.chatSession.deletedAt IS NULL")
+    long countAssistantMessagesBetween(@Param("from") LocalDateTime from, @Param("to") LocalDateTime to);
+    
+    // Content is stored compressed, so a checkpoint rewrites the whole value instead of appending in SQL
+    @Modifying
+    @Query("UPDATE ChatMessage cm SET cm.content = :content, cm.hasReasoning = :hasReasoning, cm.tokensUsed = :tokensUsed, "
+            + "cm.partial = :partial WHERE cm.id = :id AND cm.createdAt = :createdAt")
+    int updateStreamedContent(@Param("id") Long id, @Param("createdAt") LocalDateTime createdAt,
+                              @Param("content") String content, @Param("hasReasoning") Boolean hasReasoning,
+                              @Param("tokensUsed") Integer tokensUsed, @Param("partial") Boolean partial);
+    
+    // Deletes only the given rows, so a message written after they were read is never lost
+    @Modifying
+    @Query("DELETE FROM ChatMessage cm WHERE cm.chatSession.id = :sessionId AND cm.id IN :ids")
+    int deleteBySessionIdAndIdIn(@Param("sessionId") Long sessionId, @Param("ids") List<Long> ids);
 }
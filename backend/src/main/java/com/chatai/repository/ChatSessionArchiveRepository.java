@@ -0,0 +1,37 @@
+package com.chatai.repository;
+
+import com.chatai.entity.ChatSessionArchive;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+@Repository
+public interface ChatSessionArchiveRepository extends JpaRepository<ChatSessionArchive, Long> {
+    
+    // Row lock so concurrent readers rehydrate an archived session only once
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT a FROM ChatSessionArchive a WHERE a.sessionId = :sessionId")
+    Optional<ChatSessionArchive> findByIdForUpdate(@Param("sessionId") Long sessionId);
+    
+    @Query("SELECT a.messageCount FROM ChatSessionArchive a WHERE a.sessionId = :sessionId")
+    Optional<Integer> findMessageCountBySessionId(@Param("sessionId") Long sessionId);
+    
+    @Query("SELECT a.sessionId, a.messageCount FROM ChatSessionArchive a WHERE a.chatSession.user.id = :userId")
+    List<Object[]> findArchivedMessageCountsByUserIdRaw(@Param("userId") Long userId);
+    
+    default Map<Long, Long> findArchivedMessageCountsByUserId(Long userId) {
+        return findArchivedMessageCountsByUserIdRaw(userId).stream()
+                .collect(Collectors.toMap(
+                    row -> (Long) row[0], // sessionId
+                    row -> ((Number) row[1]).longValue() // messageCount
+                ));
+    }
+}
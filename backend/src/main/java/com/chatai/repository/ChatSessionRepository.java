@@ -2,7 +2,9 @@ package com.chatai.repository;
 
 import com.chatai.entity.ChatSession;
 import com.chatai.entity.User;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
@@ -16,20 +18,55 @@ public interface ChatSessionRepository extends JpaRepository<ChatSession, Long>
     
     List<ChatSession> findByUserOrderByUpdatedAtDesc(User user);
     
-    List<ChatSession> findByUserIdOrderByUpdatedAtDesc(Long userId);
+    // Soft-deleted sessions are hidden immediately and purged later by PurgeService
+    @Query("SELECT cs FROM ChatSession cs WHERE cs.user.id = :userId AND cs.deletedAt IS NULL ORDER BY cs.updatedAt DESC")
+    List<ChatSession> findByUserIdOrderByUpdatedAtDesc(@Param("userId") Long userId);
     
-    Optional<ChatSession> findByIdAndUserId(Long id, Long userId);
+    @Query("SELECT cs FROM ChatSession cs WHERE cs.id = :id AND cs.user.id = :userId AND cs.deletedAt IS NULL")
+    Optional<ChatSession> findByIdAndUserId(@Param("id") Long id, @Param("userId") Long userId);
     
-    @Query("SELECT cs FROM ChatSession cs WHERE cs.user.id = :userId AND cs.title LIKE %:search%")
+    @Query("SELECT cs FROM ChatSession cs WHERE cs.user.id = :userId AND cs.deletedAt IS NULL AND cs.title LIKE %:search%")
     List<ChatSession> searchUserSessions(@Param("userId") Long userId, @Param("search") String search);
     
-    @Query("SELECT COUNT(cs) FROM ChatSession cs WHERE cs.user.id = :userId")
+    @Query("SELECT COUNT(cs) FROM ChatSession cs WHERE cs.user.id = :userId AND cs.deletedAt IS NULL")
     long countByUserId(@Param("userId") Long userId);
     
-    @Query("SELECT cs FROM ChatSession cs WHERE cs.createdAt BETWEEN :startDate AND :endDate")
+    // Single-row aggregate: [sessionCount, maxUpdatedAt, maxSessionId] used for session list ETags
+    @Query("SELECT COUNT(cs), MAX(cs.updatedAt), MAX(cs.id) FROM ChatSession cs WHERE cs.user.id = :userId AND cs.deletedAt IS NULL")
+    List<Object[]> findUserSessionStatsRaw(@Param("userId") Long userId);
+    
+    @Query("SELECT cs FROM ChatSession cs WHERE cs.createdAt BETWEEN :startDate AND :endDate AND cs.deletedAt IS NULL")
     List<ChatSession> findByCreatedAtBetween(@Param("startDate") LocalDateTime startDate, 
                                            @Param("endDate") LocalDateTime endDate);
     
-    @Query("SELECT COUNT(cs) FROM ChatSession cs WHERE cs.createdAt >= :date")
+    @Query("SELECT COUNT(cs) FROM ChatSession cs WHERE cs.createdAt >= :date AND cs.deletedAt IS NULL")
     long countSessionsCreatedAfter(@Param("date") LocalDateTime date);
+    
+    long countByDeletedAtIsNull();
+    
+    @Query("SELECT cs.id FROM ChatSession cs WHERE cs.archivedAt IS NULL AND cs.deletedAt IS NULL AND cs.updatedAt < :cutoff ORDER BY cs.updatedAt ASC")
+    List<Long> findIdleSessionIds(@Param("cutoff") LocalDateTime cutoff, Pageable pageable);
+    
+    // Locks the session row and re-checks that it is still idle; new messages bump updated_at and wait on the lock
+    @Query(value = "SELECT id FROM chat_sessions WHERE id = :sessionId AND archived_at IS NULL AND deleted_at IS NULL "
+            + "AND updated_at < :cutoff FOR UPDATE", nativeQuery = true)
+    Optional<Long> lockIdleSession(@Param("sessionId") Long sessionId, @Param("cutoff") LocalDateTime cutoff);
+    
+    // Native update so archiving does not bump updated_at through @UpdateTimestamp
+    @Modifying
+    @Query(value = "UPDATE chat_sessions SET archived_at = :archivedAt WHERE id = :sessionId", nativeQuery = true)
+    int markArchived(@Param("sessionId") Long sessionId, @Param("archivedAt") LocalDateTime archivedAt);
+    
+    // Moves the session ETag when a streamed answer is rewritten in place
+    @Modifying
+    @Query(value = "UPDATE chat_sessions SET updated_at = :updatedAt WHERE id = :sessionId", nativeQuery = true)
+    int touch(@Param("sessionId") Long sessionId, @Param("updatedAt") LocalDateTime updatedAt);
+    
+    @Modifying
+    @Query(value = "UPDATE chat_sessions SET deleted_at = :deletedAt WHERE id = :sessionId AND user_id = :userId AND deleted_at IS NULL", nativeQuery = true)
+    int softDelete(@Param("sessionId") Long sessionId, @Param("userId") Long userId, @Param("deletedAt") LocalDateTime deletedAt);
+    
+    @Modifying
+    @Query(value = "UPDATE chat_sessions SET deleted_at = :deletedAt WHERE user_id = :userId AND deleted_at IS NULL", nativeQuery = true)
+    int softDeleteByUserId(@Param("userId") Long userId, @Param("deletedAt") LocalDateTime deletedAt);
 }
@@ -26,6 +26,11 @@ public interface UserModelPermissionRepository extends JpaRepository<UserModelPe
     @Query("SELECT ump FROM UserModelPermission ump WHERE ump.user.id = :userId AND ump.isAllowed = true")
     List<UserModelPermission> findAllowedModelsForUser(@Param("userId") Long userId);
     
+    // [dailyTokenLimit, tokensUsedToday, tokenUsageDate]
+    @Query("SELECT ump.dailyTokenLimit, ump.tokensUsedToday, ump.tokenUsageDate FROM UserModelPermission ump " +
+           "WHERE ump.user.id = :userId AND ump.modelId = :modelId")
+    List<Object[]> findTokenQuotaStateRaw(@Param("userId") Long userId, @Param("modelId") String modelId);
+    
     @Query("SELECT COUNT(ump) FROM UserModelPermission ump WHERE ump.modelId = :modelId AND ump.isAllowed = true")
     long countUsersWithAccessToModel(@Param("modelId") String modelId);
 }
@@ -2,10 +2,12 @@ package com.chatai.repository;
 
 import com.chatai.entity.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.Optional;
 import java.util.List;
 
@@ -14,21 +16,38 @@ public interface UserRepository extends JpaRepository<User, Long> {
     
     Optional<User> findByUsername(String username);
     
+    List<User> findByDeletedAtIsNull();
+    
     Optional<User> findByEmail(String email);
     
     boolean existsByUsername(String username);
     
     boolean existsByEmail(String email);
     
-    @Query("SELECT u FROM User u JOIN u.roles r WHERE r.name = 'ADMIN'")
+    @Query("SELECT u FROM User u JOIN u.roles r WHERE r.name = 'ADMIN' AND u.deletedAt IS NULL")
     List<User> findAllAdmins();
     
-    @Query("SELECT u FROM User u JOIN u.roles r WHERE r.name = 'USER'")
+    @Query("SELECT u FROM User u JOIN u.roles r WHERE r.name = 'USER' AND u.deletedAt IS NULL")
     List<User> findAllUsers();
     
-    @Query("SELECT COUNT(u) FROM User u WHERE u.isActive = true")
+    // Scalar columns only, so the EAGER roles join is never triggered: [dailyLimit, usedToday, lastReset]
+    @Query("SELECT u.dailyRequestLimit, u.requestsUsedToday, u.lastRequestReset FROM User u WHERE u.id = :userId")
+    List<Object[]> findQuotaStateRaw(@Param("userId") Long userId);
+    
+    // [dailyTokenLimit, dailyRequestLimit, tokensUsedToday, tokenUsageDate]
+    @Query("SELECT u.dailyTokenLimit, u.dailyRequestLimit, u.tokensUsedToday, u.tokenUsageDate FROM User u WHERE u.id = :userId")
+    List<Object[]> findTokenQuotaStateRaw(@Param("userId") Long userId);
+    
+    @Query("SELECT COUNT(u) FROM User u WHERE u.isActive = true AND u.deletedAt IS NULL")
     long countActiveUsers();
     
-    @Query("SELECT u FROM User u WHERE u.username LIKE %:search% OR u.email LIKE %:search% OR u.fullName LIKE %:search%")
+    long countByDeletedAtIsNull();
+    
+    @Query("SELECT u FROM User u WHERE u.deletedAt IS NULL AND (u.username LIKE %:search% OR u.email LIKE %:search% OR u.fullName LIKE %:search%)")
     List<User> searchUsers(@Param("search") String search);
+    
+    // Hides and deactivates the user at once; PurgeService removes the rows later
+    @Modifying
+    @Query(value = "UPDATE users SET deleted_at = :deletedAt, is_active = FALSE WHERE id = :userId AND deleted_at IS NULL", nativeQuery = true)
+    int softDelete(@Param("userId") Long userId, @Param("deletedAt") LocalDateTime deletedAt);
 }
@@ -0,0 +1,372 @@
+package com.chatai.security;
+
+import com.chatai.config.WebSocketConfig;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * In-memory index of active API tokens keyed by their HMAC-SHA256, so authenticating a token
+ * costs one HMAC and one hash lookup instead of a BCrypt check or a query. The index is loaded
+ * at startup and then follows api_tokens.updated_at incrementally; each entry also carries the
+ * token's GCRA rate-limit state and a last-used time that is written behind.
+ */
+@Component
+@Slf4j
+public class ApiTokenIndex {
+
+    public static final String TOKEN_PREFIX = "cat_";
+    public static final String SCOPE_CHAT_READ = "chat:read";
+    public static final String SCOPE_CHAT_WRITE = "chat:write";
+    public static final Set<String> SCOPES = Set.of(SCOPE_CHAT_READ, SCOPE_CHAT_WRITE);
+
+    private static final String SELECT_SQL =
+        "SELECT t.id, t.user_id, t.token_hash, t.scopes, t.requests_per_minute, t.expires_at, t.revoked_at, t.updated_at, " +
+        "u.username, u.email, u.is_active, u.deleted_at FROM api_tokens t JOIN users u ON u.id = t.user_id ";
+
+    // Rows committed by another instance may carry a slightly older updated_at than the watermark
+    private static final long SYNC_OVERLAP_SECONDS = 5;
+
+    // last_used_at is only rewritten when it moved by at least this much
+    private static final long LAST_USED_GRANULARITY_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ThreadLocal<Mac> macs;
+    private final long defaultEmissionNanos;
+    private final int burst;
+
+    private final Map<String, Entry> byHash = new ConcurrentHashMap<>();
+    private final Map<Long, Long> dirtyLastUsed = new ConcurrentHashMap<>();
+    private volatile LocalDateTime watermark = LocalDateTime.MIN;
+
+    private final LongAdder authenticated = new LongAdder();
+    private final LongAdder unknown = new LongAdder();
+    private final LongAdder rateLimited = new LongAdder();
+
+    public ApiTokenIndex(JdbcTemplate jdbcTemplate,
+                         @Value("${app.api-tokens.hmac-secret:${jwt.secret}}") String hmacSecret,
+                         @Value("${app.api-tokens.default-requests-per-minute:60}") int defaultRequestsPerMinute,
+                         @Value("${app.api-tokens.burst:10}") int burst) {
+        this.jdbcTemplate = jdbcTemplate;
+        SecretKeySpec key = new SecretKeySpec(hmacSecret.getBytes(StandardCharsets.UTF_8), "HmacSHA256");
+        this.macs = ThreadLocal.withInitial(() -> {
+            try {
+                Mac mac = Mac.getInstance("HmacSHA256");
+                mac.init(key);
+                return mac;
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("HmacSHA256 not available", e);
+            }
+        });
+        this.defaultEmissionNanos = emissionNanos(defaultRequestsPerMinute);
+        this.burst = Math.max(1, burst);
+    }
+
+    /**
+     * Keyed hash under which a token is stored and indexed
+     */
+    public String hash(String token) {
+        return HexFormat.of().formatHex(macs.get().doFinal(token.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    public static boolean isApiToken(String token) {
+        return token.startsWith(TOKEN_PREFIX);
+    }
+
+    /**
+     * Active, unexpired entry for a presented token, or null
+     */
+    Entry lookup(String token) {
+        Entry entry = byHash.get(hash(token));
+        if (entry == null || entry.isExpired(System.currentTimeMillis())) {
+            unknown.increment();
+            return null;
+        }
+        authenticated.increment();
+        long nowMillis = System.currentTimeMillis();
+        if (entry.touch(nowMillis)) {
+            dirtyLastUsed.put(entry.id, nowMillis);
+        }
+        return entry;
+    }
+
+    /**
+     * Whether a token is still indexed and unexpired, without counting it as a use
+     */
+    public boolean isActive(String token) {
+        Entry entry = byHash.get(hash(token));
+        return entry != null && !entry.isExpired(System.currentTimeMillis());
+    }
+
+    /**
+     * Seconds the caller has to wait under the token's rate, 0 when the request may proceed
+     */
+    long tryAcquire(Entry entry) {
+        long now = System.nanoTime();
+        long tolerance = entry.emissionNanos * (burst - 1);
+        while (true) {
+            long current = entry.tat.get();
+            long base = current - now > 0 ? current : now;
+            long waitNanos = base - tolerance - now;
+            if (waitNanos > 0) {
+                rateLimited.increment();
+                return Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos + TimeUnit.SECONDS.toNanos(1) - 1));
+            }
+            if (entry.tat.compareAndSet(current, base + entry.emissionNanos)) {
+                return 0;
+            }
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void preload() {
+        List<Row> rows = jdbcTemplate.query(SELECT_SQL + "WHERE t.revoked_at IS NULL", this::mapRow);
+        rows.forEach(this::apply);
+        log.info("Loaded {} API tokens", byHash.size());
+    }
+
+    /**
+     * Picks up tokens created, revoked or changed since the last run, on this or any other instance
+     */
+    @Scheduled(fixedDelayString = "${app.api-tokens.sync-interval-ms:5000}")
+    public void sync() {
+        try {
+            Timestamp since = watermark.equals(LocalDateTime.MIN)
+                    ? new Timestamp(0) : Timestamp.valueOf(watermark.minusSeconds(SYNC_OVERLAP_SECONDS));
+            List<Row> rows = jdbcTemplate.query(SELECT_SQL + "WHERE t.updated_at > ?", this::mapRow, since);
+            rows.forEach(this::apply);
+            if (!rows.isEmpty()) {
+                log.debug("Applied {} API token changes", rows.size());
+            }
+        } catch (Exception e) {
+            log.error("Failed to sync API tokens: {}", e.getMessage());
+        }
+        flushLastUsed();
+    }
+
+    /**
+     * Reloads one token once the surrounding transaction commits, so local changes apply immediately
+     */
+    public void refreshAfterCommit(Long tokenId) {
+        Runnable refresh = () -> jdbcTemplate.query(SELECT_SQL + "WHERE t.id = ?", this::mapRow, tokenId)
+                .forEach(this::apply);
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            refresh.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                refresh.run();
+            }
+        });
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUserChanged(UserChangedEvent event) {
+        // Deactivated or deleted owners lose their tokens; a reactivated owner gets them back
+        Long userId = event.userId();
+        byHash.values().removeIf(entry -> entry.principal.getId().equals(userId));
+        jdbcTemplate.query(SELECT_SQL + "WHERE t.user_id = ? AND t.revoked_at IS NULL", this::mapRow, userId)
+                .forEach(this::apply);
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("indexedTokens", byHash.size());
+        stats.put("authenticated", authenticated.sum());
+        stats.put("unknownOrExpired", unknown.sum());
+        stats.put("rateLimited", rateLimited.sum());
+        stats.put("syncedUntil", watermark.equals(LocalDateTime.MIN) ? null : watermark);
+        return stats;
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flushLastUsed();
+    }
+
+    private void flushLastUsed() {
+        if (dirtyLastUsed.isEmpty()) {
+            return;
+        }
+
+        List<Object[]> batch = new ArrayList<>();
+        for (Long id : dirtyLastUsed.keySet()) {
+            Long millis = dirtyLastUsed.remove(id);
+            if (millis != null) {
+                batch.add(new Object[] { new Timestamp(millis), id });
+            }
+        }
+        try {
+            // Plain UPDATE keeps updated_at untouched, so usage never shows up as a token change
+            jdbcTemplate.batchUpdate("UPDATE api_tokens SET last_used_at = ? WHERE id = ?", batch);
+        } catch (Exception e) {
+            log.error("Failed to flush API token usage: {}", e.getMessage());
+        }
+    }
+
+    private void apply(Row row) {
+        LocalDateTime updatedAt = row.updatedAt;
+        if (updatedAt != null && updatedAt.isAfter(watermark)) {
+            watermark = updatedAt;
+        }
+
+        if (!row.usable()) {
+            if (byHash.remove(row.tokenHash) != null) {
+                log.debug("Dropped API token {} from index", row.id);
+            }
+            return;
+        }
+
+        Entry replacement = new Entry(row, principalFor(row),
+                row.requestsPerMinute != null ? emissionNanos(row.requestsPerMinute) : defaultEmissionNanos);
+        byHash.merge(row.tokenHash, replacement, (existing, fresh) -> fresh.carryOver(existing));
+    }
+
+    private static UserPrincipal principalFor(Row row) {
+        // Tokens act as a plain user whatever the owner's roles, narrowed further by their scopes
+        List<GrantedAuthority> authorities = new ArrayList<>();
+        authorities.add(new SimpleGrantedAuthority("ROLE_USER"));
+        for (String scope : row.scopes) {
+            authorities.add(new SimpleGrantedAuthority("SCOPE_" + scope));
+        }
+        return new UserPrincipal(row.userId, row.username, row.email, null, authorities, true);
+    }
+
+    private Row mapRow(ResultSet rs, int rowNum) throws SQLException {
+        Timestamp expiresAt = rs.getTimestamp(6);
+        Timestamp updatedAt = rs.getTimestamp(8);
+        int requestsPerMinute = rs.getInt(5);
+        Integer rate = rs.wasNull() ? null : requestsPerMinute;
+        return new Row(
+                rs.getLong(1),
+                rs.getLong(2),
+                rs.getString(3),
+                parseScopes(rs.getString(4)),
+                rate,
+                expiresAt != null ? expiresAt.getTime() : Long.MAX_VALUE,
+                rs.getTimestamp(7) != null,
+                updatedAt != null ? updatedAt.toLocalDateTime() : null,
+                rs.getString(9),
+                rs.getString(10),
+                rs.getBoolean(11) && rs.getTimestamp(12) == null);
+    }
+
+    public static Set<String> parseScopes(String scopes) {
+        Set<String> parsed = new LinkedHashSet<>();
+        if (scopes != null) {
+            for (String scope : scopes.split(",")) {
+                String trimmed = scope.trim();
+                if (SCOPES.contains(trimmed)) {
+                    parsed.add(trimmed);
+                }
+            }
+        }
+        return parsed;
+    }
+
+    private static long emissionNanos(int requestsPerMinute) {
+        return TimeUnit.MINUTES.toNanos(1) / Math.max(1, requestsPerMinute);
+    }
+
+    private record Row(long id, Long userId, String tokenHash, Set<String> scopes, Integer requestsPerMinute,
+                       long expiresAtMillis, boolean revoked, LocalDateTime updatedAt,
+                       String username, String email, boolean ownerActive) {
+
+        boolean usable() {
+            return !revoked && ownerActive && expiresAtMillis > System.currentTimeMillis();
+        }
+    }
+
+    static final class Entry {
+        private final long id;
+        private final UserPrincipal principal;
+        private final Set<String> scopes;
+        private final long expiresAtMillis;
+        private final long emissionNanos;
+        private final AtomicLong tat;
+        private volatile long lastUsedMillis;
+
+        private Entry(Row row, UserPrincipal principal, long emissionNanos) {
+            this.id = row.id;
+            this.principal = principal;
+            this.scopes = Set.copyOf(row.scopes);
+            this.expiresAtMillis = row.expiresAtMillis;
+            this.emissionNanos = emissionNanos;
+            this.tat = new AtomicLong(System.nanoTime());
+        }
+
+        // A reload must not hand the token a fresh burst allowance
+        private Entry carryOver(Entry previous) {
+            tat.set(previous.tat.get());
+            lastUsedMillis = previous.lastUsedMillis;
+            return this;
+        }
+
+        UserPrincipal principal() {
+            return principal;
+        }
+
+        /**
+         * Tokens only reach the chat API: reads need chat:read, everything else chat:write
+         * (including the WebSocket handshake, which exists to start turns)
+         */
+        boolean permits(String method, String path) {
+            if (WebSocketConfig.CHAT_PATH.equals(path)) {
+                return scopes.contains(SCOPE_CHAT_WRITE);
+            }
+            if (!path.startsWith("/api/chat/")) {
+                return false;
+            }
+            boolean read = "GET".equals(method) || "HEAD".equals(method);
+            return scopes.contains(read ? SCOPE_CHAT_READ : SCOPE_CHAT_WRITE);
+        }
+
+        boolean hasScope(String scope) {
+            return scopes.contains(scope);
+        }
+
+        boolean isExpired(long nowMillis) {
+            return nowMillis >= expiresAtMillis;
+        }
+
+        boolean touch(long nowMillis) {
+            if (nowMillis - lastUsedMillis < LAST_USED_GRANULARITY_MILLIS) {
+                return false;
+            }
+            lastUsedMillis = nowMillis;
+            return true;
+        }
+    }
+}
@@ -1,11 +1,18 @@
 package com.chatai.security;
 
+import com.chatai.config.WebSocketConfig;
+import com.chatai.dto.auth.MessageResponse;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.jsonwebtoken.Claims;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
@@ -23,6 +30,8 @@ public class AuthTokenFilter extends OncePerRequestFilter {
     
     private final JwtUtils jwtUtils;
     private final CustomUserDetailsService userDetailsService;
+    private final ApiTokenIndex apiTokenIndex;
+    private final ObjectMapper objectMapper;
     
     @Override
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, 
@@ -31,17 +40,29 @@ public class AuthTokenFilter extends OncePerRequestFilter {
             String jwt = parseJwt(request);
             String requestPath = request.getRequestURI();
             
-            if (jwt != null) {
-                if (jwtUtils.validateJwtToken(jwt)) {
-                    String username = jwtUtils.getUserNameFromJwtToken(jwt);
+            if (jwt != null && ApiTokenIndex.isApiToken(jwt)) {
+                if (!authenticateApiToken(jwt, request, response)) {
+                    return;
+                }
+            } else if (jwt != null) {
+                // Verified once; the claims carry everything needed to build the principal
+                Claims claims = jwtUtils.parseClaims(jwt);
+                if (claims != null) {
+                    String username = claims.getSubject();
                     log.debug("Valid JWT for user: {} on path: {}", username, requestPath);
                     
-                    UserDetails userDetails = userDetailsService.loadUserByUsername(username);
-                    UsernamePasswordAuthenticationToken authentication = 
-                            new UsernamePasswordAuthenticationToken(userDetails, null, userDetails.getAuthorities());
-                    authentication.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
+                    // Older tokens without embedded claims fall back to a user lookup
+                    UserDetails userDetails = jwtUtils.hasEmbeddedClaims(claims)
+                            ? jwtUtils.toPrincipal(claims)
+                            : userDetailsService.loadUserByUsername(username);
                     
-                    SecurityContextHolder.getContext().setAuthentication(authentication);
+                    if (userDetails != null) {
+                        UsernamePasswordAuthenticationToken authentication = 
+                                new UsernamePasswordAuthenticationToken(userDetails, null, userDetails.getAuthorities());
+                        authentication.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
+                        
+                        SecurityContextHolder.getContext().setAuthentication(authentication);
+                    }
                 } else {
                     log.warn("Invalid JWT token for path: {}", requestPath);
                 }
@@ -55,13 +76,76 @@ public class AuthTokenFilter extends OncePerRequestFilter {
         filterChain.doFilter(request, response);
     }
     
-    private String parseJwt(HttpServletRequest request) {
+    /**
+     * Authenticates a machine client's API token; returns false after writing a 403/429 response
+     */
+    private boolean authenticateApiToken(String token, HttpServletRequest request,
+                                         HttpServletResponse response) throws IOException {
+        ApiTokenIndex.Entry entry = apiTokenIndex.lookup(token);
+        if (entry == null) {
+            log.warn("Unknown or expired API token for path: {}", request.getRequestURI());
+            return true;
+        }
+        
+        if (!entry.permits(request.getMethod(), request.getRequestURI())) {
+            writeError(response, HttpServletResponse.SC_FORBIDDEN, "API token scope does not allow this request");
+            return false;
+        }
+        
+        long retryAfter = apiTokenIndex.tryAcquire(entry);
+        if (retryAfter > 0) {
+            response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfter));
+            writeError(response, HttpStatus.TOO_MANY_REQUESTS.value(), "API token rate limit exceeded");
+            return false;
+        }
+        
+        UserPrincipal principal = entry.principal();
+        UsernamePasswordAuthenticationToken authentication =
+                new UsernamePasswordAuthenticationToken(principal, null, principal.getAuthorities());
+        authentication.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
+        SecurityContextHolder.getContext().setAuthentication(authentication);
+        return true;
+    }
+    
+    private void writeError(HttpServletResponse response, int status, String message) throws IOException {
+        response.setStatus(status);
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        objectMapper.writeValue(response.getOutputStream(), MessageResponse.error(message));
+    }
+    
+    /**
+     * Whether a token accepted earlier, e.g. at a WebSocket handshake, would still be accepted now
+     */
+    public boolean isStillValid(String token) {
+        if (ApiTokenIndex.isApiToken(token)) {
+            return apiTokenIndex.isActive(token);
+        }
+        Claims claims = jwtUtils.parseClaims(token);
+        if (claims == null) {
+            return false;
+        }
+        try {
+            return jwtUtils.hasEmbeddedClaims(claims)
+                    ? jwtUtils.toPrincipal(claims) != null
+                    : userDetailsService.loadUserByUsername(claims.getSubject()).isEnabled();
+        } catch (Exception e) {
+            return false;
+        }
+    }
+    
+    public static String parseJwt(HttpServletRequest request) {
         String headerAuth = request.getHeader("Authorization");
         
         if (StringUtils.hasText(headerAuth) && headerAuth.startsWith("Bearer ")) {
             return headerAuth.substring(7);
         }
         
+        // Browsers cannot set headers on a WebSocket handshake
+        if (WebSocketConfig.CHAT_PATH.equals(request.getRequestURI())) {
+            String token = request.getParameter("access_token");
+            return StringUtils.hasText(token) ? token : null;
+        }
+        
         return null;
     }
 }
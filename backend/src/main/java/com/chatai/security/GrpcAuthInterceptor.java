@@ -0,0 +1,113 @@
+package com.chatai.security;
+
+import io.grpc.Context;
+import io.grpc.Contexts;
+import io.grpc.Metadata;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+import io.grpc.Status;
+import io.jsonwebtoken.Claims;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.util.Set;
+
+/**
+ * Authenticates gRPC calls the way AuthTokenFilter does HTTP requests: "authorization: Bearer ..."
+ * metadata with a JWT or an API token. API tokens need chat:write for StreamChat and chat:read for
+ * everything else, and share their rate limit with the REST API. The caller is available to the
+ * service through {@link #currentUser()}.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class GrpcAuthInterceptor implements ServerInterceptor {
+
+    public static final Metadata.Key<String> AUTHORIZATION = Metadata.Key.of("authorization", Metadata.ASCII_STRING_MARSHALLER);
+    public static final Metadata.Key<String> RETRY_AFTER = Metadata.Key.of("retry-after", Metadata.ASCII_STRING_MARSHALLER);
+
+    private static final Context.Key<UserPrincipal> USER = Context.key("chatai-user");
+    private static final Set<String> WRITE_METHODS = Set.of("StreamChat");
+    private static final Set<String> ALLOWED_ROLES = Set.of("ROLE_USER", "ROLE_ADMIN");
+
+    private final JwtUtils jwtUtils;
+    private final CustomUserDetailsService userDetailsService;
+    private final ApiTokenIndex apiTokenIndex;
+
+    /**
+     * The authenticated caller of the current gRPC call
+     */
+    public static UserPrincipal currentUser() {
+        return USER.get();
+    }
+
+    @Override
+    public <Q, R> ServerCall.Listener<Q> interceptCall(ServerCall<Q, R> call, Metadata headers,
+                                                       ServerCallHandler<Q, R> next) {
+        String header = headers.get(AUTHORIZATION);
+        if (!StringUtils.hasText(header) || !header.startsWith("Bearer ")) {
+            return reject(call, Status.UNAUTHENTICATED.withDescription("Missing bearer token"), new Metadata());
+        }
+        String token = header.substring(7);
+        String method = call.getMethodDescriptor().getBareMethodName();
+
+        UserPrincipal principal;
+        if (ApiTokenIndex.isApiToken(token)) {
+            ApiTokenIndex.Entry entry = apiTokenIndex.lookup(token);
+            if (entry == null) {
+                return reject(call, Status.UNAUTHENTICATED.withDescription("Unknown or expired API token"), new Metadata());
+            }
+            String scope = WRITE_METHODS.contains(method) ? ApiTokenIndex.SCOPE_CHAT_WRITE : ApiTokenIndex.SCOPE_CHAT_READ;
+            if (!entry.hasScope(scope)) {
+                return reject(call, Status.PERMISSION_DENIED.withDescription("API token scope does not allow this call"), new Metadata());
+            }
+            long retryAfter = apiTokenIndex.tryAcquire(entry);
+            if (retryAfter > 0) {
+                Metadata trailers = new Metadata();
+                trailers.put(RETRY_AFTER, String.valueOf(retryAfter));
+                return reject(call, Status.RESOURCE_EXHAUSTED.withDescription("API token rate limit exceeded"), trailers);
+            }
+            principal = entry.principal();
+        } else {
+            principal = fromJwt(token);
+            if (principal == null) {
+                return reject(call, Status.UNAUTHENTICATED.withDescription("Invalid token"), new Metadata());
+            }
+        }
+
+        if (!principal.isEnabled() || principal.getAuthorities().stream()
+                .noneMatch(authority -> ALLOWED_ROLES.contains(authority.getAuthority()))) {
+            return reject(call, Status.PERMISSION_DENIED.withDescription("Access denied: Insufficient permissions"), new Metadata());
+        }
+
+        Context context = Context.current().withValue(USER, principal);
+        return Contexts.interceptCall(context, call, headers, next);
+    }
+
+    private UserPrincipal fromJwt(String token) {
+        Claims claims = jwtUtils.parseClaims(token);
+        if (claims == null) {
+            return null;
+        }
+        try {
+            // Older tokens without embedded claims fall back to a user lookup
+            UserDetails userDetails = jwtUtils.hasEmbeddedClaims(claims)
+                    ? jwtUtils.toPrincipal(claims)
+                    : userDetailsService.loadUserByUsername(claims.getSubject());
+            return (UserPrincipal) userDetails;
+        } catch (RuntimeException e) {
+            log.warn("Cannot authenticate gRPC call for {}: {}", claims.getSubject(), e.getMessage());
+            return null;
+        }
+    }
+
+    private static <Q, R> ServerCall.Listener<Q> reject(ServerCall<Q, R> call, Status status, Metadata trailers) {
+        call.close(status, trailers);
+        return new ServerCall.Listener<>() {
+        };
+    }
+}
@@ -0,0 +1,141 @@
+package com.chatai.security;
+
+import com.chatai.exception.RateLimitExceededException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Rejects abusive sign-in/sign-up traffic before any password hash is computed:
+ * a GCRA rate per client IP for all attempts, and a lockout per username after too many
+ * failures inside a window (cleared by a successful login). Idle entries are swept.
+ */
+@Component
+@Slf4j
+public class LoginAttemptLimiter {
+
+    private final Map<String, AtomicLong> ipBuckets = new ConcurrentHashMap<>();
+    private final Map<String, FailureWindow> usernameFailures = new ConcurrentHashMap<>();
+
+    private final long ipEmissionNanos;
+    private final long ipToleranceNanos;
+    private final int maxFailures;
+    private final long failureWindowNanos;
+
+    private final LongAdder rejectedByIp = new LongAdder();
+    private final LongAdder rejectedByUsername = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+
+    public LoginAttemptLimiter(@Value("${app.login-protection.ip-attempts-per-minute:20}") int ipAttemptsPerMinute,
+                               @Value("${app.login-protection.ip-burst:10}") int ipBurst,
+                               @Value("${app.login-protection.max-failures-per-username:5}") int maxFailures,
+                               @Value("${app.login-protection.failure-window-minutes:15}") int failureWindowMinutes) {
+        this.ipEmissionNanos = TimeUnit.MINUTES.toNanos(1) / Math.max(1, ipAttemptsPerMinute);
+        this.ipToleranceNanos = ipEmissionNanos * Math.max(0, ipBurst - 1);
+        this.maxFailures = maxFailures;
+        this.failureWindowNanos = TimeUnit.MINUTES.toNanos(failureWindowMinutes);
+    }
+
+    /**
+     * Counts the attempt against the client IP and checks the username lockout; throws 429 when limited
+     */
+    public void checkAttempt(String clientIp, String username) {
+        long now = System.nanoTime();
+
+        AtomicLong tat = ipBuckets.computeIfAbsent(clientIp, ip -> new AtomicLong(now));
+        while (true) {
+            long current = tat.get();
+            long base = current - now > 0 ? current : now;
+            long waitNanos = base - ipToleranceNanos - now;
+            if (waitNanos > 0) {
+                rejectedByIp.increment();
+                log.warn("Too many authentication attempts from {}", clientIp);
+                throw new RateLimitExceededException("Too many attempts, please try again later", toSeconds(waitNanos));
+            }
+            if (tat.compareAndSet(current, base + ipEmissionNanos)) {
+                break;
+            }
+        }
+
+        if (username != null) {
+            FailureWindow window = usernameFailures.get(key(username));
+            long lockedFor = window != null ? window.lockedForNanos(now, maxFailures, failureWindowNanos) : 0;
+            if (lockedFor > 0) {
+                rejectedByUsername.increment();
+                log.warn("Sign-in for {} temporarily locked after repeated failures", username);
+                throw new RateLimitExceededException("Too many failed attempts, please try again later", toSeconds(lockedFor));
+            }
+        }
+    }
+
+    public void recordFailure(String username) {
+        failures.increment();
+        long now = System.nanoTime();
+        usernameFailures.computeIfAbsent(key(username), name -> new FailureWindow(now))
+                .record(now, failureWindowNanos);
+    }
+
+    public void recordSuccess(String username) {
+        usernameFailures.remove(key(username));
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("trackedIps", ipBuckets.size());
+        stats.put("trackedUsernames", usernameFailures.size());
+        stats.put("failedLogins", failures.sum());
+        stats.put("rejectedByIp", rejectedByIp.sum());
+        stats.put("rejectedByUsername", rejectedByUsername.sum());
+        return stats;
+    }
+
+    @Scheduled(fixedDelayString = "${app.login-protection.sweep-interval-ms:60000}")
+    public void evictIdle() {
+        long now = System.nanoTime();
+        ipBuckets.values().removeIf(tat -> tat.get() - now <= 0);
+        usernameFailures.values().removeIf(window -> window.isExpired(now, failureWindowNanos));
+    }
+
+    private static String key(String username) {
+        return username.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private static long toSeconds(long nanos) {
+        return Math.max(1, (nanos + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1));
+    }
+
+    private static final class FailureWindow {
+        private long windowStart;
+        private int count;
+
+        private FailureWindow(long windowStart) {
+            this.windowStart = windowStart;
+        }
+
+        synchronized void record(long now, long windowNanos) {
+            if (now - windowStart > windowNanos) {
+                windowStart = now;
+                count = 0;
+            }
+            count++;
+        }
+
+        synchronized long lockedForNanos(long now, int maxFailures, long windowNanos) {
+            long remaining = windowStart + windowNanos - now;
+            return count >= maxFailures && remaining > 0 ? remaining : 0;
+        }
+
+        synchronized boolean isExpired(long now, long windowNanos) {
+            return now - windowStart > windowNanos;
+        }
+    }
+}
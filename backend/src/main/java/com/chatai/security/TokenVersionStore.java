@@ -0,0 +1,87 @@
+package com.chatai.security;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory view of users.token_version. A JWT is only accepted while its "ver" claim equals
+ * the user's current version, so bumping the version revokes every token issued before.
+ * Only non-zero versions are kept; they are preloaded at startup so lookups never hit MySQL.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class TokenVersionStore {
+    
+    private final JdbcTemplate jdbcTemplate;
+    
+    private final Map<Long, Integer> versions = new ConcurrentHashMap<>();
+    
+    @EventListener(ApplicationReadyEvent.class)
+    public void preload() {
+        jdbcTemplate.query("SELECT id, token_version FROM users WHERE token_version > 0",
+                rs -> { versions.put(rs.getLong(1), rs.getInt(2)); });
+        log.info("Loaded token versions for {} users", versions.size());
+    }
+    
+    public int currentVersion(Long userId) {
+        return versions.getOrDefault(userId, 0);
+    }
+    
+    public boolean isCurrent(Long userId, int tokenVersion) {
+        return currentVersion(userId) == tokenVersion;
+    }
+    
+    /**
+     * Revokes all outstanding tokens of a user; the cache follows once the transaction commits
+     */
+    public void bump(Long userId) {
+        jdbcTemplate.update("UPDATE users SET token_version = COALESCE(token_version, 0) + 1 WHERE id = ?", userId);
+        
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            refresh(userId);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            // Ahead of the after-commit UserChangedEvent listeners, which may check this user's tokens
+            @Override
+            public int getOrder() {
+                return Ordered.HIGHEST_PRECEDENCE;
+            }
+            
+            @Override
+            public void afterCommit() {
+                refresh(userId);
+            }
+        });
+    }
+    
+    @EventListener
+    public void onUserChanged(UserChangedEvent event) {
+        // Local bumps refresh after their own commit; remote ones only reach us as events
+        if (event.remote()) {
+            refresh(event.userId());
+        }
+    }
+    
+    private void refresh(Long userId) {
+        Integer version = jdbcTemplate.query("SELECT token_version FROM users WHERE id = ?",
+                rs -> rs.next() ? rs.getInt(1) : null, userId);
+        if (version == null || version == 0) {
+            versions.remove(userId);
+        } else {
+            versions.put(userId, version);
+        }
+        log.debug("Token version of user {} is now {}", userId, version);
+    }
+}
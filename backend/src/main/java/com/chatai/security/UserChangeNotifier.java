@@ -0,0 +1,81 @@
+package com.chatai.security;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Announces user changes to local caches and, when several backend instances share the
+ * database, to the other instances through the user_change_events table (polled by id).
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class UserChangeNotifier {
+    
+    private final ApplicationEventPublisher eventPublisher;
+    private final JdbcTemplate jdbcTemplate;
+    
+    // Identifies this instance so it skips its own events when polling
+    private final String origin = UUID.randomUUID().toString();
+    
+    @Value("${app.principal-cache.cross-node.enabled:false}")
+    private boolean crossNode;
+    
+    private volatile long lastSeenId;
+    
+    @PostConstruct
+    void init() {
+        if (crossNode) {
+            Long maxId = jdbcTemplate.queryForObject("SELECT MAX(id) FROM user_change_events", Long.class);
+            lastSeenId = maxId != null ? maxId : 0;
+        }
+    }
+    
+    /**
+     * Call inside the transaction that changes the user; listeners run after it commits
+     */
+    public void userChanged(Long userId) {
+        eventPublisher.publishEvent(new UserChangedEvent(userId, false));
+        if (crossNode) {
+            jdbcTemplate.update("INSERT INTO user_change_events (user_id, origin, created_at) VALUES (?, ?, ?)",
+                    userId, origin, Timestamp.valueOf(LocalDateTime.now()));
+        }
+    }
+    
+    @Scheduled(fixedDelayString = "${app.principal-cache.cross-node.poll-interval-ms:2000}")
+    public void pollRemoteChanges() {
+        if (!crossNode) {
+            return;
+        }
+        
+        try {
+            jdbcTemplate.query("SELECT id, user_id, origin FROM user_change_events WHERE id > ? ORDER BY id",
+                    rs -> {
+                        lastSeenId = rs.getLong(1);
+                        if (!origin.equals(rs.getString(3))) {
+                            eventPublisher.publishEvent(new UserChangedEvent(rs.getLong(2), true));
+                        }
+                    }, lastSeenId);
+        } catch (Exception e) {
+            log.error("Failed to poll user change events: {}", e.getMessage());
+        }
+    }
+    
+    @Scheduled(cron = "${app.principal-cache.cross-node.cleanup-cron:0 15 * * * *}")
+    public void cleanup() {
+        if (crossNode) {
+            jdbcTemplate.update("DELETE FROM user_change_events WHERE created_at < ?",
+                    Timestamp.valueOf(LocalDateTime.now().minusHours(1)));
+        }
+    }
+}
@@ -0,0 +1,8 @@
+package com.chatai.security;
+
+/**
+ * A user's identity data (roles, status, limits) changed; cached views of it must be dropped.
+ * Remote events were raised on another backend instance and relayed by {@link UserChangeNotifier}.
+ */
+public record UserChangedEvent(Long userId, boolean remote) {
+}
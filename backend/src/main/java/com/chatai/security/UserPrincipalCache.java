@@ -0,0 +1,125 @@
+package com.chatai.security;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Size- and TTL-bounded LRU of {@link UserPrincipal}s, addressable by id and by username.
+ * Loads happen outside the lock; entries are dropped on {@link UserChangedEvent}s once the
+ * change has committed, locally or relayed from another instance.
+ */
+@Component
+@Slf4j
+public class UserPrincipalCache {
+    
+    private final int maxSize;
+    private final long ttlMillis;
+    
+    private final Map<Long, Entry> byId;
+    private final Map<String, Long> idsByUsername = new HashMap<>();
+    
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+    private final LongAdder loadNanos = new LongAdder();
+    
+    public UserPrincipalCache(@Value("${app.principal-cache.max-size:10000}") int maxSize,
+                              @Value("${app.principal-cache.ttl-seconds:300}") long ttlSeconds) {
+        this.maxSize = maxSize;
+        this.ttlMillis = ttlSeconds * 1000;
+        this.byId = new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Entry> eldest) {
+                if (size() <= UserPrincipalCache.this.maxSize) {
+                    return false;
+                }
+                idsByUsername.remove(eldest.getValue().principal.getUsername());
+                evictions.increment();
+                return true;
+            }
+        };
+    }
+    
+    public UserPrincipal getByUsername(String username, Supplier<UserPrincipal> loader) {
+        Long id;
+        synchronized (this) {
+            id = idsByUsername.get(username);
+        }
+        return getOrLoad(id, loader);
+    }
+    
+    public UserPrincipal getById(Long userId, Supplier<UserPrincipal> loader) {
+        return getOrLoad(userId, loader);
+    }
+    
+    public synchronized void invalidate(Long userId) {
+        Entry entry = byId.remove(userId);
+        if (entry != null) {
+            idsByUsername.remove(entry.principal.getUsername());
+            invalidations.increment();
+        }
+    }
+    
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUserChanged(UserChangedEvent event) {
+        invalidate(event.userId());
+    }
+    
+    public Map<String, Object> getStats() {
+        long hitCount = hits.sum();
+        long missCount = misses.sum();
+        long requests = hitCount + missCount;
+        
+        Map<String, Object> stats = new LinkedHashMap<>();
+        synchronized (this) {
+            stats.put("size", byId.size());
+        }
+        stats.put("maxSize", maxSize);
+        stats.put("ttlSeconds", ttlMillis / 1000);
+        stats.put("hits", hitCount);
+        stats.put("misses", missCount);
+        stats.put("hitRatio", requests > 0 ? (double) hitCount / requests : 0.0);
+        stats.put("evictions", evictions.sum());
+        stats.put("invalidations", invalidations.sum());
+        stats.put("averageLoadMillis", missCount > 0 ? loadNanos.sum() / 1_000_000.0 / missCount : 0.0);
+        return stats;
+    }
+    
+    private UserPrincipal getOrLoad(Long userId, Supplier<UserPrincipal> loader) {
+        if (userId != null) {
+            synchronized (this) {
+                Entry entry = byId.get(userId);
+                if (entry != null && System.currentTimeMillis() < entry.expiresAt) {
+                    hits.increment();
+                    return entry.principal;
+                }
+            }
+        }
+        
+        misses.increment();
+        long start = System.nanoTime();
+        UserPrincipal principal = loader.get();
+        loadNanos.add(System.nanoTime() - start);
+        
+        synchronized (this) {
+            Entry previous = byId.put(principal.getId(), new Entry(principal, System.currentTimeMillis() + ttlMillis));
+            if (previous != null && !previous.principal.getUsername().equals(principal.getUsername())) {
+                idsByUsername.remove(previous.principal.getUsername());
+            }
+            idsByUsername.put(principal.getUsername(), principal.getId());
+        }
+        return principal;
+    }
+    
+    private record Entry(UserPrincipal principal, long expiresAt) {
+    }
+}
@@ -1,16 +1,28 @@
 package com.chatai.service;
 
+import com.chatai.dto.admin.ModelPermissionRequest;
+import com.chatai.dto.admin.ModelPermissionResponse;
 import com.chatai.dto.admin.SystemStatsResponse;
 import com.chatai.dto.admin.UpdateUserRequest;
 import com.chatai.dto.admin.UserManagementResponse;
 import com.chatai.entity.Role;
 import com.chatai.entity.User;
+import com.chatai.entity.UserModelPermission;
 import com.chatai.repository.*;
+import com.chatai.security.ApiTokenIndex;
+import com.chatai.security.BoundedPasswordEncoder;
+import com.chatai.security.LoginAttemptLimiter;
+import com.chatai.security.TokenVersionStore;
+import com.chatai.security.UserChangeNotifier;
+import com.chatai.security.UserPrincipalCache;
+import com.chatai.storage.MessageCompressionCodec;
+import com.chatai.web.DeflaterPool;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.*;
 import java.util.stream.Collectors;
@@ -25,9 +37,25 @@ public class AdminService {
     private final ChatSessionRepository chatSessionRepository;
     private final ChatMessageRepository chatMessageRepository;
     private final UserModelPermissionRepository userModelPermissionRepository;
+    private final PurgeService purgeService;
+    private final RequestLimitService requestLimitService;
+    private final TokenQuotaService tokenQuotaService;
+    private final ModelPermissionService modelPermissionService;
+    private final TokenVersionStore tokenVersionStore;
+    private final UserChangeNotifier userChangeNotifier;
+    private final UserPrincipalCache userPrincipalCache;
+    private final BoundedPasswordEncoder boundedPasswordEncoder;
+    private final LoginAttemptLimiter loginAttemptLimiter;
+    private final ApiTokenIndex apiTokenIndex;
+    private final ModelRouter modelRouter;
+    private final StreamRelayService streamRelayService;
+    private final StreamCoalescer streamCoalescer;
+    private final DeflaterPool deflaterPool;
+    private final List<TransportStats> transports;
+    private final MessageCompressionCodec messageCompressionCodec;
     
     public List<UserManagementResponse> getAllUsers() {
-        List<User> users = userRepository.findAll();
+        List<User> users = userRepository.findByDeletedAtIsNull();
         
         return users.stream()
                 .map(this::mapToUserManagementResponse)
@@ -55,12 +83,29 @@ public class AdminService {
             user.setEmail(request.getEmail());
         }
         
+        // Roles and account state are embedded in issued JWTs, so changing them revokes those tokens
+        boolean revokeTokens = false;
         if (request.getIsActive() != null) {
+            revokeTokens = !request.getIsActive().equals(user.getIsActive());
             user.setIsActive(request.getIsActive());
         }
         
         if (request.getDailyRequestLimit() != null) {
             user.setDailyRequestLimit(request.getDailyRequestLimit());
+            requestLimitService.updateLimit(userId, request.getDailyRequestLimit());
+        }
+        
+        if (request.getDailyTokenLimit() != null) {
+            user.setDailyTokenLimit(request.getDailyTokenLimit());
+        }
+        
+        if (request.getDailyRequestLimit() != null || request.getDailyTokenLimit() != null) {
+            tokenQuotaService.updateUserLimit(userId, user.getDailyTokenLimit(), user.getDailyRequestLimit());
+        }
+        
+        if (request.getDailyRequestLimit() != null) {
+            // Unlimited users bypass per-model rules, so their matrix row depends on this value
+            modelPermissionService.invalidate(userId);
         }
         
         // Update roles if provided
@@ -71,15 +116,48 @@ public class AdminService {
                         .orElseThrow(() -> new RuntimeException("Role not found: " + roleName));
                 newRoles.add(role);
             }
+            revokeTokens |= !newRoles.equals(user.getRoles());
             user.setRoles(newRoles);
         }
         
         User savedUser = userRepository.save(user);
+        if (revokeTokens) {
+            tokenVersionStore.bump(userId);
+        }
+        userChangeNotifier.userChanged(userId);
         log.info("Admin updated user: {}", savedUser.getUsername());
         
         return mapToUserManagementResponse(savedUser);
     }
     
+    public List<ModelPermissionResponse> getUserModelPermissions(Long userId) {
+        return modelPermissionService.getUserModelPermissions(userId).stream()
+                .map(this::mapToModelPermissionResponse)
+                .collect(Collectors.toList());
+    }
+    
+    /**
+     * Allows (with optional request and token limits) or revokes one model for a user
+     */
+    @Transactional
+    public ModelPermissionResponse updateModelPermission(Long userId, ModelPermissionRequest request) {
+        if (request.getModelId() == null || request.getModelId().isBlank()) {
+            throw new RuntimeException("Model id is required");
+        }
+        
+        if (Boolean.FALSE.equals(request.getAllowed())) {
+            modelPermissionService.revokeModelAccess(userId, request.getModelId());
+        } else {
+            modelPermissionService.grantModelAccess(userId, request.getModelId(), request.getModelName(),
+                    request.getDailyRequestLimit(), request.getDailyTokenLimit());
+        }
+        log.info("Admin updated access to model {} for user {}", request.getModelId(), userId);
+        
+        return userModelPermissionRepository.findByUserIdAndModelId(userId, request.getModelId())
+                .map(this::mapToModelPermissionResponse)
+                .orElseThrow(() -> new RuntimeException("Model permission not found"));
+    }
+    
     @Transactional
     public void deleteUser(Long userId) {
         User user = userRepository.findById(userId)
@@ -93,20 +171,25 @@ public class AdminService {
             throw new RuntimeException("Cannot delete default admin user");
         }
         
-        userRepository.delete(user);
-        log.info("Admin deleted user: {}", user.getUsername());
+        // Hide the user and all sessions now; PurgeService deletes the rows in bounded chunks
+        LocalDateTime now = LocalDateTime.now();
+        userRepository.softDelete(userId, now);
+        int sessions = chatSessionRepository.softDeleteByUserId(userId, now);
+        tokenVersionStore.bump(userId);
+        userChangeNotifier.userChanged(userId);
+        log.info("Admin deleted user: {} ({} sessions queued for purge)", user.getUsername(), sessions);
     }
     
     public SystemStatsResponse getSystemStats() {
         LocalDateTime today = LocalDateTime.now().withHour(0).withMinute(0).withSecond(0);
         LocalDateTime weekAgo = today.minusDays(7);
         
-        long totalUsers = userRepository.count();
+        long totalUsers = userRepository.countByDeletedAtIsNull();
         long activeUsers = userRepository.countActiveUsers();
-        long totalSessions = chatSessionRepository.count();
-        long totalMessages = chatMessageRepository.count();
+        long totalSessions = chatSessionRepository.countByDeletedAtIsNull();
+        long totalMessages = chatMessageRepository.countLiveMessages();
         long todaySessions = chatSessionRepository.countSessionsCreatedAfter(today);
-        long todayMessages = chatMessageRepository.countAssistantMessagesAfter(today);
+        long todayMessages = chatMessageRepository.countAssistantMessagesBetween(today, today.plusDays(1));
         
         // Model usage stats - simplified
         Map<String, Integer> modelStats = new HashMap<>();
@@ -141,13 +224,65 @@ public class AdminService {
         User user = userRepository.findById(userId)
                 .orElseThrow(() -> new RuntimeException("User not found"));
         
-        user.setRequestsUsedToday(0);
-        user.setLastRequestReset(LocalDateTime.now());
-        userRepository.save(user);
+        requestLimitService.resetUsage(userId);
+        userChangeNotifier.userChanged(userId);
         
         log.info("Admin reset daily limit for user: {}", user.getUsername());
     }
     
+    public Map<String, Object> getLoginProtectionStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("passwordHashing", boundedPasswordEncoder.getStats());
+        stats.put("attempts", loginAttemptLimiter.getStats());
+        return stats;
+    }
+    
+    public Map<String, Object> getApiTokenStats() {
+        return apiTokenIndex.getStats();
+    }
+    
+    public Map<String, Object> getModelRoutingStats() {
+        return modelRouter.getStats();
+    }
+    
+    public Map<String, Object> getStreamStats() {
+        Map<String, Object> stats = new LinkedHashMap<>(streamRelayService.getStats());
+        stats.put("coalescing", streamCoalescer.getStats());
+        stats.put("compression", deflaterPool.getStats());
+        for (TransportStats transport : transports) {
+            stats.put(transport.getTransportName(), transport.getStats());
+        }
+        return stats;
+    }
+    
+    public Map<String, Object> getPrincipalCacheStats() {
+        return userPrincipalCache.getStats();
+    }
+    
+    public Map<String, Object> getPurgeStatus() {
+        return purgeService.getStatus();
+    }
+    
+    public Map<String, Object> getCompressionStats() {
+        return messageCompressionCodec.getStats();
+    }
+    
+    private ModelPermissionResponse mapToModelPermissionResponse(UserModelPermission permission) {
+        LocalDate today = LocalDate.now();
+        boolean requestsToday = permission.getLastRequestReset() != null
+                && today.equals(permission.getLastRequestReset().toLocalDate());
+        return ModelPermissionResponse.builder()
+                .modelId(permission.getModelId())
+                .modelName(permission.getModelName())
+                .allowed(permission.getIsAllowed())
+                .dailyRequestLimit(permission.getDailyRequestLimit())
+                // Written-behind values; stale dates mean nothing was used today
+                .requestsUsedToday(requestsToday ? permission.getRequestsUsedToday() : 0)
+                .dailyTokenLimit(permission.getDailyTokenLimit())
+                .tokensUsedToday(today.equals(permission.getTokenUsageDate()) ? permission.getTokensUsedToday() : 0L)
+                .build();
+    }
+    
     private UserManagementResponse mapToUserManagementResponse(User user) {
         List<String> roles = user.getRoles().stream()
                 .map(role -> role.getName().name())
@@ -155,8 +290,7 @@ public class AdminService {
         
         // Get user statistics
         int totalSessions = (int) chatSessionRepository.countByUserId(user.getId());
-        int totalMessages = (int) chatMessageRepository.countUserMessagesAfter(user.getId(), 
-                LocalDateTime.now().minusYears(10)); // All time
+        int totalMessages = (int) chatMessageRepository.countUserMessages(user.getId()); // All time
         
         return UserManagementResponse.builder()
                 .id(user.getId())
@@ -167,6 +301,9 @@ public class AdminService {
                 .dailyRequestLimit(user.getDailyRequestLimit())
                 .requestsUsedToday(user.getRequestsUsedToday())
                 .lastRequestReset(user.getLastRequestReset())
+                .dailyTokenLimit(user.getDailyTokenLimit())
+                // Written-behind value; stale dates mean nothing was used today
+                .tokensUsedToday(LocalDate.now().equals(user.getTokenUsageDate()) ? user.getTokensUsedToday() : 0L)
                 .createdAt(user.getCreatedAt())
                 .roles(roles)
                 .totalSessions(totalSessions)
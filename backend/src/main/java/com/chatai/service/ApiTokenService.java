@@ -0,0 +1,107 @@
+package com.chatai.service;
+
+import com.chatai.dto.auth.ApiTokenResponse;
+import com.chatai.dto.auth.CreateApiTokenRequest;
+import com.chatai.entity.ApiToken;
+import com.chatai.entity.User;
+import com.chatai.repository.ApiTokenRepository;
+import com.chatai.repository.UserRepository;
+import com.chatai.security.ApiTokenIndex;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.security.SecureRandom;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Issues and revokes API tokens for machine clients. Only the token's HMAC is persisted;
+ * {@link ApiTokenIndex} picks every change up after commit for request-time lookups.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ApiTokenService {
+    
+    private static final SecureRandom RANDOM = new SecureRandom();
+    
+    private final ApiTokenRepository apiTokenRepository;
+    private final UserRepository userRepository;
+    private final ApiTokenIndex apiTokenIndex;
+    
+    @Value("${app.api-tokens.max-per-user:10}")
+    private int maxTokensPerUser;
+    
+    @Transactional
+    public ApiTokenResponse createToken(Long userId, CreateApiTokenRequest request) {
+        User user = userRepository.findById(userId)
+                .orElseThrow(() -> new RuntimeException("User not found"));
+        if (apiTokenRepository.countActiveByUserId(userId) >= maxTokensPerUser) {
+            throw new RuntimeException("API token limit of " + maxTokensPerUser + " reached, revoke an existing token first");
+        }
+        
+        byte[] secret = new byte[32];
+        RANDOM.nextBytes(secret);
+        String plaintext = ApiTokenIndex.TOKEN_PREFIX + Base64.getUrlEncoder().withoutPadding().encodeToString(secret);
+        
+        ApiToken token = ApiToken.builder()
+                .user(user)
+                .name(request.getName().trim())
+                .tokenHash(apiTokenIndex.hash(plaintext))
+                .tokenPrefix(plaintext.substring(0, 12))
+                .scopes(String.join(",", ApiTokenIndex.parseScopes(String.join(",", request.getScopes()))))
+                .requestsPerMinute(request.getRequestsPerMinute())
+                .expiresAt(request.getExpiresInDays() != null
+                        ? LocalDateTime.now().plusDays(request.getExpiresInDays()) : null)
+                .build();
+        
+        ApiToken saved = apiTokenRepository.save(token);
+        apiTokenIndex.refreshAfterCommit(saved.getId());
+        log.info("User {} created API token {} with scopes {}", userId, saved.getId(), saved.getScopes());
+        
+        ApiTokenResponse response = toResponse(saved);
+        response.setToken(plaintext);
+        return response;
+    }
+    
+    @Transactional(readOnly = true)
+    public List<ApiTokenResponse> getTokens(Long userId) {
+        return apiTokenRepository.findByUserIdOrderByCreatedAtDesc(userId).stream()
+                .map(this::toResponse)
+                .collect(Collectors.toList());
+    }
+    
+    @Transactional
+    public void revokeToken(Long userId, Long tokenId) {
+        ApiToken token = apiTokenRepository.findByIdAndUserId(tokenId, userId)
+                .orElseThrow(() -> new RuntimeException("API token not found"));
+        if (token.getRevokedAt() != null) {
+            return;
+        }
+        
+        token.setRevokedAt(LocalDateTime.now());
+        apiTokenRepository.save(token);
+        apiTokenIndex.refreshAfterCommit(tokenId);
+        log.info("User {} revoked API token {}", userId, tokenId);
+    }
+    
+    private ApiTokenResponse toResponse(ApiToken token) {
+        return ApiTokenResponse.builder()
+                .id(token.getId())
+                .name(token.getName())
+                .tokenPrefix(token.getTokenPrefix())
+                .scopes(new ArrayList<>(ApiTokenIndex.parseScopes(token.getScopes())))
+                .requestsPerMinute(token.getRequestsPerMinute())
+                .expiresAt(token.getExpiresAt())
+                .revokedAt(token.getRevokedAt())
+                .lastUsedAt(token.getLastUsedAt())
+                .createdAt(token.getCreatedAt())
+                .build();
+    }
+}
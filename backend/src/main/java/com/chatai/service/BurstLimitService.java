@@ -0,0 +1,125 @@
+package com.chatai.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Short-window limits on top of the daily quota: a per-user GCRA (generic cell rate algorithm)
+ * for requests per minute and a cap on concurrently open streams. Each user costs one long and
+ * one int; entries whose theoretical arrival time has passed carry no state and are swept.
+ */
+@Service
+@Slf4j
+public class BurstLimitService {
+
+    private final Map<Long, Bucket> buckets = new ConcurrentHashMap<>();
+
+    private final boolean enabled;
+    private final int maxConcurrentStreams;
+    // Spacing between requests at the sustained rate, and how far ahead a burst may run
+    private final long emissionIntervalNanos;
+    private final long burstToleranceNanos;
+
+    public BurstLimitService(@Value("${app.rate-limit.enabled:true}") boolean enabled,
+                             @Value("${app.rate-limit.requests-per-minute:20}") int requestsPerMinute,
+                             @Value("${app.rate-limit.burst:5}") int burst,
+                             @Value("${app.rate-limit.max-concurrent-streams:3}") int maxConcurrentStreams) {
+        this.enabled = enabled;
+        this.maxConcurrentStreams = maxConcurrentStreams;
+        this.emissionIntervalNanos = TimeUnit.MINUTES.toNanos(1) / Math.max(1, requestsPerMinute);
+        this.burstToleranceNanos = emissionIntervalNanos * Math.max(0, burst - 1);
+    }
+
+    /**
+     * Admits one request or returns how many seconds the caller has to wait (0 = admitted)
+     */
+    public long tryAcquireRequest(Long userId) {
+        if (!enabled) {
+            return 0;
+        }
+
+        while (true) {
+            Bucket bucket = buckets.computeIfAbsent(userId, id -> new Bucket());
+            long now = System.nanoTime();
+            long tat = bucket.tat.get();
+            long base = tat - now > 0 ? tat : now;
+            
+            // Admitted while the next slot is within the burst tolerance of now
+            long waitNanos = base - burstToleranceNanos - now;
+            if (waitNanos > 0) {
+                return (waitNanos + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1);
+            }
+            if (bucket.tat.compareAndSet(tat, base + emissionIntervalNanos) && buckets.get(userId) == bucket) {
+                return 0;
+            }
+            // Lost a CAS race or the bucket was swept concurrently: retry on the live bucket
+        }
+    }
+
+    /**
+     * Reserves a stream slot; callers must pair a successful call with {@link #releaseStream}
+     */
+    public boolean tryAcquireStream(Long userId) {
+        if (!enabled) {
+            return true;
+        }
+
+        while (true) {
+            Bucket bucket = buckets.computeIfAbsent(userId, id -> new Bucket());
+            int current = bucket.openStreams.get();
+            if (current >= maxConcurrentStreams) {
+                return false;
+            }
+            if (bucket.openStreams.compareAndSet(current, current + 1)) {
+                if (buckets.get(userId) == bucket) {
+                    return true;
+                }
+                // Swept between lookup and increment; the slot belongs on the live bucket
+                bucket.openStreams.decrementAndGet();
+            }
+        }
+    }
+
+    public void releaseStream(Long userId) {
+        if (!enabled) {
+            return;
+        }
+
+        Bucket bucket = buckets.get(userId);
+        if (bucket != null) {
+            bucket.openStreams.updateAndGet(current -> Math.max(0, current - 1));
+        }
+    }
+
+    /**
+     * A bucket whose TAT has passed is identical to a fresh one, so dropping it loses nothing
+     */
+    @Scheduled(fixedDelayString = "${app.rate-limit.sweep-interval-ms:60000}")
+    public void evictIdle() {
+        long now = System.nanoTime();
+        int before = buckets.size();
+        buckets.entrySet().removeIf(entry -> entry.getValue().isIdle(now));
+        int evicted = before - buckets.size();
+        if (evicted > 0) {
+            log.debug("Evicted {} idle rate limit buckets", evicted);
+        }
+    }
+
+    private static final class Bucket {
+        // Theoretical arrival time of the next request at the sustained rate
+        private final AtomicLong tat = new AtomicLong(System.nanoTime());
+        private final AtomicInteger openStreams = new AtomicInteger();
+
+        private boolean isIdle(long now) {
+            return openStreams.get() == 0 && tat.get() - now <= 0;
+        }
+    }
+}
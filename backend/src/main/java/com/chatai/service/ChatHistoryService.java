@@ -1,9 +1,12 @@
 package com.chatai.service;
 
 import com.chatai.entity.ChatMessage;
+import com.chatai.entity.ChatMessageReasoning;
 import com.chatai.entity.ChatSession;
 import com.chatai.entity.User;
+import com.chatai.repository.ChatMessageReasoningRepository;
 import com.chatai.repository.ChatMessageRepository;
+import com.chatai.repository.ChatSessionArchiveRepository;
 import com.chatai.repository.ChatSessionRepository;
 import com.chatai.repository.UserRepository;
 import lombok.RequiredArgsConstructor;
@@ -12,6 +15,8 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -23,7 +28,10 @@ public class ChatHistoryService {
     
     private final ChatSessionRepository chatSessionRepository;
     private final ChatMessageRepository chatMessageRepository;
+    private final ChatMessageReasoningRepository chatMessageReasoningRepository;
     private final UserRepository userRepository;
+    private final ChatSessionArchiveRepository chatSessionArchiveRepository;
+    private final SessionArchiveService sessionArchiveService;
     
     @Transactional
     public ChatSession createNewSession(Long userId, String modelUsed) {
@@ -42,20 +50,63 @@ public class ChatHistoryService {
     @Transactional
     public ChatMessage saveMessage(Long sessionId, String content, String thinking, 
                                  ChatMessage.MessageRole role, String modelUsed, Integer tokensUsed) {
+        return persistMessage(sessionId, content, thinking, role, modelUsed, tokensUsed, false);
+    }
+    
+    /**
+     * Stores a streamed assistant answer; partial marks one that is still generating or was cut off
+     */
+    @Transactional
+    public ChatMessage saveAssistantMessage(Long sessionId, String content, String thinking, String modelUsed,
+                                            Integer tokensUsed, boolean partial) {
+        return persistMessage(sessionId, content, thinking, ChatMessage.MessageRole.ASSISTANT, modelUsed, tokensUsed, partial);
+    }
+    
+    /**
+     * Rewrites a checkpointed answer in place. Reasoning is stored once, with the final write.
+     */
+    @Transactional
+    public void updateStreamedMessage(Long sessionId, ChatMessage message, String content, String thinking,
+                                      Integer tokensUsed, boolean partial) {
+        boolean hasReasoning = thinking != null && !thinking.isEmpty();
+        chatMessageRepository.updateStreamedContent(message.getId(), message.getCreatedAt(), content,
+                hasReasoning, tokensUsed, partial);
+        if (hasReasoning) {
+            chatMessageReasoningRepository.save(ChatMessageReasoning.builder()
+                    .chatMessage(chatMessageRepository.getReferenceById(message.getId()))
+                    .thinking(thinking)
+                    .build());
+        }
+        chatSessionRepository.touch(sessionId, LocalDateTime.now());
+    }
+    
+    private ChatMessage persistMessage(Long sessionId, String content, String thinking, ChatMessage.MessageRole role,
+                                       String modelUsed, Integer tokensUsed, boolean partial) {
         ChatSession session = chatSessionRepository.findById(sessionId)
                 .orElseThrow(() -> new RuntimeException("Chat session not found"));
         
+        boolean hasReasoning = thinking != null && !thinking.isEmpty();
+        
         ChatMessage message = ChatMessage.builder()
                 .chatSession(session)
                 .role(role)
                 .content(content)
-                .thinking(thinking)
+                .hasReasoning(hasReasoning)
                 .modelUsed(modelUsed)
                 .tokensUsed(tokensUsed)
+                .partial(partial)
                 .build();
         
         ChatMessage savedMessage = chatMessageRepository.save(message);
         
+        // Reasoning goes to the side table so history loads never pull it
+        if (hasReasoning) {
+            chatMessageReasoningRepository.save(ChatMessageReasoning.builder()
+                    .chatMessage(savedMessage)
+                    .thinking(thinking)
+                    .build());
+        }
+        
         // Update session title if this is the first user message
         boolean needsUpdate = false;
         if (role == ChatMessage.MessageRole.USER) {
@@ -84,32 +135,84 @@ public class ChatHistoryService {
         return chatSessionRepository.findByUserIdOrderByUpdatedAtDesc(userId);
     }
     
-    public List<ChatMessage> getSessionMessages(Long sessionId, Long userId) {
-        // Use a single query with JOIN to avoid N+1 problem
-        return chatMessageRepository.findByChatSessionIdAndUserIdOrderByCreatedAtAsc(sessionId, userId);
+    // Session must come from getSession, which already checked ownership
+    public List<ChatMessage> getSessionMessages(ChatSession session) {
+        return chatMessageRepository.findSessionMessagesSince(session.getId(), partitionLowerBound(session));
+    }
+    
+    public List<ChatMessage> getSessionMessagesAfter(ChatSession session, Long afterMessageId) {
+        // Delta sync: only messages the client has not seen yet
+        return chatMessageRepository.findSessionMessagesSinceAfterId(session.getId(), partitionLowerBound(session), afterMessageId);
+    }
+    
+    /**
+     * Strong ETag for a single session, derived from updated_at and message counters
+     */
+    public String getSessionEtag(ChatSession session) {
+        return "\"" + sessionVersion(session) + "\"";
+    }
+    
+    /**
+     * ETag for a delta read; the cursor is part of it since each cursor yields a different body
+     */
+    public String getSessionEtag(ChatSession session, Long afterMessageId) {
+        return "\"" + sessionVersion(session) + "-a" + afterMessageId + "\"";
+    }
+    
+    private String sessionVersion(ChatSession session) {
+        Object[] stats = firstRow(chatMessageRepository.findSessionMessageStatsRaw(session.getId(), partitionLowerBound(session)));
+        long messageCount = stats[0] != null ? ((Number) stats[0]).longValue() : 0;
+        long maxMessageId = stats[1] != null ? ((Number) stats[1]).longValue() : 0;
+        
+        return "s" + session.getId() + "-" + messageCount + "-" + maxMessageId + "-" + toEpochMillis(session.getUpdatedAt());
+    }
+    
+    /**
+     * Strong ETag for the session list of a user (count, newest update, newest id)
+     */
+    public String getSessionListEtag(Long userId) {
+        Object[] stats = firstRow(chatSessionRepository.findUserSessionStatsRaw(userId));
+        long sessionCount = stats[0] != null ? ((Number) stats[0]).longValue() : 0;
+        long maxUpdatedAt = toEpochMillis((LocalDateTime) stats[1]);
+        long maxSessionId = stats[2] != null ? ((Number) stats[2]).longValue() : 0;
+        
+        return "\"u" + userId + "-" + sessionCount + "-" + maxSessionId + "-" + maxUpdatedAt + "\"";
+    }
+    
+    public Optional<String> getMessageReasoning(Long sessionId, Long messageId, Long userId) {
+        return chatMessageReasoningRepository.findThinkingByMessageIdAndSessionIdAndUserId(messageId, sessionId, userId);
     }
     
     public long getSessionMessageCount(Long sessionId, Long userId) {
         // Efficient count without loading messages
-        return chatMessageRepository.countByChatSessionId(sessionId);
+        long count = chatMessageRepository.countByChatSessionId(sessionId);
+        if (count == 0) {
+            count = chatSessionArchiveRepository.findMessageCountBySessionId(sessionId).orElse(0);
+        }
+        return count;
     }
     
     public Map<Long, Long> getSessionMessageCounts(Long userId) {
-        // Get all message counts for user's sessions in one query
-        return chatMessageRepository.findSessionMessageCountsByUserId(userId);
+        // Get all message counts for user's sessions in one query, plus archived sessions
+        Map<Long, Long> counts = new HashMap<>(chatMessageRepository.findSessionMessageCountsByUserId(userId));
+        counts.putAll(chatSessionArchiveRepository.findArchivedMessageCountsByUserId(userId));
+        return counts;
     }
     
     @Transactional
     public void deleteSession(Long sessionId, Long userId) {
-        // Use efficient query that includes user check
-        ChatSession session = chatSessionRepository.findByIdAndUserId(sessionId, userId)
-                .orElseThrow(() -> new RuntimeException("Chat session not found or access denied"));
-        
-        chatSessionRepository.delete(session);
+        // Soft delete hides the session immediately; PurgeService removes its rows in bounded chunks
+        int updated = chatSessionRepository.softDelete(sessionId, userId, LocalDateTime.now());
+        if (updated == 0) {
+            throw new RuntimeException("Chat session not found or access denied");
+        }
     }
     
     public Optional<ChatSession> getSession(Long sessionId, Long userId) {
-        return chatSessionRepository.findByIdAndUserId(sessionId, userId);
+        Optional<ChatSession> session = chatSessionRepository.findByIdAndUserId(sessionId, userId);
+        // Cold sessions are moved back into the live tables on first touch
+        session.ifPresent(sessionArchiveService::rehydrateIfArchived);
+        return session;
     }
     
     @Transactional
@@ -121,4 +224,19 @@ public class ChatHistoryService {
         session.setTitle(newTitle);
         return chatSessionRepository.save(session);
     }
+    
+    /**
+     * Messages are never older than their session; a day of slack covers clock skew between nodes
+     */
+    private LocalDateTime partitionLowerBound(ChatSession session) {
+        return session.getCreatedAt() != null ? session.getCreatedAt().minusDays(1) : LocalDateTime.of(1970, 1, 1, 0, 0);
+    }
+    
+    private Object[] firstRow(List<Object[]> rows) {
+        return rows.isEmpty() ? new Object[3] : rows.get(0);
+    }
+    
+    private long toEpochMillis(LocalDateTime dateTime) {
+        return dateTime != null ? dateTime.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli() : 0;
+    }
 }
@@ -2,27 +2,55 @@ package com.chatai.service;
 
 import com.chatai.dto.chat.ChatRequest;
 import com.chatai.entity.ChatMessage;
+import com.chatai.entity.ChatSession;
+import com.chatai.llm.LlmProvider;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
 
 import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class ChatService {
     
-    private final GroqService groqService;
+    private static final String THINK_OPEN = "<think>";
+    private static final String THINK_CLOSE = "</think>";
+    
+    private final LlmService llmService;
     private final ChatHistoryService chatHistoryService;
+    private final TokenQuotaService tokenQuotaService;
+    private final ModelRouter modelRouter;
+    private final StreamCoalescer streamCoalescer;
+    private final StreamFrameEncoder streamFrameEncoder;
+    private final ReasoningFilter reasoningFilter;
+    private final ObjectMapper objectMapper;
+    
+    @Value("${app.stream-checkpoint.every-tokens:64}")
+    private int checkpointEveryTokens;
+    
+    @Value("${app.stream-checkpoint.interval-ms:3000}")
+    private long checkpointIntervalMillis;
+    
+    @Value("${app.stream-checkpoint.max-chars:262144}")
+    private int checkpointMaxChars;
     
     public Flux<String> processChatStream(ChatRequest request) {
         try {
             log.info("Processing streaming chat request for model: {}", request.getModel());
             
-            return groqService.chatStream(
+            return llmService.chatStream(
                 request.getMessage(), 
                 request.getTemperature(), 
                 request.getMaxTokens(), 
@@ -39,12 +67,19 @@ public class ChatService {
         }
     }
     
-    public Flux<String> processChatStreamWithHistory(ChatRequest request, Long sessionId, Long userId) {
-        StringBuilder responseBuilder = new StringBuilder();
-        StringBuilder thinkingBuilder = new StringBuilder();
+    public Flux<ServerSentEvent<String>> processChatStreamWithHistory(ChatRequest request, ChatSession session, Long userId,
+                                                     TokenQuotaService.Reservation reservation, ModelRouter.Route route) {
+        Long sessionId = session.getId();
+        StreamedAnswer answer = new StreamedAnswer(sessionId, request.getModel());
+        AtomicLong totalTokens = new AtomicLong(-1);
         
         // Get conversation history for context
-        List<ChatMessage> conversationHistory = chatHistoryService.getSessionMessages(sessionId, userId);
+        List<ChatMessage> conversationHistory = chatHistoryService.getSessionMessages(session);
+        
+        // History was not known when the quota was reserved; it is part of the prompt cost
+        tokenQuotaService.extend(reservation, conversationHistory.stream()
+                .mapToLong(msg -> TokenQuotaService.estimateTokens(msg.getContent()))
+                .sum());
         
         log.info("🔍 Conversation History Debug - SessionId: {}, UserId: {}, HistorySize: {}", 
                 sessionId, userId, conversationHistory.size());
@@ -56,58 +91,87 @@ public class ChatService {
                     msg.getContent().length() > 50 ? msg.getContent().substring(0, 50) + "..." : msg.getContent());
         }
         
-        return groqService.chatStreamWithHistory(
+        // The router picked the upstream model; history and quotas keep the public model id
+        Flux<String> upstream = llmService.chatStreamWithHistory(
                 request.getMessage(), 
                 request.getTemperature(), 
                 request.getMaxTokens(), 
-                request.getModel(),
-                conversationHistory
-            )
+                route.getProvider(),
+                route.getUpstreamModel(),
+                conversationHistory,
+                request.getReasoning()
+            );
+        
+        Flux<String> answerStream = modelRouter.track(route, upstream)
             .doOnNext(chunk -> {
                 // Parse chunk to extract content and thinking for history
                 try {
+                    Long usage = extractTotalTokensFromChunk(chunk, route.getProvider());
+                    if (usage != null) {
+                        totalTokens.set(usage);
+                    }
                     if (!chunk.trim().equals("[DONE]")) {
                         String content = extractContentFromChunk(chunk);
-                        if (content != null && !content.isEmpty()) {
-                            if (content.contains("<think>")) {
-                                String thinking = extractThinkingFromContent(content);
-                                if (thinking != null) {
-                                    thinkingBuilder.append(thinking);
-                                }
-                                content = removeThinkingFromContent(content);
-                            }
-                            responseBuilder.append(content);
+                        // Reasoning in its own field (parsed format, gpt-oss) goes to the reasoning side table
+                        String thinking = extractReasoningFromChunk(chunk);
+                        if ((content != null && !content.isEmpty()) || thinking != null) {
+                            answer.append(content != null ? content : "", thinking);
                         }
                     }
                 } catch (Exception e) {
                     log.warn("Error parsing streaming chunk for history: {}", e.getMessage());
                 }
             })
-            .doOnComplete(() -> {
-                // Save assistant response to history
-                String finalResponse = responseBuilder.toString();
-                String finalThinking = thinkingBuilder.toString();
-                
-                if (!finalResponse.trim().isEmpty() || !finalThinking.trim().isEmpty()) {
-                    try {
-                        chatHistoryService.saveMessage(
-                            sessionId, 
-                            finalResponse, 
-                            finalThinking.isEmpty() ? null : finalThinking,
-                            ChatMessage.MessageRole.ASSISTANT, 
-                            request.getModel(), 
-                            null // Token count not available in streaming
-                        );
-                        log.debug("Saved assistant response to session: {}", sessionId);
-                    } catch (Exception e) {
-                        log.error("Error saving assistant response to history: {}", e.getMessage());
-                    }
+            .doOnError(e -> log.error("Stream error for session {}: {}", sessionId, e.getMessage()))
+            .doFinally(signal -> {
+                // Cancelled (client gone) or failed answers keep what was generated, flagged as partial
+                boolean complete = signal == SignalType.ON_COMPLETE;
+                answer.finish(totalTokens.get() >= 0 ? (int) totalTokens.get() : null, complete);
+                if (!complete) {
+                    log.info("Stream for session {} ended with {}, answer kept as partial", sessionId, signal);
                 }
-            })
-            .doOnError(e -> {
-                log.error("Stream error for session {}: {}", sessionId, e.getMessage());
-                // Don't rethrow to avoid breaking the stream
+                
+                // Reported usage when Groq sent it, otherwise an estimate of what was generated
+                long used = totalTokens.get() >= 0 ? totalTokens.get()
+                        : reservation.getPromptTokens() + answer.estimateTokens();
+                tokenQuotaService.settle(reservation, used);
             });
+        
+        // History sees every upstream delta; the client gets the reasoning it asked for, in its format,
+        // merged into fewer, larger frames
+        // A failed upstream ends the stream with an error frame, after the answer was kept as partial
+        Flux<ServerSentEvent<String>> frames = streamFrameEncoder.encode(request.getStreamFormat(), route.getProvider(),
+                        request.getModel(), reasoningFilter.apply(request.getReasoning(), answerStream))
+                .onErrorResume(e -> Mono.just(streamFrameEncoder.errorFrame(request.getStreamFormat())));
+        return streamCoalescer.coalesce(request.getModel(), frames, frame -> frame.event() == null
+                ? extractContentFromChunk(frame.data()) != null || extractReasoningFromChunk(frame.data()) != null
+                : StreamFrameEncoder.isCompactText(frame));
+    }
+    
+    /**
+     * Total tokens from the usage chunk, in whichever shape the provider reports it, if present
+     */
+    private Long extractTotalTokensFromChunk(String chunk, LlmProvider provider) {
+        if (!chunk.contains("\"total_tokens\"")) {
+            return null;
+        }
+        
+        Long total = null;
+        for (String line : chunk.split("\n")) {
+            String data = line.trim();
+            if (!data.startsWith("data: ") || !data.contains("\"total_tokens\"")) {
+                continue;
+            }
+            try {
+                Long reported = provider.extractTotalTokens(objectMapper.readTree(data.substring(6)));
+                if (reported != null) {
+                    total = reported;
+                }
+            } catch (Exception e) {
+                log.warn("Error parsing usage from streaming chunk: {}", e.getMessage());
+            }
+        }
+        return total;
     }
     
     private String extractContentFromChunk(String chunk) {
@@ -124,7 +188,16 @@ public class ChatService {
                 }
             }
             
-            // Then try to extract from "reasoning" field (some models use this)
+            log.debug("No extractable content found in chunk: {}", chunk.length() > 100 ? chunk.substring(0, 100) + "..." : chunk);
+        } catch (Exception e) {
+            log.warn("Error extracting content from chunk: {}", e.getMessage());
+        }
+        return null;
+    }
+    
+    private String extractReasoningFromChunk(String chunk) {
+        try {
+            // Models with a separate reasoning field (parsed reasoning_format, gpt-oss)
             if (chunk.contains("\"reasoning\":\"")) {
                 int start = chunk.indexOf("\"reasoning\":\"") + 13;
                 int end = chunk.indexOf("\"", start);
@@ -135,29 +208,139 @@ public class ChatService {
                     }
                 }
             }
-            
-            log.debug("No extractable content found in chunk: {}", chunk.length() > 100 ? chunk.substring(0, 100) + "..." : chunk);
         } catch (Exception e) {
-            log.warn("Error extracting content from chunk: {}", e.getMessage());
+            log.warn("Error extracting reasoning from chunk: {}", e.getMessage());
         }
         return null;
     }
     
-    private String extractThinkingFromContent(String content) {
-        if (content.contains("<think>") && content.contains("</think>")) {
-            int start = content.indexOf("<think>") + 7;
-            int end = content.indexOf("</think>");
-            if (end > start) {
-                return content.substring(start, end).trim();
+    /**
+     * Accumulates one streamed answer and checkpoints it to history every few tokens or seconds,
+     * so a crash or cancel leaves a usable message. Short answers are written once, at the end.
+     * Writes run one at a time on a boundedElastic worker, never on the thread delivering chunks.
+     * Each checkpoint rewrites the whole message, so the gap between them grows with the text
+     * (at least a quarter of what is already written), keeping the total written linear.
+     * Held text is capped at app.stream-checkpoint.max-chars; the rest is left out of history.
+     * Inline think blocks (raw reasoning format) are split off the content as they stream in.
+     */
+    private final class StreamedAnswer {
+        private final Long sessionId;
+        private final String modelUsed;
+        private final StringBuilder content = new StringBuilder();
+        private final StringBuilder thinking = new StringBuilder();
+        private final Scheduler.Worker writer = Schedulers.boundedElastic().createWorker();
+        // Only touched by tasks on the writer
+        private ChatMessage message;
+        // The rest is guarded by this
+        private int tokensSinceCheckpoint;
+        private int checkpointedChars;
+        private long lastCheckpointNanos = System.nanoTime();
+        private boolean checkpointQueued;
+        private boolean truncated;
+        private boolean finished;
+        private boolean inThink;
+        
+        private StreamedAnswer(Long sessionId, String modelUsed) {
+            this.sessionId = sessionId;
+            this.modelUsed = modelUsed;
+        }
+        
+        // Cancellation may arrive on another thread than the chunks, hence synchronized
+        synchronized void append(String contentDelta, String thinkingDelta) {
+            if (finished) {
+                return;
+            }
+            if (content.length() + thinking.length() + contentDelta.length()
+                    + (thinkingDelta != null ? thinkingDelta.length() : 0) > checkpointMaxChars) {
+                if (!truncated) {
+                    truncated = true;
+                    log.warn("Answer for session {} exceeds {} chars, the rest is not kept in history",
+                            sessionId, checkpointMaxChars);
+                }
+                return;
+            }
+            if (thinkingDelta != null) {
+                thinking.append(thinkingDelta);
+            }
+            splitThinking(contentDelta);
+            tokensSinceCheckpoint++;
+            if (!checkpointQueued && content.length() - checkpointedChars >= checkpointedChars / 4
+                    && (tokensSinceCheckpoint >= checkpointEveryTokens
+                        || System.nanoTime() - lastCheckpointNanos >= TimeUnit.MILLISECONDS.toNanos(checkpointIntervalMillis))) {
+                checkpointQueued = true;
+                writer.schedule(this::checkpoint);
             }
         }
-        return null;
-    }
-    
-    private String removeThinkingFromContent(String content) {
-        if (content.contains("<think>") && content.contains("</think>")) {
-            return content.replaceAll("<think>.*?</think>", "").trim();
+        
+        // A think block spans many deltas, so whether one is open is kept across chunks
+        private void splitThinking(String contentDelta) {
+            String rest = contentDelta;
+            while (!rest.isEmpty()) {
+                String tag = inThink ? THINK_CLOSE : THINK_OPEN;
+                int at = rest.indexOf(tag);
+                (inThink ? thinking : content).append(at < 0 ? rest : rest.substring(0, at));
+                if (at < 0) {
+                    return;
+                }
+                inThink = !inThink;
+                rest = rest.substring(at + tag.length());
+            }
+        }
+        
+        // Takes the text as it is when the write runs, so a slow database skips checkpoints instead of queueing them
+        private void checkpoint() {
+            String snapshot;
+            synchronized (this) {
+                checkpointQueued = false;
+                if (finished) {
+                    return;
+                }
+                tokensSinceCheckpoint = 0;
+                lastCheckpointNanos = System.nanoTime();
+                checkpointedChars = content.length();
+                snapshot = content.toString();
+            }
+            if (snapshot.trim().isEmpty()) {
+                return;
+            }
+            try {
+                if (message == null) {
+                    message = chatHistoryService.saveAssistantMessage(sessionId, snapshot, null, modelUsed, null, true);
+                } else {
+                    chatHistoryService.updateStreamedMessage(sessionId, message, snapshot, null, null, true);
+                }
+            } catch (Exception e) {
+                log.warn("Error checkpointing assistant response for session {}: {}", sessionId, e.getMessage());
+            }
+        }
+        
+        synchronized void finish(Integer tokensUsed, boolean complete) {
+            if (finished) {
+                return;
+            }
+            finished = true;
+            String finalResponse = content.toString().strip();
+            String finalThinking = thinking.toString().isBlank() ? null : thinking.toString().strip();
+            boolean partial = !complete || truncated;
+            // Queued after any pending checkpoint, which then sees finished and does nothing
+            writer.schedule(() -> {
+                try {
+                    if (message != null) {
+                        chatHistoryService.updateStreamedMessage(sessionId, message, finalResponse, finalThinking, tokensUsed, partial);
+                    } else if (!finalResponse.trim().isEmpty() || finalThinking != null) {
+                        chatHistoryService.saveAssistantMessage(sessionId, finalResponse, finalThinking, modelUsed, tokensUsed, partial);
+                    }
+                    log.debug("Saved assistant response to session: {}", sessionId);
+                } catch (Exception e) {
+                    log.error("Error saving assistant response to history: {}", e.getMessage());
+                } finally {
+                    writer.dispose();
+                }
+            });
+        }
+        
+        synchronized long estimateTokens() {
+            return TokenQuotaService.estimateTokens(content.toString()) + TokenQuotaService.estimateTokens(thinking.toString());
         }
-        return content;
     }
 }
@@ -0,0 +1,109 @@
+package com.chatai.service;
+
+import com.chatai.config.GroqConfig;
+import com.chatai.dto.chat.ChatRequest;
+import com.chatai.entity.ChatMessage;
+import com.chatai.entity.ChatSession;
+import com.chatai.exception.RateLimitExceededException;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+
+/**
+ * Starts one chat turn for any transport (SSE, WebSocket): routing, limits and quota, the
+ * session and user message, then the answer stream through the relay. Limit and access
+ * failures are thrown before any frame exists.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ChatTurnService {
+    
+    private final ChatService chatService;
+    private final ChatHistoryService chatHistoryService;
+    private final RequestLimitService requestLimitService;
+    private final BurstLimitService burstLimitService;
+    private final TokenQuotaService tokenQuotaService;
+    private final ModelPermissionService modelPermissionService;
+    private final ModelRouter modelRouter;
+    private final StreamRelayService streamRelayService;
+    private final StreamFrameEncoder streamFrameEncoder;
+    private final GroqConfig groqConfig;
+    
+    public Turn start(ChatRequest request, Long userId) {
+        // Unknown or disabled models are rejected from the in-memory catalog, no query needed
+        ModelRouter.Route route = modelRouter.route(request.getModel());
+        
+        // Short-window limits are thrown (not Flux.error) so the 429 and Retry-After go out before any frame
+        long retryAfter = burstLimitService.tryAcquireRequest(userId);
+        if (retryAfter > 0) {
+            throw new RateLimitExceededException("Too many requests, slow down", retryAfter);
+        }
+        if (!burstLimitService.tryAcquireStream(userId)) {
+            throw new RateLimitExceededException("Too many concurrent streams", 1);
+        }
+        
+        TokenQuotaService.Reservation reservation = null;
+        boolean modelCounted = false;
+        boolean requestCounted = false;
+        try {
+            // Per-model access and limit, answered from the in-memory permission matrix
+            modelPermissionService.acquire(userId, request.getModel());
+            modelCounted = true;
+            
+            // Check and count the request in one atomic step
+            if (!requestLimitService.tryAcquire(userId)) {
+                throw new RateLimitExceededException("Daily request limit exceeded", requestLimitService.getSecondsUntilReset());
+            }
+            requestCounted = true;
+            
+            // Hold prompt + max_tokens until the stream reports its real usage; without one the
+            // upstream default LlmService sends applies
+            reservation = tokenQuotaService.reserve(userId, request.getModel(),
+                    TokenQuotaService.estimateTokens(request.getMessage()),
+                    request.getMaxTokens() != null ? request.getMaxTokens() : groqConfig.getMaxTokens());
+            
+            // Create or get chat session
+            ChatSession session;
+            if (request.getSessionId() != null) {
+                session = chatHistoryService.getSession(request.getSessionId(), userId)
+                        .orElseThrow(() -> new RuntimeException("Session not found or access denied"));
+            } else {
+                session = chatHistoryService.createNewSession(userId, request.getModel());
+            }
+            
+            // Save user message FIRST
+            chatHistoryService.saveMessage(session.getId(), request.getMessage(), null, 
+                    ChatMessage.MessageRole.USER, request.getModel(), null);
+            
+            // Process chat stream and save assistant response (now with user message in history)
+            Flux<ServerSentEvent<String>> upstream = chatService.processChatStreamWithHistory(request, session, userId, reservation, route)
+                    .startWith(streamFrameEncoder.sessionFrame(request.getStreamFormat(), session.getId()));
+            
+            // Generation outlives this connection; the stream slot is held until the upstream ends
+            return new Turn(session.getId(), streamRelayService.start(userId, session.getId(), upstream,
+                    () -> burstLimitService.releaseStream(userId)));
+        } catch (RuntimeException e) {
+            burstLimitService.releaseStream(userId);
+            // Nothing was generated, so the turn does not count against the daily limits
+            if (modelCounted) {
+                modelPermissionService.release(userId, request.getModel());
+            }
+            if (requestCounted) {
+                requestLimitService.release(userId);
+            }
+            if (reservation != null) {
+                tokenQuotaService.settle(reservation, 0);
+            }
+            throw e;
+        }
+    }
+    
+    /**
+     * A started turn: its session (new or existing) and the first client's view of the answer
+     */
+    public record Turn(Long sessionId, Flux<ServerSentEvent<String>> frames) {
+    }
+}
@@ -0,0 +1,82 @@
+package com.chatai.service;
+
+import java.time.LocalDate;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free per-day usage counter. The epoch day (upper 24 bits) and the amount used
+ * (lower 40 bits) share one long, so a limit check plus increment is a single CAS and
+ * a counter from an earlier day reads as zero without any reset write.
+ */
+final class DailyCounter {
+
+    static final long UNLIMITED = -1;
+
+    private static final int AMOUNT_BITS = 40;
+    private static final long AMOUNT_MASK = (1L << AMOUNT_BITS) - 1;
+
+    private volatile long limit;
+    private final AtomicLong state;
+
+    DailyCounter(long limit, LocalDate day, long used) {
+        this.limit = limit;
+        this.state = new AtomicLong(pack(day != null ? day.toEpochDay() : 0, used));
+    }
+
+    /**
+     * Adds amount if it keeps today's usage within the limit; returns false otherwise
+     */
+    boolean tryAdd(long amount) {
+        long today = LocalDate.now().toEpochDay();
+        while (true) {
+            long current = state.get();
+            long used = usedOn(current, today);
+            if (limit != UNLIMITED && used + amount > limit) {
+                return false;
+            }
+            if (state.compareAndSet(current, pack(today, used + amount))) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Unconditional adjustment (negative to refund), never dropping below zero
+     */
+    void add(long delta) {
+        long today = LocalDate.now().toEpochDay();
+        state.updateAndGet(current -> pack(today, Math.max(0, usedOn(current, today) + delta)));
+    }
+
+    void reset() {
+        state.set(pack(LocalDate.now().toEpochDay(), 0));
+    }
+
+    long usedToday() {
+        return usedOn(state.get(), LocalDate.now().toEpochDay());
+    }
+
+    long getLimit() {
+        return limit;
+    }
+
+    void setLimit(long limit) {
+        this.limit = limit;
+    }
+
+    boolean isUnlimited() {
+        return limit == UNLIMITED;
+    }
+
+    boolean isStale() {
+        return (state.get() >>> AMOUNT_BITS) < LocalDate.now().toEpochDay();
+    }
+
+    private static long usedOn(long state, long today) {
+        return (state >>> AMOUNT_BITS) == today ? state & AMOUNT_MASK : 0;
+    }
+
+    private static long pack(long epochDay, long used) {
+        return (epochDay << AMOUNT_BITS) | (used & AMOUNT_MASK);
+    }
+}
@@ -4,12 +4,11 @@ import com.chatai.config.GroqConfig;
 import com.chatai.dto.GroqRequest;
 import com.chatai.dto.GroqResponse;
 import com.chatai.entity.ChatMessage;
+import com.chatai.llm.LlmProvider;
+import com.chatai.llm.LlmProviderRegistry;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.http.HttpHeaders;
-import org.springframework.http.MediaType;
 import org.springframework.stereotype.Service;
-import org.springframework.web.reactive.function.client.WebClient;
 import reactor.core.publisher.Flux;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.JsonNode;
@@ -17,10 +16,14 @@ import com.fasterxml.jackson.databind.JsonNode;
 import java.util.List;
 import java.util.ArrayList;
 
+/**
+ * Builds chat completion requests (system prompt, history) and normalizes streamed chunks to SSE
+ * frames; the transport is whichever {@link LlmProvider} serves the model.
+ */
 @Slf4j
 @Service
 @RequiredArgsConstructor
-public class GroqService {
+public class LlmService {
     
     private static final String SYSTEM_PROMPT = 
         "Bạn là một AI assistant thông minh được phát triển và tinh chỉnh bởi Zettix Team. " +
@@ -31,8 +34,9 @@ public class GroqService {
         "Hãy giúp đỡ người dùng một cách tốt nhất có thể.";
     
     private final GroqConfig config;
-    private final WebClient.Builder webClientBuilder;
+    private final LlmProviderRegistry providerRegistry;
     private final ObjectMapper objectMapper;
+    private final ReasoningFilter reasoningFilter;
     
     public String chat(String message, Double temperature, Integer maxTokens) {
         return chat(message, temperature, maxTokens, null);
@@ -40,11 +44,7 @@ public class GroqService {
     
     public String chat(String message, Double temperature, Integer maxTokens, String modelName) {
         try {
-            WebClient webClient = webClientBuilder
-                .baseUrl(config.getBaseUrl())
-                .defaultHeader(HttpHeaders.AUTHORIZATION, "Bearer " + config.getApiKey())
-                .defaultHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
-                .build();
+            LlmProvider provider = providerRegistry.getDefault();
             
             // Use provided model name or default from config
             String modelToUse = modelName != null ? modelName : config.getModel();
@@ -68,24 +68,19 @@ public class GroqService {
                 .stream(false)
                 .build();
             
-            log.info("Calling Groq API with model: {}", modelToUse);
+            log.info("Calling {} with model: {}", provider.getName(), modelToUse);
             
-            GroqResponse response = webClient.post()
-                .uri("/openai/v1/chat/completions")
-                .bodyValue(request)
-                .retrieve()
-                .bodyToMono(GroqResponse.class)
-                .block();
+            GroqResponse response = provider.complete(request);
             
             if (response != null && response.getChoices() != null && !response.getChoices().isEmpty()) {
                 return response.getChoices().get(0).getMessage().getContent();
             } else {
-                throw new RuntimeException("Invalid response from Groq API");
+                throw new RuntimeException("Invalid response from " + provider.getName());
             }
             
         } catch (Exception e) {
-            log.error("Error calling Groq API", e);
-            throw new RuntimeException("Failed to get response from Groq: " + e.getMessage());
+            log.error("Error calling LLM provider", e);
+            throw new RuntimeException("Failed to get response from LLM provider: " + e.getMessage());
         }
     }
     
@@ -94,17 +89,14 @@ public class GroqService {
     }
     
     public Flux<String> chatStream(String message, Double temperature, Integer maxTokens, String modelName) {
-        return chatStreamWithHistory(message, temperature, maxTokens, modelName, new ArrayList<>());
+        return chatStreamWithHistory(message, temperature, maxTokens, providerRegistry.getDefault(), modelName,
+                new ArrayList<>(), ReasoningFilter.FULL);
     }
     
-    public Flux<String> chatStreamWithHistory(String message, Double temperature, Integer maxTokens, String modelName, List<ChatMessage> conversationHistory) {
+    public Flux<String> chatStreamWithHistory(String message, Double temperature, Integer maxTokens, LlmProvider provider,
+                                              String modelName, List<ChatMessage> conversationHistory,
+                                              String reasoningMode) {
         try {
-            WebClient webClient = webClientBuilder
-                .baseUrl(config.getBaseUrl())
-                .defaultHeader(HttpHeaders.AUTHORIZATION, "Bearer " + config.getApiKey())
-                .defaultHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
-                .build();
-            
             // Use provided model name or default from config
             String modelToUse = modelName != null ? modelName : config.getModel();
             
@@ -140,24 +132,23 @@ public class GroqService {
                 .temperature(temperature != null ? temperature : config.getTemperature())
                 .max_tokens(maxTokens != null ? maxTokens : config.getMaxTokens())
                 .stream(true)
+                // Servers that do not know stream_options may reject the request
+                .stream_options(provider.getCapabilities().streamUsage()
+                        ? GroqRequest.StreamOptions.builder().include_usage(true).build() : null)
                 .build();
+            if (provider.getCapabilities().reasoning()) {
+                reasoningFilter.configureUpstream(request, modelToUse, reasoningMode);
+            }
             
-            log.info("Calling Groq API with streaming for model: {} with {} history messages", modelToUse, conversationHistory.size());
+            log.info("Calling {} with streaming for model: {} with {} history messages", 
+                    provider.getName(), modelToUse, conversationHistory.size());
             
-            return webClient.post()
-                .uri("/openai/v1/chat/completions")
-                .bodyValue(request)
-                .retrieve()
-                .bodyToFlux(String.class)
+            return provider.stream(request)
                 // Pass through raw streaming data to frontend for processing
                 .filter(chunk -> chunk != null)
                 .map(this::processStreamingChunk)
                 .filter(chunk -> chunk != null && !chunk.trim().isEmpty())
-                // Improved error handling
-                .onErrorResume(e -> {
-                    log.error("Error in Groq streaming: {}", e.getMessage());
-                    return Flux.empty();
-                })
+                // Errors go on to the caller, which keeps the answer as partial and tells the client
                 .doOnSubscribe(subscription -> log.info("Starting stream for model: {}", modelToUse))
                 .doOnComplete(() -> log.info("Stream completed for model: {}", modelToUse))
                 .doOnCancel(() -> log.warn("Stream cancelled for model: {}", modelToUse))
@@ -165,8 +156,8 @@ public class GroqService {
                 .doFinally(signal -> log.info("Stream finished with signal: {} for model: {}", signal, modelToUse));
             
         } catch (Exception e) {
-            log.error("Error calling Groq API for streaming", e);
-            return Flux.error(new RuntimeException("Failed to get streaming response from Groq: " + e.getMessage()));
+            log.error("Error calling {} for streaming", provider.getName(), e);
+            return Flux.error(new RuntimeException("Failed to get streaming response from " + provider.getName() + ": " + e.getMessage()));
         }
     }
     
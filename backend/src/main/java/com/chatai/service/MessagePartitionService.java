@@ -0,0 +1,132 @@
+package com.chatai.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+
+/**
+ * Maintains the monthly RANGE COLUMNS(created_at) partitions of chat_messages:
+ * pre-creates future months by splitting the MAXVALUE partition and enforces retention by
+ * dropping whole expired partitions instead of deleting rows one by one.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class MessagePartitionService {
+    
+    private static final String TABLE = "chat_messages";
+    private static final String MAX_PARTITION = "pmax";
+    private static final DateTimeFormatter PARTITION_NAME = DateTimeFormatter.ofPattern("'p'yyyyMM");
+    
+    private final JdbcTemplate jdbcTemplate;
+    
+    @Value("${app.partitioning.enabled:true}")
+    private boolean enabled;
+    
+    @Value("${app.partitioning.future-months:3}")
+    private int futureMonths;
+    
+    @Value("${app.partitioning.retention-months:0}")
+    private int retentionMonths;
+    
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStartup() {
+        maintainPartitions();
+    }
+    
+    @Scheduled(cron = "${app.partitioning.cron:0 0 2 * * *}")
+    public void maintainPartitions() {
+        if (!enabled) {
+            return;
+        }
+        
+        try {
+            List<PartitionInfo> partitions = loadPartitions();
+            if (partitions.isEmpty()) {
+                log.warn("{} is not partitioned, skipping partition maintenance (migration V1.5 has not run; check spring.flyway)", TABLE);
+                return;
+            }
+            
+            createFuturePartitions(partitions);
+            if (retentionMonths > 0) {
+                dropExpiredPartitions(loadPartitions());
+            }
+        } catch (Exception e) {
+            log.error("Partition maintenance failed for {}: {}", TABLE, e.getMessage());
+        }
+    }
+    
+    private void createFuturePartitions(List<PartitionInfo> partitions) {
+        LocalDate highestBound = partitions.stream()
+                .map(PartitionInfo::upperBound)
+                .filter(bound -> bound != null)
+                .max(LocalDate::compareTo)
+                .orElse(LocalDate.now().withDayOfMonth(1));
+        
+        // Cover the current month plus futureMonths ahead
+        LocalDate target = LocalDate.now().withDayOfMonth(1).plusMonths(futureMonths + 1L);
+        
+        while (highestBound.isBefore(target)) {
+            LocalDate nextBound = highestBound.plusMonths(1);
+            // Splitting pmax copies the rows it holds: none while the months ahead exist, but after
+            // a long downtime the rows written since the last bound move into their month
+            jdbcTemplate.execute("ALTER TABLE " + TABLE + " REORGANIZE PARTITION " + MAX_PARTITION + " INTO ("
+                    + "PARTITION " + highestBound.format(PARTITION_NAME) + " VALUES LESS THAN ('" + nextBound + "'), "
+                    + "PARTITION " + MAX_PARTITION + " VALUES LESS THAN (MAXVALUE))");
+            log.info("Created partition {} for {} (< {})", highestBound.format(PARTITION_NAME), TABLE, nextBound);
+            highestBound = nextBound;
+        }
+    }
+    
+    private void dropExpiredPartitions(List<PartitionInfo> partitions) {
+        LocalDate cutoff = LocalDate.now().withDayOfMonth(1).minusMonths(retentionMonths);
+        
+        for (PartitionInfo partition : partitions) {
+            if (partition.upperBound() == null || partition.upperBound().isAfter(cutoff)) {
+                continue;
+            }
+            
+            // Reasoning rows have no FK cascade; remove them for this partition's messages first
+            int reasoningRows = jdbcTemplate.update("DELETE r FROM chat_message_reasoning r JOIN " + TABLE
+                    + " PARTITION (" + partition.name() + ") m ON m.id = r.chat_message_id");
+            jdbcTemplate.execute("ALTER TABLE " + TABLE + " DROP PARTITION " + partition.name());
+            log.info("Dropped expired partition {} of {} (< {}), {} reasoning rows removed",
+                    partition.name(), TABLE, partition.upperBound(), reasoningRows);
+        }
+    }
+    
+    private List<PartitionInfo> loadPartitions() {
+        return jdbcTemplate.query(
+                "SELECT PARTITION_NAME, PARTITION_DESCRIPTION FROM information_schema.PARTITIONS " +
+                "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ? AND PARTITION_NAME IS NOT NULL " +
+                "ORDER BY PARTITION_ORDINAL_POSITION",
+                (rs, rowNum) -> new PartitionInfo(rs.getString(1), parseBound(rs.getString(2))),
+                TABLE);
+    }
+    
+    /**
+     * PARTITION_DESCRIPTION is either MAXVALUE or a quoted datetime literal like '2026-11-01 00:00:00'
+     */
+    private LocalDate parseBound(String description) {
+        if (description == null || description.equalsIgnoreCase("MAXVALUE")) {
+            return null;
+        }
+        String value = description.replace("'", "").trim();
+        return value.length() > 10 
+                ? LocalDateTime.parse(value.replace(' ', 'T')).toLocalDate() 
+                : LocalDate.parse(value);
+    }
+    
+    private record PartitionInfo(String name, LocalDate upperBound) {
+    }
+}
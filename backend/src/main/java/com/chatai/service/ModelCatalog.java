@@ -0,0 +1,212 @@
+package com.chatai.service;
+
+import com.chatai.dto.chat.ModelResponse;
+import com.chatai.dto.chat.ModelsResponse;
+import com.chatai.entity.ModelManagement;
+import com.chatai.repository.ModelManagementRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.DigestUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable in-memory snapshot of model_management. The public model list is serialized once
+ * per snapshot and served as bytes with a content ETag; the chat path validates models against
+ * the same snapshot. Admin changes swap in a new snapshot after commit, and other instances
+ * notice them through a cheap fingerprint query.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ModelCatalog {
+
+    private static final Map<String, Object> USAGE = Map.of(
+        "streaming_endpoint", "POST /api/chat/stream",
+        "note", "Model field is REQUIRED. Only streaming is supported."
+    );
+
+    private final ModelManagementRepository modelManagementRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+
+    private volatile Snapshot snapshot;
+
+    public Snapshot current() {
+        Snapshot current = snapshot;
+        if (current != null) {
+            return current;
+        }
+        synchronized (this) {
+            if (snapshot == null) {
+                snapshot = build();
+            }
+            return snapshot;
+        }
+    }
+
+    /**
+     * Enabled catalog entry for a requested model, or 403 when it is unknown or disabled
+     */
+    public CatalogModel requireEnabled(String modelId) {
+        CatalogModel model = current().find(modelId);
+        if (model == null || !model.enabled()) {
+            throw new AccessDeniedException("Model not available: " + modelId);
+        }
+        return model;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void rebuild() {
+        snapshot = build();
+        log.info("Model catalog loaded: {} models, {} enabled", snapshot.byId.size(), snapshot.enabled.size());
+    }
+
+    /**
+     * Swaps in a fresh snapshot once the admin change commits; building earlier would read the old rows
+     */
+    public void rebuildAfterCommit() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            rebuild();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                rebuild();
+            }
+        });
+    }
+
+    /**
+     * Picks up changes made through another instance
+     */
+    @Scheduled(fixedDelayString = "${app.model-catalog.refresh-interval-ms:30000}")
+    public void refreshIfChanged() {
+        Snapshot current = snapshot;
+        if (current == null) {
+            return;
+        }
+        try {
+            if (!current.fingerprint.equals(fingerprint())) {
+                rebuild();
+            }
+        } catch (Exception e) {
+            log.error("Failed to check model catalog for changes: {}", e.getMessage());
+        }
+    }
+
+    private Snapshot build() {
+        String fingerprint = fingerprint();
+        List<ModelManagement> models = modelManagementRepository.findAllOrdered();
+
+        Map<String, CatalogModel> byId = new LinkedHashMap<>();
+        List<CatalogModel> enabled = new ArrayList<>();
+        List<ModelResponse> publicModels = new ArrayList<>();
+        for (ModelManagement model : models) {
+            CatalogModel entry = new CatalogModel(model.getModelId(), model.getModelName(), model.getDescription(),
+                    model.getCategory(), model.isEnabled(), model.isDefault(),
+                    model.getPriority() != null ? model.getPriority() : 0, model.getGroqModelId(),
+                    upstreamModels(model), model.getProvider());
+            byId.put(entry.modelId(), entry);
+            if (entry.enabled()) {
+                enabled.add(entry);
+                publicModels.add(new ModelResponse(entry.modelName(), entry.modelId(), entry.description(), entry.category()));
+            }
+        }
+
+        byte[] json;
+        try {
+            json = objectMapper.writeValueAsBytes(new ModelsResponse(publicModels, USAGE));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot serialize model catalog", e);
+        }
+        // Content hash, so every instance serving the same catalog hands out the same ETag
+        String etag = "\"m" + DigestUtils.md5DigestAsHex(json) + "\"";
+
+        return new Snapshot(Collections.unmodifiableMap(byId), Collections.unmodifiableList(enabled),
+                json, etag, fingerprint);
+    }
+
+    /**
+     * groqModelId may list several equivalent upstream models separated by commas; empty means the public id
+     */
+    private static List<String> upstreamModels(ModelManagement model) {
+        List<String> upstream = new ArrayList<>();
+        if (model.getGroqModelId() != null) {
+            for (String id : model.getGroqModelId().split(",")) {
+                if (!id.isBlank() && !upstream.contains(id.trim())) {
+                    upstream.add(id.trim());
+                }
+            }
+        }
+        return upstream.isEmpty() ? List.of(model.getModelId()) : List.copyOf(upstream);
+    }
+
+    private String fingerprint() {
+        return jdbcTemplate.queryForObject("SELECT CONCAT(COUNT(*), '-', COALESCE(MAX(updated_at), '')) FROM model_management",
+                String.class);
+    }
+
+    public record CatalogModel(String modelId, String modelName, String description, String category,
+                               boolean enabled, boolean isDefault, int priority, String groqModelId,
+                               List<String> upstreamModels, String provider) {
+    }
+
+    public static final class Snapshot {
+        private final Map<String, CatalogModel> byId;
+        private final List<CatalogModel> enabled;
+        private final byte[] publicJson;
+        private final String etag;
+        private final String fingerprint;
+
+        private Snapshot(Map<String, CatalogModel> byId, List<CatalogModel> enabled, byte[] publicJson,
+                         String etag, String fingerprint) {
+            this.byId = byId;
+            this.enabled = enabled;
+            this.publicJson = publicJson;
+            this.etag = etag;
+            this.fingerprint = fingerprint;
+        }
+
+        public CatalogModel find(String modelId) {
+            return modelId != null ? byId.get(modelId) : null;
+        }
+
+        /**
+         * Enabled models ordered by priority, then name
+         */
+        public List<CatalogModel> getEnabledModels() {
+            return enabled;
+        }
+
+        public List<CatalogModel> getAllModels() {
+            return List.copyOf(byId.values());
+        }
+
+        /**
+         * Serialized {@link ModelsResponse} of the enabled models; callers must not modify it
+         */
+        public byte[] getPublicJson() {
+            return publicJson;
+        }
+
+        public String getEtag() {
+            return etag;
+        }
+    }
+}
@@ -3,11 +3,14 @@ package com.chatai.service;
 import com.chatai.dto.admin.ModelManagementRequest;
 import com.chatai.dto.admin.ModelManagementResponse;
 import com.chatai.entity.ModelManagement;
+import com.chatai.llm.GroqProvider;
+import com.chatai.llm.LlmProviderRegistry;
 import com.chatai.repository.ModelManagementRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.util.StringUtils;
 
 import java.time.LocalDateTime;
 import java.util.List;
@@ -19,6 +22,8 @@ import java.util.stream.Collectors;
 public class ModelManagementService {
     
     private final ModelManagementRepository modelManagementRepository;
+    private final ModelCatalog modelCatalog;
+    private final LlmProviderRegistry providerRegistry;
     
     public List<ModelManagementResponse> getAllModels() {
         List<ModelManagement> models = modelManagementRepository.findAllOrdered();
@@ -56,9 +61,11 @@ public class ModelManagementService {
         model.setIsDefault(request.getIsDefault());
         model.setPriority(request.getPriority() != null ? request.getPriority() : 0);
         model.setGroqModelId(request.getGroqModelId());
+        model.setProvider(resolveProvider(request.getProvider()));
         model.setUpdatedBy(adminUsername);
         
         ModelManagement savedModel = modelManagementRepository.save(model);
+        modelCatalog.rebuildAfterCommit();
         log.info("Admin {} created model: {}", adminUsername, request.getModelId());
         
         return mapToResponse(savedModel);
@@ -81,9 +88,13 @@ public class ModelManagementService {
         if (request.getGroqModelId() != null) {
             model.setGroqModelId(request.getGroqModelId());
         }
+        if (request.getProvider() != null) {
+            model.setProvider(resolveProvider(request.getProvider()));
+        }
         model.setUpdatedBy(adminUsername);
         
         ModelManagement savedModel = modelManagementRepository.save(model);
+        modelCatalog.rebuildAfterCommit();
         log.info("Admin {} updated model: {}", adminUsername, modelId);
         
         return mapToResponse(savedModel);
@@ -100,6 +111,7 @@ public class ModelManagementService {
         model.setUpdatedBy(adminUsername);
         
         ModelManagement savedModel = modelManagementRepository.save(model);
+        modelCatalog.rebuildAfterCommit();
         log.info("Admin {} {} model: {}", adminUsername, newStatus ? "enabled" : "disabled", modelId);
         
         return mapToResponse(savedModel);
@@ -115,9 +127,22 @@ public class ModelManagementService {
         }
         
         modelManagementRepository.delete(model);
+        modelCatalog.rebuildAfterCommit();
         log.info("Admin {} deleted model: {}", adminUsername, modelId);
     }
     
+    /**
+     * Rejects providers that are not configured; blank stores null (Groq)
+     */
+    private String resolveProvider(String provider) {
+        if (!StringUtils.hasText(provider)) {
+            return null;
+        }
+        if (!providerRegistry.contains(provider.trim())) {
+            throw new RuntimeException("LLM provider not found: " + provider);
+        }
+        return provider.trim();
+    }
     
     private ModelManagementResponse mapToResponse(ModelManagement model) {
         return ModelManagementResponse.builder()
@@ -131,6 +156,7 @@ public class ModelManagementService {
                 .isDefault(model.isDefault())
                 .priority(model.getPriority())
                 .groqModelId(model.getGroqModelId())
+                .provider(model.getProvider() != null ? model.getProvider() : GroqProvider.NAME)
                 .createdAt(model.getCreatedAt())
                 .updatedAt(model.getUpdatedAt())
                 .updatedBy(model.getUpdatedBy())
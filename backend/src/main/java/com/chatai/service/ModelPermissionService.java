@@ -2,71 +2,334 @@ package com.chatai.service;
 
 import com.chatai.entity.User;
 import com.chatai.entity.UserModelPermission;
+import com.chatai.exception.RateLimitExceededException;
 import com.chatai.repository.UserModelPermissionRepository;
 import com.chatai.repository.UserRepository;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.access.AccessDeniedException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.sql.Timestamp;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Optional;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 
+/**
+ * Per-model access and per-model daily request limits, answered from an in-memory matrix.
+ * Model ids are interned to small ints; each user holds a bitset of denied models plus one
+ * {@link DailyCounter} per limited model, rebuilt whenever an admin grants or revokes access.
+ */
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class ModelPermissionService {
-    
+
+    private static final String FLUSH_SQL =
+        "UPDATE user_model_permissions SET requests_used_today = ?, last_request_reset = ? WHERE user_id = ? AND model_id = ?";
+
+    private static final int NO_LIMIT = -1;
+
     private final UserModelPermissionRepository permissionRepository;
     private final UserRepository userRepository;
-    
+    private final RequestLimitService requestLimitService;
+    private final TokenQuotaService tokenQuotaService;
+    private final JdbcTemplate jdbcTemplate;
+
+    private final Map<String, Integer> modelIndexes = new ConcurrentHashMap<>();
+    private final List<String> modelIds = new CopyOnWriteArrayList<>();
+    private final Map<Long, ModelAccess> matrix = new ConcurrentHashMap<>();
+    private final Set<Long> dirty = ConcurrentHashMap.newKeySet();
+
     public boolean hasModelAccess(Long userId, String modelId) {
-        // Admin has access to all models
-        User user = userRepository.findById(userId).orElse(null);
-        if (user != null && user.getDailyRequestLimit() == -1) {
-            return true;
+        return getAccess(userId).isAllowed(indexOf(modelId));
+    }
+
+    /**
+     * Enforces model access and counts the turn against the model's daily limit, if any
+     */
+    public void acquire(Long userId, String modelId) {
+        int index = indexOf(modelId);
+        ModelAccess access = getAccess(userId);
+        if (!access.isAllowed(index)) {
+            throw new AccessDeniedException("Model not allowed: " + modelId);
+        }
+        if (!access.tryCount(index)) {
+            throw new RateLimitExceededException("Daily request limit exceeded for model " + modelId,
+                    requestLimitService.getSecondsUntilReset());
+        }
+        if (access.hasLimit(index)) {
+            dirty.add(userId);
         }
-        
-        // Check specific model permission
-        Optional<UserModelPermission> permission = permissionRepository.findByUserIdAndModelId(userId, modelId);
-        return permission.map(UserModelPermission::getIsAllowed).orElse(true); // Default allow
     }
-    
+
+    /**
+     * Gives back a turn counted by {@link #acquire} when a later check rejected the request
+     */
+    public void release(Long userId, String modelId) {
+        ModelAccess access = matrix.get(userId);
+        int index = indexOf(modelId);
+        if (access != null && access.hasLimit(index)) {
+            access.refund(index);
+            dirty.add(userId);
+        }
+    }
+
+    /**
+     * Allows the model with optional daily request and token limits (null = no model limit)
+     */
     @Transactional
-    public UserModelPermission grantModelAccess(Long userId, String modelId, String modelName, Integer dailyLimit) {
+    public UserModelPermission grantModelAccess(Long userId, String modelId, String modelName,
+                                                Integer dailyLimit, Integer dailyTokenLimit) {
         User user = userRepository.findById(userId)
                 .orElseThrow(() -> new RuntimeException("User not found"));
-        
+
         UserModelPermission permission = permissionRepository.findByUserIdAndModelId(userId, modelId)
                 .orElse(UserModelPermission.builder()
                         .user(user)
                         .modelId(modelId)
                         .modelName(modelName)
                         .build());
-        
+
         permission.setIsAllowed(true);
         permission.setDailyRequestLimit(dailyLimit);
+        permission.setDailyTokenLimit(dailyTokenLimit);
         permission.setRequestsUsedToday(0);
         permission.setLastRequestReset(LocalDateTime.now());
-        
-        return permissionRepository.save(permission);
+
+        UserModelPermission saved = permissionRepository.save(permission);
+        invalidateAfterCommit(userId, modelId);
+        return saved;
     }
-    
+
     @Transactional
     public void revokeModelAccess(Long userId, String modelId) {
-        Optional<UserModelPermission> permission = permissionRepository.findByUserIdAndModelId(userId, modelId);
-        if (permission.isPresent()) {
-            permission.get().setIsAllowed(false);
-            permissionRepository.save(permission.get());
-        }
+        // Models are allowed by default, so revoking needs an explicit row
+        UserModelPermission permission = permissionRepository.findByUserIdAndModelId(userId, modelId)
+                .orElseGet(() -> UserModelPermission.builder()
+                        .user(userRepository.findById(userId)
+                                .orElseThrow(() -> new RuntimeException("User not found")))
+                        .modelId(modelId)
+                        .build());
+        permission.setIsAllowed(false);
+        permissionRepository.save(permission);
+        invalidateAfterCommit(userId, null);
     }
-    
+
     public List<UserModelPermission> getUserModelPermissions(Long userId) {
         return permissionRepository.findByUserId(userId);
     }
-    
+
     public List<UserModelPermission> getModelUsers(String modelId) {
         return permissionRepository.findByModelId(modelId);
     }
+
+    /**
+     * Drops a user's row of the matrix, e.g. after their request limit changed
+     */
+    public void invalidate(Long userId) {
+        rebuild(userId, null);
+    }
+
+    @Scheduled(fixedDelayString = "${app.user-limits.flush-interval-ms:5000}")
+    public void flush() {
+        if (dirty.isEmpty()) {
+            return;
+        }
+
+        Timestamp today = Timestamp.valueOf(LocalDate.now().atStartOfDay());
+        List<Object[]> batch = new ArrayList<>();
+        for (Long userId : dirty) {
+            dirty.remove(userId);
+            ModelAccess access = matrix.get(userId);
+            if (access == null) {
+                continue;
+            }
+            for (int index = 0; index < access.counters.length; index++) {
+                if (access.counters[index] != null) {
+                    batch.add(new Object[] { access.counters[index].usedToday(), today, userId, modelIds.get(index) });
+                }
+            }
+        }
+
+        try {
+            jdbcTemplate.batchUpdate(FLUSH_SQL, batch);
+            log.debug("Flushed {} model request counters", batch.size());
+        } catch (Exception e) {
+            batch.forEach(row -> dirty.add((Long) row[2]));
+            log.error("Failed to flush model request counters: {}", e.getMessage());
+        }
+    }
+
+    @Scheduled(cron = "${app.user-limits.reset-cron:0 0 0 * * *}")
+    public void resetDailyCounters() {
+        flush();
+
+        jdbcTemplate.update("UPDATE user_model_permissions SET requests_used_today = 0, last_request_reset = ? " +
+                "WHERE requests_used_today <> 0", Timestamp.valueOf(LocalDateTime.now()));
+
+        // Rows carry no state once every counter is from an earlier day
+        matrix.entrySet().removeIf(entry -> entry.getValue().isIdle() && !dirty.contains(entry.getKey()));
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+    }
+
+    private void invalidateAfterCommit(Long userId, String resetModelId) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            rebuild(userId, resetModelId);
+            tokenQuotaService.refreshModelLimits(userId);
+            return;
+        }
+        // Rebuilding before commit could cache the old rows again
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                rebuild(userId, resetModelId);
+                tokenQuotaService.refreshModelLimits(userId);
+            }
+        });
+    }
+
+    /**
+     * Reloads the user's permissions and swaps the row in atomically. Counters still limited
+     * afterwards are carried over as the same instances, so turns counted on the old row while
+     * the new one loaded are not lost; a model whose counter a grant just reset starts fresh.
+     */
+    private void rebuild(Long userId, String resetModelId) {
+        if (!matrix.containsKey(userId)) {
+            return;
+        }
+
+        // Loaded outside the map so the query never blocks other users' bins
+        ModelAccess rebuilt = loadAccess(userId);
+        int resetIndex = resetModelId != null ? indexOf(resetModelId) : -1;
+        matrix.computeIfPresent(userId, (id, previous) -> rebuilt.carryOver(previous, resetIndex));
+        log.debug("Rebuilt model permissions for user {}", userId);
+    }
+
+    private ModelAccess getAccess(Long userId) {
+        ModelAccess access = matrix.get(userId);
+        if (access != null) {
+            return access;
+        }
+        ModelAccess loaded = loadAccess(userId);
+        ModelAccess existing = matrix.putIfAbsent(userId, loaded);
+        return existing != null ? existing : loaded;
+    }
+
+    private ModelAccess loadAccess(Long userId) {
+        // Admins (unlimited requests) may use every model without per-model limits
+        Integer dailyRequestLimit = userRepository.findQuotaStateRaw(userId).stream()
+                .findFirst()
+                .map(row -> (Integer) row[0])
+                .orElseThrow(() -> new RuntimeException("User not found"));
+        if (dailyRequestLimit != null && dailyRequestLimit == NO_LIMIT) {
+            return ModelAccess.UNRESTRICTED;
+        }
+
+        List<UserModelPermission> permissions = permissionRepository.findByUserId(userId);
+        int size = 0;
+        for (UserModelPermission permission : permissions) {
+            size = Math.max(size, indexOf(permission.getModelId()) + 1);
+        }
+
+        long[] denied = new long[(size + 63) >>> 6];
+        DailyCounter[] counters = new DailyCounter[size];
+        for (UserModelPermission permission : permissions) {
+            int index = indexOf(permission.getModelId());
+            // No row means allowed (default allow); only explicit rows can deny
+            if (!Boolean.TRUE.equals(permission.getIsAllowed())) {
+                denied[index >>> 6] |= 1L << index;
+            }
+            if (permission.getDailyRequestLimit() != null && permission.getDailyRequestLimit() >= 0) {
+                LocalDateTime lastReset = permission.getLastRequestReset();
+                counters[index] = new DailyCounter(permission.getDailyRequestLimit(),
+                        lastReset != null ? lastReset.toLocalDate() : null,
+                        permission.getRequestsUsedToday() != null ? permission.getRequestsUsedToday() : 0);
+            }
+        }
+        return new ModelAccess(denied, counters);
+    }
+
+    private int indexOf(String modelId) {
+        Integer index = modelIndexes.get(modelId);
+        if (index != null) {
+            return index;
+        }
+        synchronized (modelIds) {
+            return modelIndexes.computeIfAbsent(modelId, id -> {
+                modelIds.add(id);
+                return modelIds.size() - 1;
+            });
+        }
+    }
+
+    private static final class ModelAccess {
+
+        static final ModelAccess UNRESTRICTED = new ModelAccess(new long[0], new DailyCounter[0]);
+
+        private final long[] denied;
+        // Per model slot: today's request counter, null when the model has no daily limit
+        private final DailyCounter[] counters;
+
+        private ModelAccess(long[] denied, DailyCounter[] counters) {
+            this.denied = denied;
+            this.counters = counters;
+        }
+
+        boolean isAllowed(int index) {
+            int word = index >>> 6;
+            return word >= denied.length || (denied[word] & (1L << index)) == 0;
+        }
+
+        boolean hasLimit(int index) {
+            return index < counters.length && counters[index] != null;
+        }
+
+        boolean tryCount(int index) {
+            return !hasLimit(index) || counters[index].tryAdd(1);
+        }
+
+        void refund(int index) {
+            counters[index].add(-1);
+        }
+
+        boolean isIdle() {
+            for (DailyCounter counter : counters) {
+                if (counter != null && counter.usedToday() > 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Adopts the previous row's counters for models limited in both, taking the new limit
+         */
+        ModelAccess carryOver(ModelAccess previous, int resetIndex) {
+            int shared = Math.min(previous.counters.length, counters.length);
+            for (int index = 0; index < shared; index++) {
+                DailyCounter counter = previous.counters[index];
+                if (index != resetIndex && counter != null && counters[index] != null) {
+                    counter.setLimit(counters[index].getLimit());
+                    counters[index] = counter;
+                }
+            }
+            return this;
+        }
+    }
 }
@@ -0,0 +1,184 @@
+package com.chatai.service;
+
+import com.chatai.llm.LlmProvider;
+import com.chatai.llm.LlmProviderRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Maps a public model id to the upstream model that serves the request. A catalog entry may be
+ * backed by an equivalence group of upstream models (comma-separated groqModelId), all served
+ * by the model's provider. The router picks the member with the lowest expected wait: its
+ * time-to-first-chunk EWMA scaled by the streams it already has in flight. Admins can swap or
+ * retire backing models without any client change.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ModelRouter {
+
+    // Weight of the newest sample in the latency moving average
+    private static final double EWMA_ALPHA = 0.2;
+
+    private final ModelCatalog modelCatalog;
+    private final LlmProviderRegistry providerRegistry;
+
+    @Value("${app.model-routing.failure-penalty-ms:5000}")
+    private long failurePenaltyMillis;
+
+    @Value("${app.model-routing.initial-latency-ms:500}")
+    private long initialLatencyMillis;
+
+    private final Map<String, Backend> backends = new ConcurrentHashMap<>();
+
+    /**
+     * Resolves an enabled public model to one of its upstream models; 403 for unknown or disabled models
+     */
+    public Route route(String modelId) {
+        ModelCatalog.CatalogModel model = modelCatalog.requireEnabled(modelId);
+        LlmProvider provider = providerRegistry.get(model.provider());
+        List<String> candidates = model.upstreamModels();
+        if (candidates.size() == 1) {
+            return new Route(modelId, provider, backend(provider, candidates.get(0)));
+        }
+
+        Backend best = null;
+        double bestScore = Double.MAX_VALUE;
+        for (String upstream : candidates) {
+            Backend backend = backend(provider, upstream);
+            double score = backend.score(initialLatencyMillis);
+            if (score < bestScore) {
+                best = backend;
+                bestScore = score;
+            }
+        }
+        log.debug("Routed {} to {}/{} (score {})", modelId, provider.getName(), best.upstreamModel, bestScore);
+        return new Route(modelId, provider, best);
+    }
+
+    /**
+     * Counts the stream against its backend and feeds time-to-first-chunk back into the routing score.
+     * A stream that ends without producing anything is treated as a failure.
+     */
+    public Flux<String> track(Route route, Flux<String> stream) {
+        Backend backend = route.backend;
+        AtomicBoolean started = new AtomicBoolean();
+        AtomicBoolean sawChunk = new AtomicBoolean();
+        long[] startNanos = new long[1];
+
+        return stream
+                .doOnSubscribe(subscription -> {
+                    started.set(true);
+                    startNanos[0] = System.nanoTime();
+                    backend.inFlight.incrementAndGet();
+                })
+                .doOnNext(chunk -> {
+                    if (sawChunk.compareAndSet(false, true)) {
+                        backend.recordLatency(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos[0]));
+                    }
+                })
+                .doOnError(e -> backend.recordFailure(failurePenaltyMillis))
+                .doOnComplete(() -> {
+                    if (!sawChunk.get()) {
+                        backend.recordFailure(failurePenaltyMillis);
+                    }
+                })
+                .doFinally(signal -> {
+                    if (started.get()) {
+                        backend.inFlight.decrementAndGet();
+                    }
+                });
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        backends.forEach((key, backend) -> {
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("inFlight", backend.inFlight.get());
+            entry.put("firstChunkEwmaMillis", Math.round(backend.latencyEwmaMillis));
+            entry.put("streams", backend.streams.sum());
+            entry.put("failures", backend.failures.sum());
+            entry.put("penalized", System.nanoTime() - backend.penaltyUntilNanos < 0);
+            stats.put(key, entry);
+        });
+        return stats;
+    }
+
+    private Backend backend(LlmProvider provider, String upstreamModel) {
+        // The same upstream id on two providers is two different backends
+        return backends.computeIfAbsent(provider.getName() + "/" + upstreamModel, key -> new Backend(upstreamModel));
+    }
+
+    /**
+     * The upstream model chosen for one request
+     */
+    public static final class Route {
+        private final String modelId;
+        private final LlmProvider provider;
+        private final Backend backend;
+
+        private Route(String modelId, LlmProvider provider, Backend backend) {
+            this.modelId = modelId;
+            this.provider = provider;
+            this.backend = backend;
+        }
+
+        public String getModelId() {
+            return modelId;
+        }
+
+        public LlmProvider getProvider() {
+            return provider;
+        }
+
+        public String getUpstreamModel() {
+            return backend.upstreamModel;
+        }
+    }
+
+    private static final class Backend {
+        private final String upstreamModel;
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final LongAdder streams = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+        // 0 until the first stream is measured; score() assumes the configured initial latency until then
+        private volatile double latencyEwmaMillis;
+        // A failed backend carries its penalty for that long, then competes on latency again
+        private volatile long penaltyMillis;
+        private volatile long penaltyUntilNanos;
+
+        private Backend(String upstreamModel) {
+            this.upstreamModel = upstreamModel;
+        }
+
+        // An unmeasured backend still fills up: the prior is scaled by its in-flight streams like a measured latency
+        double score(long initialLatencyMillis) {
+            double latency = latencyEwmaMillis > 0 ? latencyEwmaMillis : initialLatencyMillis;
+            double score = latency * (1 + inFlight.get());
+            return System.nanoTime() - penaltyUntilNanos < 0 ? score + penaltyMillis : score;
+        }
+
+        synchronized void recordLatency(long millis) {
+            streams.increment();
+            latencyEwmaMillis = latencyEwmaMillis == 0 ? millis : latencyEwmaMillis + EWMA_ALPHA * (millis - latencyEwmaMillis);
+        }
+
+        synchronized void recordFailure(long penaltyMillis) {
+            failures.increment();
+            this.penaltyMillis = penaltyMillis;
+            this.penaltyUntilNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(penaltyMillis);
+        }
+    }
+}
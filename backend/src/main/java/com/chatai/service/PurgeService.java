@@ -0,0 +1,157 @@
+package com.chatai.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Physically removes soft-deleted sessions and users with set-based DELETEs.
+ * Messages are deleted in bounded id chunks, each in its own short transaction, so a
+ * large history never holds locks for long or loads entities into the persistence context.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class PurgeService {
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${app.purge.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.purge.session-batch-size:50}")
+    private int sessionBatchSize;
+
+    @Value("${app.purge.message-batch-size:1000}")
+    private int messageBatchSize;
+
+    private final AtomicBoolean running = new AtomicBoolean(false);
+    private final AtomicLong purgedSessions = new AtomicLong();
+    private final AtomicLong purgedMessages = new AtomicLong();
+    private final AtomicLong purgedUsers = new AtomicLong();
+    private volatile LocalDateTime lastRunAt;
+    private volatile long lastRunMillis;
+    private volatile String lastError;
+
+    @Scheduled(fixedDelayString = "${app.purge.fixed-delay-ms:60000}")
+    public void purgeDeleted() {
+        if (!enabled || !running.compareAndSet(false, true)) {
+            return;
+        }
+
+        long start = System.currentTimeMillis();
+        try {
+            int sessions = purgeDeletedSessions();
+            int users = purgeDeletedUsers();
+            lastError = null;
+            if (sessions > 0 || users > 0) {
+                log.info("Purged {} deleted sessions and {} deleted users", sessions, users);
+            }
+        } catch (Exception e) {
+            // Remaining rows are picked up again on the next run
+            lastError = e.getMessage();
+            log.error("Purge of deleted data failed: {}", e.getMessage());
+        } finally {
+            lastRunAt = LocalDateTime.now();
+            lastRunMillis = System.currentTimeMillis() - start;
+            running.set(false);
+        }
+    }
+
+    public Map<String, Object> getStatus() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("enabled", enabled);
+        status.put("running", running.get());
+        status.put("pendingSessions", count("SELECT COUNT(*) FROM chat_sessions WHERE deleted_at IS NOT NULL"));
+        status.put("pendingUsers", count("SELECT COUNT(*) FROM users WHERE deleted_at IS NOT NULL"));
+        status.put("purgedSessions", purgedSessions.get());
+        status.put("purgedMessages", purgedMessages.get());
+        status.put("purgedUsers", purgedUsers.get());
+        status.put("lastRunAt", lastRunAt);
+        status.put("lastRunMillis", lastRunMillis);
+        status.put("lastError", lastError);
+        return status;
+    }
+
+    private int purgeDeletedSessions() {
+        int total = 0;
+        while (true) {
+            List<Long> sessionIds = jdbcTemplate.queryForList(
+                    "SELECT id FROM chat_sessions WHERE deleted_at IS NOT NULL ORDER BY id LIMIT :limit",
+                    new MapSqlParameterSource("limit", sessionBatchSize), Long.class);
+            if (sessionIds.isEmpty()) {
+                return total;
+            }
+
+            purgeMessages(sessionIds);
+
+            // chat_session_archives rows go with the session via ON DELETE CASCADE
+            Integer deleted = transactionTemplate.execute(status -> jdbcTemplate.update(
+                    "DELETE FROM chat_sessions WHERE id IN (:ids) AND deleted_at IS NOT NULL",
+                    new MapSqlParameterSource("ids", sessionIds)));
+            purgedSessions.addAndGet(deleted != null ? deleted : 0);
+            total += sessionIds.size();
+        }
+    }
+
+    private void purgeMessages(List<Long> sessionIds) {
+        MapSqlParameterSource params = new MapSqlParameterSource("sessionIds", sessionIds)
+                .addValue("limit", messageBatchSize);
+
+        while (true) {
+            List<Long> messageIds = jdbcTemplate.queryForList(
+                    "SELECT id FROM chat_messages WHERE chat_session_id IN (:sessionIds) LIMIT :limit",
+                    params, Long.class);
+            if (messageIds.isEmpty()) {
+                return;
+            }
+
+            // No FK cascade on the partitioned table, so reasoning rows are removed explicitly first
+            Integer deleted = transactionTemplate.execute(status -> {
+                MapSqlParameterSource ids = new MapSqlParameterSource("ids", messageIds);
+                jdbcTemplate.update("DELETE FROM chat_message_reasoning WHERE chat_message_id IN (:ids)", ids);
+                return jdbcTemplate.update("DELETE FROM chat_messages WHERE id IN (:ids)", ids);
+            });
+            purgedMessages.addAndGet(deleted != null ? deleted : 0);
+        }
+    }
+
+    private int purgeDeletedUsers() {
+        // Only users whose sessions are already gone; the rest wait for the next run
+        List<Long> userIds = jdbcTemplate.queryForList(
+                "SELECT u.id FROM users u WHERE u.deleted_at IS NOT NULL " +
+                "AND NOT EXISTS (SELECT 1 FROM chat_sessions cs WHERE cs.user_id = u.id) LIMIT :limit",
+                new MapSqlParameterSource("limit", sessionBatchSize), Long.class);
+        if (userIds.isEmpty()) {
+            return 0;
+        }
+
+        transactionTemplate.executeWithoutResult(status -> {
+            MapSqlParameterSource ids = new MapSqlParameterSource("ids", userIds);
+            jdbcTemplate.update("DELETE FROM api_tokens WHERE user_id IN (:ids)", ids);
+            jdbcTemplate.update("DELETE FROM user_model_permissions WHERE user_id IN (:ids)", ids);
+            jdbcTemplate.update("DELETE FROM user_roles WHERE user_id IN (:ids)", ids);
+            jdbcTemplate.update("DELETE FROM users WHERE id IN (:ids)", ids);
+        });
+        purgedUsers.addAndGet(userIds.size());
+        return userIds.size();
+    }
+
+    private long count(String sql) {
+        Long value = jdbcTemplate.getJdbcTemplate().queryForObject(sql, Long.class);
+        return value != null ? value : 0;
+    }
+}
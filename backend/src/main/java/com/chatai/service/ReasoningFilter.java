@@ -0,0 +1,206 @@
+package com.chatai.service;
+
+import com.chatai.dto.GroqRequest;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Controls how much reasoning reaches the client (ChatRequest.reasoning):
+ * "full" streams it as before, "summary" sends one short excerpt instead, "hidden" sends none.
+ * Where the upstream model supports it the choice is pushed to the provider (Groq's
+ * reasoning_format / include_reasoning); everything else is filtered from the chunks here.
+ * History still records reasoning unless app.reasoning.record-hidden is off.
+ */
+@Component
+@Slf4j
+public class ReasoningFilter {
+
+    public static final String FULL = "full";
+    public static final String SUMMARY = "summary";
+    public static final String HIDDEN = "hidden";
+
+    private static final String THINK_OPEN = "<think>";
+    private static final String THINK_CLOSE = "</think>";
+
+    private final ObjectMapper objectMapper;
+    private final boolean recordHidden;
+    private final int summaryChars;
+    private final Set<String> formatModels;
+    private final Set<String> includeModels;
+
+    public ReasoningFilter(ObjectMapper objectMapper,
+                           @Value("${app.reasoning.record-hidden:true}") boolean recordHidden,
+                           @Value("${app.reasoning.summary-chars:280}") int summaryChars,
+                           @Value("${app.reasoning.format-models:}") Set<String> formatModels,
+                           @Value("${app.reasoning.include-models:}") Set<String> includeModels) {
+        this.objectMapper = objectMapper;
+        this.recordHidden = recordHidden;
+        this.summaryChars = summaryChars;
+        this.formatModels = formatModels;
+        this.includeModels = includeModels;
+    }
+
+    public static boolean isFull(String mode) {
+        return mode == null || FULL.equals(mode);
+    }
+
+    /**
+     * Asks the provider for reasoning in a separate field when it will be filtered here, or not at all
+     * when nobody needs it. Full mode leaves the request as it was.
+     */
+    public void configureUpstream(GroqRequest request, String upstreamModel, String mode) {
+        if (isFull(mode)) {
+            return;
+        }
+        boolean needed = SUMMARY.equals(mode) || recordHidden;
+        if (formatModels.contains(upstreamModel)) {
+            request.setReasoning_format(needed ? "parsed" : "hidden");
+        } else if (includeModels.contains(upstreamModel) && !needed) {
+            request.setInclude_reasoning(false);
+        }
+    }
+
+    /**
+     * Removes reasoning from the chunks the client receives; for summary mode an excerpt goes out
+     * as one delta.reasoning chunk before the first answer text
+     */
+    public Flux<String> apply(String mode, Flux<String> chunks) {
+        if (isFull(mode)) {
+            return chunks;
+        }
+        return Flux.defer(() -> {
+            StreamState state = new StreamState(SUMMARY.equals(mode));
+            return chunks.concatMapIterable(state::filter)
+                    .concatWith(Mono.fromSupplier(state::pendingSummary));
+        });
+    }
+
+    private final class StreamState {
+        private final boolean summarize;
+        private final StringBuilder reasoning = new StringBuilder();
+        private boolean summarySent;
+        private boolean inThink;
+
+        private StreamState(boolean summarize) {
+            this.summarize = summarize;
+        }
+
+        List<String> filter(String chunk) {
+            List<String> frames = new ArrayList<>();
+            // Most chunks of the answer carry no reasoning and pass untouched
+            if (!inThink && !chunk.contains("\"reasoning\"") && !chunk.contains(THINK_OPEN)) {
+                if (chunk.contains("\"content\"") || chunk.contains("[DONE]")) {
+                    addSummary(frames);
+                }
+                frames.add(chunk);
+                return frames;
+            }
+
+            for (String line : chunk.split("\n")) {
+                String data = line.trim();
+                if (!data.startsWith("data: ")) {
+                    continue;
+                }
+                String payload = data.substring(6);
+                JsonNode node;
+                try {
+                    node = objectMapper.readTree(payload);
+                } catch (Exception e) {
+                    addSummary(frames);
+                    frames.add(data + "\n\n");
+                    continue;
+                }
+                JsonNode choice = node.path("choices").path(0);
+                if (!(choice.path("delta") instanceof ObjectNode delta)) {
+                    frames.add(data + "\n\n");
+                    continue;
+                }
+
+                JsonNode removed = delta.remove("reasoning");
+                if (removed != null && !removed.isNull()) {
+                    collect(removed.asText());
+                }
+                String content = splitThinking(delta.path("content").asText(""));
+                if (content.isEmpty()) {
+                    delta.remove("content");
+                } else {
+                    delta.put("content", content);
+                    addSummary(frames);
+                }
+
+                // Reasoning-only deltas disappear entirely; role, finish and usage chunks stay
+                if (delta.isEmpty() && !choice.hasNonNull("finish_reason") && !node.has("usage") && !node.has("x_groq")) {
+                    continue;
+                }
+                frames.add("data: " + node + "\n\n");
+            }
+            return frames;
+        }
+
+        // Inline think blocks are usually spread over many deltas
+        private String splitThinking(String content) {
+            StringBuilder answer = new StringBuilder();
+            String rest = content;
+            while (!rest.isEmpty()) {
+                String tag = inThink ? THINK_CLOSE : THINK_OPEN;
+                int at = rest.indexOf(tag);
+                String part = at < 0 ? rest : rest.substring(0, at);
+                if (inThink) {
+                    collect(part);
+                } else {
+                    answer.append(part);
+                }
+                if (at < 0) {
+                    break;
+                }
+                inThink = !inThink;
+                rest = rest.substring(at + tag.length());
+            }
+            return answer.toString();
+        }
+
+        private void collect(String text) {
+            // Only what the excerpt can use is kept
+            if (summarize && !summarySent && reasoning.length() <= summaryChars) {
+                reasoning.append(text);
+            }
+        }
+
+        private void addSummary(List<String> frames) {
+            String summary = pendingSummary();
+            if (summary != null) {
+                frames.add(summary);
+            }
+        }
+
+        String pendingSummary() {
+            if (!summarize || summarySent || reasoning.toString().isBlank()) {
+                return null;
+            }
+            summarySent = true;
+            ObjectNode chunk = objectMapper.createObjectNode();
+            chunk.put("reasoning_summary", true);
+            chunk.putArray("choices").addObject().put("index", 0)
+                    .putObject("delta").put("reasoning", excerpt(reasoning.toString().strip()));
+            return "data: " + chunk + "\n\n";
+        }
+
+        private String excerpt(String text) {
+            if (text.length() <= summaryChars) {
+                return text;
+            }
+            int cut = text.lastIndexOf(' ', summaryChars);
+            return text.substring(0, cut > summaryChars / 2 ? cut : summaryChars) + "…";
+        }
+    }
+}
@@ -1,86 +1,183 @@
 package com.chatai.service;
 
-import com.chatai.entity.User;
 import com.chatai.repository.UserRepository;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
-import java.time.LocalDateTime;
+import java.sql.Timestamp;
+import java.time.Duration;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * In-memory daily request quotas: one {@link DailyCounter} per user, so check-and-increment
+ * is a single CAS and a new day resets it implicitly. Counters are written behind to
+ * users.requests_used_today in a batched UPDATE.
+ */
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class RequestLimitService {
-    
+
+    private static final String FLUSH_SQL =
+        "UPDATE users SET requests_used_today = ?, last_request_reset = ? WHERE id = ?";
+
     private final UserRepository userRepository;
-    
-    @Transactional(readOnly = true)
-    public boolean canMakeRequest(Long userId) {
-        User user = userRepository.findById(userId)
-                .orElseThrow(() -> new RuntimeException("User not found"));
-        
-        // Admin has unlimited requests
-        if (user.getDailyRequestLimit() == -1) {
-            return true;
+    private final JdbcTemplate jdbcTemplate;
+
+    private final Map<Long, DailyCounter> quotas = new ConcurrentHashMap<>();
+    private final Set<Long> dirty = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Checks the daily limit and counts the request in one atomic step
+     */
+    public boolean tryAcquire(Long userId) {
+        while (true) {
+            DailyCounter quota = getQuota(userId);
+            if (quota.isUnlimited()) {
+                return true;
+            }
+            if (!quota.tryAdd(1)) {
+                return false;
+            }
+
+            // The entry may have been evicted concurrently; count again on the live one
+            if (quotas.get(userId) == quota) {
+                dirty.add(userId);
+                log.debug("User {} request count: {}/{}", userId, quota.usedToday(), quota.getLimit());
+                return true;
+            }
         }
-        
-        // Check if it's a new day - if so, assume reset will happen
-        LocalDate today = LocalDate.now();
-        LocalDateTime lastReset = user.getLastRequestReset();
-        boolean isNewDay = lastReset == null || lastReset.toLocalDate().isBefore(today);
-        
-        int currentUsage = isNewDay ? 0 : user.getRequestsUsedToday();
-        return currentUsage < user.getDailyRequestLimit();
     }
-    
-    @Transactional
-    public void incrementRequestCount(Long userId) {
-        User user = userRepository.findById(userId)
-                .orElseThrow(() -> new RuntimeException("User not found"));
-        
-        // Don't count requests for admin
-        if (user.getDailyRequestLimit() == -1) {
+
+    /**
+     * Gives back a request counted by {@link #tryAcquire} when the turn failed before it started
+     */
+    public void release(Long userId) {
+        DailyCounter quota = quotas.get(userId);
+        if (quota != null && !quota.isUnlimited()) {
+            quota.add(-1);
+            dirty.add(userId);
+        }
+    }
+
+    public int getRemainingRequests(Long userId) {
+        DailyCounter quota = getQuota(userId);
+        if (quota.isUnlimited()) {
+            return (int) DailyCounter.UNLIMITED;
+        }
+        return (int) Math.max(0, quota.getLimit() - quota.usedToday());
+    }
+
+    public int getRequestsUsedToday(Long userId) {
+        return (int) getQuota(userId).usedToday();
+    }
+
+    public long getSecondsUntilReset() {
+        LocalDateTime now = LocalDateTime.now();
+        return Math.max(1, Duration.between(now, now.toLocalDate().plusDays(1).atStartOfDay()).getSeconds());
+    }
+
+    /**
+     * Applies an admin limit change to the live counter without touching usage
+     */
+    public void updateLimit(Long userId, int dailyLimit) {
+        DailyCounter quota = quotas.get(userId);
+        if (quota != null) {
+            quota.setLimit(dailyLimit);
+        }
+    }
+
+    /**
+     * Admin reset; written right away since JPA saves of the user leave the write-behind columns alone
+     */
+    public void resetUsage(Long userId) {
+        jdbcTemplate.update(FLUSH_SQL, 0, Timestamp.valueOf(LocalDate.now().atStartOfDay()), userId);
+        DailyCounter quota = quotas.get(userId);
+        if (quota != null) {
+            quota.reset();
+            dirty.add(userId);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.user-limits.flush-interval-ms:5000}")
+    public void flush() {
+        if (dirty.isEmpty()) {
             return;
         }
-        
-        // Check if reset is needed and do it in one operation
-        LocalDate today = LocalDate.now();
-        LocalDateTime lastReset = user.getLastRequestReset();
-        boolean needsReset = lastReset == null || lastReset.toLocalDate().isBefore(today);
-        
-        if (needsReset) {
-            user.setRequestsUsedToday(1); // Reset to 1 (this request)
-            user.setLastRequestReset(LocalDateTime.now());
-            log.debug("Reset daily request counter for user: {} and incremented to 1", user.getUsername());
-        } else {
-            user.setRequestsUsedToday(user.getRequestsUsedToday() + 1);
+
+        Timestamp today = Timestamp.valueOf(LocalDate.now().atStartOfDay());
+        List<Object[]> batch = new ArrayList<>();
+        for (Long userId : dirty) {
+            dirty.remove(userId);
+            DailyCounter quota = quotas.get(userId);
+            if (quota != null) {
+                batch.add(new Object[] { quota.usedToday(), today, userId });
+            }
+        }
+
+        try {
+            jdbcTemplate.batchUpdate(FLUSH_SQL, batch);
+            log.debug("Flushed request counters for {} users", batch.size());
+        } catch (Exception e) {
+            // Counters stay in memory; mark them again so the next run retries
+            batch.forEach(row -> dirty.add((Long) row[2]));
+            log.error("Failed to flush request counters: {}", e.getMessage());
         }
-        
-        userRepository.save(user);
-        
-        log.debug("User {} request count: {}/{}", 
-                user.getUsername(), user.getRequestsUsedToday(), user.getDailyRequestLimit());
     }
-    
-    @Transactional(readOnly = true)
-    public int getRemainingRequests(Long userId) {
-        User user = userRepository.findById(userId)
-                .orElseThrow(() -> new RuntimeException("User not found"));
-        
-        // Admin has unlimited requests
-        if (user.getDailyRequestLimit() == -1) {
-            return -1;
+
+    /**
+     * Set-based daily reset; in-memory counters roll over on their own via the packed day
+     */
+    @Scheduled(cron = "${app.user-limits.reset-cron:0 0 0 * * *}")
+    public void resetDailyCounters() {
+        flush();
+
+        int updated = jdbcTemplate.update(
+                "UPDATE users SET requests_used_today = 0, last_request_reset = ? WHERE requests_used_today <> 0",
+                Timestamp.valueOf(LocalDateTime.now()));
+
+        // Drop counters untouched since yesterday so the map only holds active users
+        quotas.entrySet().removeIf(entry -> entry.getValue().isStale() && !dirty.contains(entry.getKey()));
+
+        log.info("Daily request counters reset for {} users", updated);
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+    }
+
+    private DailyCounter getQuota(Long userId) {
+        DailyCounter quota = quotas.get(userId);
+        if (quota != null) {
+            return quota;
         }
-        
-        // Check if it's a new day without modifying data
-        LocalDate today = LocalDate.now();
-        LocalDateTime lastReset = user.getLastRequestReset();
-        boolean isNewDay = lastReset == null || lastReset.toLocalDate().isBefore(today);
-        
-        int currentUsage = isNewDay ? 0 : user.getRequestsUsedToday();
-        return Math.max(0, user.getDailyRequestLimit() - currentUsage);
+        // Loaded outside the map so a slow query never blocks other users' bins
+        DailyCounter loaded = loadQuota(userId);
+        DailyCounter existing = quotas.putIfAbsent(userId, loaded);
+        return existing != null ? existing : loaded;
+    }
+
+    private DailyCounter loadQuota(Long userId) {
+        Object[] row = userRepository.findQuotaStateRaw(userId).stream()
+                .findFirst()
+                .orElseThrow(() -> new RuntimeException("User not found"));
+
+        int limit = row[0] != null ? ((Number) row[0]).intValue() : 100;
+        int used = row[1] != null ? ((Number) row[1]).intValue() : 0;
+        LocalDateTime lastReset = (LocalDateTime) row[2];
+
+        // A counter from a previous day is simply not carried over
+        return new DailyCounter(limit, lastReset != null ? lastReset.toLocalDate() : null, used);
     }
 }
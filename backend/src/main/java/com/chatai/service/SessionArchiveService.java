@@ -0,0 +1,210 @@
+package com.chatai.service;
+
+import com.chatai.entity.ChatMessage;
+import com.chatai.entity.ChatMessageReasoning;
+import com.chatai.entity.ChatSession;
+import com.chatai.entity.ChatSessionArchive;
+import com.chatai.repository.ChatMessageReasoningRepository;
+import com.chatai.repository.ChatMessageRepository;
+import com.chatai.repository.ChatSessionArchiveRepository;
+import com.chatai.repository.ChatSessionRepository;
+import com.chatai.storage.ArchivedSessionPayload;
+import com.chatai.storage.MessageCompressionCodec;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Hot/cold tiering: sessions idle longer than app.archive.idle-days are packed into a single
+ * compressed blob in chat_session_archives and their rows removed from chat_messages.
+ * Archived sessions are rehydrated (with their original message ids) the next time they are opened.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class SessionArchiveService {
+    
+    private static final String INSERT_MESSAGE_SQL =
+        "INSERT INTO chat_messages (id, chat_session_id, role, content, has_reasoning, model_used, tokens_used, is_partial, created_at) " +
+        "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    
+    private static final String INSERT_REASONING_SQL =
+        "INSERT INTO chat_message_reasoning (chat_message_id, thinking, created_at) VALUES (?, ?, ?)";
+    
+    private final ChatSessionRepository chatSessionRepository;
+    private final ChatMessageRepository chatMessageRepository;
+    private final ChatMessageReasoningRepository chatMessageReasoningRepository;
+    private final ChatSessionArchiveRepository chatSessionArchiveRepository;
+    private final MessageCompressionCodec messageCompressionCodec;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    
+    @Value("${app.archive.enabled:true}")
+    private boolean enabled;
+    
+    @Value("${app.archive.idle-days:7}")
+    private int idleDays;
+    
+    @Value("${app.archive.batch-size:100}")
+    private int batchSize;
+    
+    @Scheduled(cron = "${app.archive.cron:0 30 3 * * *}")
+    public void archiveIdleSessions() {
+        if (!enabled) {
+            return;
+        }
+        
+        LocalDateTime cutoff = LocalDateTime.now().minusDays(idleDays);
+        int archived = 0;
+        int failed = 0;
+        
+        List<Long> sessionIds;
+        do {
+            sessionIds = chatSessionRepository.findIdleSessionIds(cutoff, PageRequest.of(0, batchSize));
+            for (Long sessionId : sessionIds) {
+                try {
+                    // One transaction per session keeps locks and undo log small
+                    if (Boolean.TRUE.equals(transactionTemplate.execute(status -> archiveSession(sessionId, cutoff)))) {
+                        archived++;
+                    }
+                } catch (Exception e) {
+                    failed++;
+                    log.error("Failed to archive session {}: {}", sessionId, e.getMessage());
+                }
+            }
+        } while (sessionIds.size() == batchSize && failed == 0);
+        
+        log.info("Session archiver finished: {} archived, {} failed (idle since {})", archived, failed, cutoff);
+    }
+    
+    /**
+     * Restores an archived session into the live tables. No-op for live sessions.
+     */
+    public void rehydrateIfArchived(ChatSession session) {
+        if (session.getArchivedAt() == null) {
+            return;
+        }
+        
+        transactionTemplate.executeWithoutResult(status -> {
+            // Another request may have rehydrated it already while we waited for the lock
+            chatSessionArchiveRepository.findByIdForUpdate(session.getId())
+                    .ifPresent(this::restoreArchive);
+            chatSessionRepository.markArchived(session.getId(), null);
+        });
+        
+        session.setArchivedAt(null);
+        log.info("Rehydrated archived session {}", session.getId());
+    }
+    
+    /**
+     * Returns false when the session became active (or was archived or deleted) since it was selected.
+     */
+    private boolean archiveSession(Long sessionId, LocalDateTime cutoff) {
+        if (chatSessionRepository.lockIdleSession(sessionId, cutoff).isEmpty()) {
+            return false;
+        }
+        
+        List<ChatMessage> messages = chatMessageRepository.findByChatSessionIdOrderByCreatedAtAsc(sessionId);
+        
+        List<Long> reasoningIds = messages.stream()
+                .filter(message -> Boolean.TRUE.equals(message.getHasReasoning()))
+                .map(ChatMessage::getId)
+                .collect(Collectors.toList());
+        Map<Long, String> reasoning = chatMessageReasoningRepository.findAllById(reasoningIds).stream()
+                .collect(Collectors.toMap(ChatMessageReasoning::getMessageId, ChatMessageReasoning::getThinking));
+        
+        ArchivedSessionPayload payload = new ArchivedSessionPayload();
+        for (ChatMessage message : messages) {
+            payload.getIds().add(message.getId());
+            payload.getRoles().add(message.getRole().name());
+            payload.getContents().add(message.getContent());
+            payload.getReasoning().add(reasoning.get(message.getId()));
+            payload.getModels().add(message.getModelUsed());
+            payload.getTokens().add(message.getTokensUsed());
+            payload.getPartial().add(Boolean.TRUE.equals(message.getPartial()));
+            payload.getCreatedAt().add(message.getCreatedAt());
+        }
+        
+        try {
+            chatSessionArchiveRepository.save(ChatSessionArchive.builder()
+                    .chatSession(chatSessionRepository.getReferenceById(sessionId))
+                    .messageCount(messages.size())
+                    .payload(objectMapper.writeValueAsString(payload))
+                    .build());
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to serialize session archive: " + e.getMessage(), e);
+        }
+        
+        if (!reasoningIds.isEmpty()) {
+            chatMessageReasoningRepository.deleteByMessageIdIn(reasoningIds);
+        }
+        if (!payload.getIds().isEmpty()) {
+            chatMessageRepository.deleteBySessionIdAndIdIn(sessionId, payload.getIds());
+        }
+        chatSessionRepository.markArchived(sessionId, LocalDateTime.now());
+        return true;
+    }
+    
+    private void restoreArchive(ChatSessionArchive archive) {
+        ArchivedSessionPayload payload;
+        try {
+            payload = objectMapper.readValue(archive.getPayload(), ArchivedSessionPayload.class);
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to read session archive: " + e.getMessage(), e);
+        }
+        
+        Long sessionId = archive.getSessionId();
+        List<Object[]> messageRows = new ArrayList<>();
+        List<Object[]> reasoningRows = new ArrayList<>();
+        
+        for (int i = 0; i < payload.getIds().size(); i++) {
+            String thinking = payload.getReasoning().get(i);
+            Timestamp createdAt = toTimestamp(payload.getCreatedAt().get(i));
+            
+            // Original ids are kept so client delta sync cursors stay valid
+            messageRows.add(new Object[] {
+                payload.getIds().get(i),
+                sessionId,
+                payload.getRoles().get(i),
+                messageCompressionCodec.encode(payload.getContents().get(i)),
+                thinking != null,
+                payload.getModels().get(i),
+                payload.getTokens().get(i),
+                i < payload.getPartial().size() && Boolean.TRUE.equals(payload.getPartial().get(i)),
+                createdAt
+            });
+            
+            if (thinking != null) {
+                reasoningRows.add(new Object[] {
+                    payload.getIds().get(i),
+                    messageCompressionCodec.encode(thinking),
+                    createdAt
+                });
+            }
+        }
+        
+        jdbcTemplate.batchUpdate(INSERT_MESSAGE_SQL, messageRows);
+        if (!reasoningRows.isEmpty()) {
+            jdbcTemplate.batchUpdate(INSERT_REASONING_SQL, reasoningRows);
+        }
+        chatSessionArchiveRepository.delete(archive);
+    }
+    
+    private Timestamp toTimestamp(LocalDateTime dateTime) {
+        return dateTime != null ? Timestamp.valueOf(dateTime) : null;
+    }
+}
@@ -0,0 +1,151 @@
+package com.chatai.service;
+
+import com.chatai.config.GroqConfig;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+
+/**
+ * Merges the tiny per-token SSE frames of an answer into one frame per time window
+ * (groq.streaming.chunk-delay) or byte threshold (groq.streaming.buffer-size), whichever comes
+ * first. Frames up to the first token go out immediately so time-to-first-token is unchanged.
+ * Only consecutive frames of the same event are merged: raw payloads are plain concatenations of
+ * "data: ...\n\n" frames, which clients already split, and compact "c"/"r" deltas join into longer
+ * text. Other events flush what is pending and go out as they are. Both limits can be overridden
+ * per model under groq.streaming.models.
+ */
+@Component
+@RequiredArgsConstructor
+public class StreamCoalescer {
+
+    private final GroqConfig groqConfig;
+
+    private final Scheduler scheduler = Schedulers.parallel();
+
+    private final LongAdder framesIn = new LongAdder();
+    private final LongAdder framesOut = new LongAdder();
+
+    /**
+     * @param isToken recognizes the first frame that carries answer text; everything up to it is not delayed
+     */
+    public Flux<ServerSentEvent<String>> coalesce(String modelId, Flux<ServerSentEvent<String>> frames,
+                                                  Predicate<ServerSentEvent<String>> isToken) {
+        GroqConfig.Streaming streaming = groqConfig.getStreaming();
+        GroqConfig.Window override = modelId != null ? streaming.getModels().get(modelId) : null;
+        long windowMillis = override != null && override.getChunkDelay() != null ? override.getChunkDelay() : streaming.getChunkDelay();
+        int maxBytes = override != null && override.getBufferSize() != null ? override.getBufferSize() : streaming.getBufferSize();
+        if (windowMillis <= 0) {
+            return frames;
+        }
+
+        return Flux.<ServerSentEvent<String>>create(sink -> {
+            Batch batch = new Batch(sink, windowMillis, maxBytes, isToken);
+            Disposable subscription = frames.subscribe(batch::add, batch::error, batch::complete);
+            // Cancellation from the client side reaches the upstream through here
+            sink.onDispose(() -> {
+                subscription.dispose();
+                batch.cancelTimer();
+            });
+        });
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        long in = framesIn.sum();
+        long out = framesOut.sum();
+        stats.put("framesIn", in);
+        stats.put("framesOut", out);
+        stats.put("framesPerFlush", out > 0 ? Math.round(in * 100.0 / out) / 100.0 : 0);
+        return stats;
+    }
+
+    private static boolean isMergeable(ServerSentEvent<String> frame) {
+        return frame.data() != null && (frame.event() == null || StreamFrameEncoder.isCompactText(frame));
+    }
+
+    private final class Batch {
+        private final FluxSink<ServerSentEvent<String>> sink;
+        private final long windowMillis;
+        private final int maxBytes;
+        private final Predicate<ServerSentEvent<String>> isToken;
+        private final StringBuilder pending = new StringBuilder();
+        private String pendingEvent;
+        private boolean firstTokenSent;
+        private Disposable timer;
+
+        private Batch(FluxSink<ServerSentEvent<String>> sink, long windowMillis, int maxBytes,
+                      Predicate<ServerSentEvent<String>> isToken) {
+            this.sink = sink;
+            this.windowMillis = windowMillis;
+            this.maxBytes = maxBytes;
+            this.isToken = isToken;
+        }
+
+        // Upstream signals and the window timer run on different threads
+        synchronized void add(ServerSentEvent<String> frame) {
+            framesIn.increment();
+            if (!firstTokenSent) {
+                firstTokenSent = isToken.test(frame);
+                emit(frame);
+                return;
+            }
+            if (!isMergeable(frame)) {
+                flush();
+                emit(frame);
+                return;
+            }
+            if (!pending.isEmpty() && !Objects.equals(pendingEvent, frame.event())) {
+                flush();
+            }
+            pendingEvent = frame.event();
+            pending.append(frame.data());
+            if (pending.length() >= maxBytes) {
+                flush();
+            } else if (timer == null) {
+                timer = scheduler.schedule(this::flush, windowMillis, TimeUnit.MILLISECONDS);
+            }
+        }
+
+        synchronized void flush() {
+            cancelTimer();
+            if (!pending.isEmpty()) {
+                emit(ServerSentEvent.builder(pending.toString()).event(pendingEvent).build());
+                pending.setLength(0);
+            }
+        }
+
+        synchronized void complete() {
+            flush();
+            sink.complete();
+        }
+
+        synchronized void error(Throwable error) {
+            flush();
+            sink.error(error);
+        }
+
+        synchronized void cancelTimer() {
+            if (timer != null) {
+                timer.dispose();
+                timer = null;
+            }
+        }
+
+        private void emit(ServerSentEvent<String> frame) {
+            framesOut.increment();
+            sink.next(frame);
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package com.chatai.service;
+
+import com.chatai.llm.LlmProvider;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Turns the provider's chunks into the SSE frames a client asked for (ChatRequest.streamFormat).
+ * "raw" forwards each chunk as before. "compact" sends only the text: event "c" for answer
+ * deltas, "r" for reasoning deltas (delta.reasoning or inline &lt;think&gt; blocks), then one
+ * final "u" event with model, finish reason and usage. The session id goes out as event "s".
+ * A stream whose upstream failed ends with event "e" in either format.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class StreamFrameEncoder {
+
+    public static final String FORMAT_RAW = "raw";
+    public static final String FORMAT_COMPACT = "compact";
+
+    public static final String EVENT_CONTENT = "c";
+    public static final String EVENT_REASONING = "r";
+    public static final String EVENT_USAGE = "u";
+    public static final String EVENT_SESSION = "s";
+    public static final String EVENT_ERROR = "e";
+
+    private static final String THINK_OPEN = "<think>";
+    private static final String THINK_CLOSE = "</think>";
+
+    private final ObjectMapper objectMapper;
+
+    public static boolean isCompact(String format) {
+        return FORMAT_COMPACT.equals(format);
+    }
+
+    public ServerSentEvent<String> sessionFrame(String format, Long sessionId) {
+        if (isCompact(format)) {
+            return ServerSentEvent.builder(sessionId.toString()).event(EVENT_SESSION).build();
+        }
+        return ServerSentEvent.builder("data: SESSION_ID:" + sessionId + "\n\n").build();
+    }
+
+    // The cause stays in the server log; clients only learn that the answer was cut off
+    public ServerSentEvent<String> errorFrame(String format) {
+        String data = isCompact(format) ? "Stream failed" : "data: STREAM_ERROR\n\n";
+        return ServerSentEvent.builder(data).event(EVENT_ERROR).build();
+    }
+
+    public Flux<ServerSentEvent<String>> encode(String format, LlmProvider provider, String modelId, Flux<String> chunks) {
+        if (!isCompact(format)) {
+            return chunks.map(chunk -> ServerSentEvent.builder(chunk).build());
+        }
+        return Flux.defer(() -> {
+            CompactState state = new CompactState(provider, modelId);
+            return chunks.concatMapIterable(state::convert)
+                    .concatWith(Mono.fromSupplier(state::usageFrame));
+        });
+    }
+
+    /**
+     * Whether a frame carries answer or reasoning text in compact format
+     */
+    public static boolean isCompactText(ServerSentEvent<String> frame) {
+        return EVENT_CONTENT.equals(frame.event()) || EVENT_REASONING.equals(frame.event());
+    }
+
+    private final class CompactState {
+        private final LlmProvider provider;
+        private final String modelId;
+        private boolean inThink;
+        private JsonNode usage;
+        private String finishReason;
+
+        private CompactState(LlmProvider provider, String modelId) {
+            this.provider = provider;
+            this.modelId = modelId;
+        }
+
+        // A chunk may hold several "data: ..." lines
+        List<ServerSentEvent<String>> convert(String chunk) {
+            List<ServerSentEvent<String>> frames = new ArrayList<>();
+            for (String line : chunk.split("\n")) {
+                String data = line.trim();
+                if (!data.startsWith("data: ") || data.equals("data: [DONE]")) {
+                    continue;
+                }
+                JsonNode node;
+                try {
+                    node = objectMapper.readTree(data.substring(6));
+                } catch (Exception e) {
+                    log.warn("Skipping unparseable stream chunk: {}", e.getMessage());
+                    continue;
+                }
+
+                JsonNode reported = provider.extractUsage(node);
+                if (reported != null) {
+                    usage = reported;
+                }
+                JsonNode choice = node.path("choices").path(0);
+                if (choice.hasNonNull("finish_reason")) {
+                    finishReason = choice.get("finish_reason").asText();
+                }
+                JsonNode delta = choice.path("delta");
+                addText(frames, EVENT_REASONING, delta.path("reasoning").asText(""));
+                splitThinking(frames, delta.path("content").asText(""));
+            }
+            return frames;
+        }
+
+        // Models that inline their reasoning wrap it in think tags, usually spread over many deltas
+        private void splitThinking(List<ServerSentEvent<String>> frames, String content) {
+            String rest = content;
+            while (!rest.isEmpty()) {
+                String tag = inThink ? THINK_CLOSE : THINK_OPEN;
+                int at = rest.indexOf(tag);
+                if (at < 0) {
+                    addText(frames, inThink ? EVENT_REASONING : EVENT_CONTENT, rest);
+                    return;
+                }
+                addText(frames, inThink ? EVENT_REASONING : EVENT_CONTENT, rest.substring(0, at));
+                inThink = !inThink;
+                rest = rest.substring(at + tag.length());
+            }
+        }
+
+        private void addText(List<ServerSentEvent<String>> frames, String event, String text) {
+            if (!text.isEmpty()) {
+                frames.add(ServerSentEvent.builder(text).event(event).build());
+            }
+        }
+
+        ServerSentEvent<String> usageFrame() {
+            ObjectNode meta = objectMapper.createObjectNode();
+            meta.put("model", modelId);
+            meta.put("finish_reason", finishReason);
+            meta.set("usage", usage);
+            return ServerSentEvent.builder(meta.toString()).event(EVENT_USAGE).build();
+        }
+    }
+}
@@ -0,0 +1,247 @@
+package com.chatai.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Decouples an answer's generation from the HTTP connection that asked for it. The upstream
+ * stream of a turn is consumed exactly once into a bounded replay buffer; every SSE frame
+ * carries an id ("turn:seq"), so a dropped client (or a second tab) can re-attach with
+ * Last-Event-ID and receive only what it missed, without another upstream call.
+ * Finished turns stay attachable for a short retention window. Once the last client has been
+ * gone for the detach grace period, the upstream subscription is cancelled.
+ */
+@Service
+@Slf4j
+public class StreamRelayService {
+
+    // Sent in place of frames that already fell out of the buffer; the client reloads the message from history
+    static final String GAP_FRAME = "data: REPLAY_GAP\n\n";
+
+    private final int bufferFrames;
+    private final long retentionMillis;
+    private final Duration detachGrace;
+
+    // Oldest first; a new turn does not drop an older one that is still generating
+    private final Map<Long, List<TurnStream>> turnsBySession = new ConcurrentHashMap<>();
+    private final AtomicLong turnSequence = new AtomicLong();
+
+    private final LongAdder turnsStarted = new LongAdder();
+    private final LongAdder reattached = new LongAdder();
+    private final LongAdder gaps = new LongAdder();
+    private final LongAdder abandoned = new LongAdder();
+    private final LongAdder stopped = new LongAdder();
+
+    public StreamRelayService(@Value("${app.stream-resume.buffer-frames:4096}") int bufferFrames,
+                              @Value("${app.stream-resume.retention-ms:60000}") long retentionMillis,
+                              @Value("${app.stream-resume.detach-grace-ms:15000}") long detachGraceMillis) {
+        this.bufferFrames = bufferFrames;
+        this.retentionMillis = retentionMillis;
+        this.detachGrace = Duration.ofMillis(detachGraceMillis);
+    }
+
+    /**
+     * Starts consuming the turn's upstream right away and returns the first client's view of it.
+     * onUpstreamDone runs when generation ends or is cancelled for lack of clients.
+     */
+    public Flux<ServerSentEvent<String>> start(Long userId, Long sessionId, Flux<ServerSentEvent<String>> upstream,
+                                               Runnable onUpstreamDone) {
+        TurnStream turn = new TurnStream(Long.toString(turnSequence.incrementAndGet(), 36), userId, bufferFrames);
+        // A newer turn of the same session supersedes finished ones; live ones stay cancellable and attachable
+        turnsBySession.compute(sessionId, (id, turns) -> {
+            List<TurnStream> kept = new ArrayList<>();
+            if (turns != null) {
+                turns.stream().filter(older -> older.finishedAt == 0).forEach(kept::add);
+            }
+            kept.add(turn);
+            return List.copyOf(kept);
+        });
+        turnsStarted.increment();
+
+        turn.upstream = upstream
+                .doFinally(signal -> {
+                    turn.finishedAt = System.currentTimeMillis();
+                    if (signal == SignalType.CANCEL) {
+                        // Late re-attachers get what was buffered, then the end of the stream
+                        turn.complete();
+                    }
+                    onUpstreamDone.run();
+                })
+                .subscribe(turn::publish, turn::fail, turn::complete);
+
+        return turn.attach(0);
+    }
+
+    /**
+     * Attaches to the turn lastEventId belongs to if it is still held, otherwise to the session's newest
+     * turn from its start, replaying frames after lastEventId; empty when there is nothing to attach to
+     */
+    public Optional<Flux<ServerSentEvent<String>>> attach(Long userId, Long sessionId, String lastEventId) {
+        List<TurnStream> turns = turnsBySession.getOrDefault(sessionId, List.of());
+        if (turns.isEmpty()) {
+            return Optional.empty();
+        }
+
+        TurnStream turn = turns.get(turns.size() - 1);
+        long afterSeq = 0;
+        int separator = lastEventId != null ? lastEventId.indexOf(':') : -1;
+        if (separator > 0) {
+            String turnId = lastEventId.substring(0, separator);
+            // Ids from a turn that is gone mean the client missed the newest one entirely
+            for (TurnStream candidate : turns) {
+                if (candidate.turnId.equals(turnId)) {
+                    turn = candidate;
+                    try {
+                        afterSeq = Long.parseLong(lastEventId.substring(separator + 1));
+                    } catch (NumberFormatException e) {
+                        afterSeq = 0;
+                    }
+                    break;
+                }
+            }
+        }
+        if (!turn.userId.equals(userId)) {
+            return Optional.empty();
+        }
+
+        reattached.increment();
+        return Optional.of(turn.attach(afterSeq));
+    }
+
+    /**
+     * Stops the session's live turns right away, on an explicit request rather than a disconnect;
+     * false when there is no live turn of this user
+     */
+    public boolean cancel(Long userId, Long sessionId) {
+        boolean cancelled = false;
+        for (TurnStream turn : turnsBySession.getOrDefault(sessionId, List.of())) {
+            if (!turn.userId.equals(userId) || turn.finishedAt != 0 || turn.upstream == null) {
+                continue;
+            }
+            stopped.increment();
+            turn.upstream.dispose();
+            cancelled = true;
+        }
+        return cancelled;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("attachableTurns", turnsBySession.values().stream().mapToInt(List::size).sum());
+        stats.put("liveTurns", turnsBySession.values().stream().flatMap(List::stream).filter(turn -> turn.finishedAt == 0).count());
+        stats.put("turnsStarted", turnsStarted.sum());
+        stats.put("reattached", reattached.sum());
+        stats.put("replayGaps", gaps.sum());
+        stats.put("attachedClients", turnsBySession.values().stream().flatMap(List::stream)
+                .mapToInt(turn -> turn.subscribers.get()).sum());
+        stats.put("abandonedTurns", abandoned.sum());
+        stats.put("stoppedTurns", stopped.sum());
+        return stats;
+    }
+
+    @Scheduled(fixedDelayString = "${app.stream-resume.sweep-interval-ms:15000}")
+    public void evictFinished() {
+        long cutoff = System.currentTimeMillis() - retentionMillis;
+        for (Long sessionId : turnsBySession.keySet()) {
+            turnsBySession.computeIfPresent(sessionId, (id, turns) -> {
+                List<TurnStream> kept = turns.stream()
+                        .filter(turn -> turn.finishedAt == 0 || turn.finishedAt >= cutoff)
+                        .toList();
+                return kept.isEmpty() ? null : kept;
+            });
+        }
+    }
+
+    private record Frame(long seq, String event, String data) {
+    }
+
+    private final class TurnStream {
+        private final String turnId;
+        private final Long userId;
+        // Ring buffer: keeps the newest capacity frames and replays them to each new subscriber
+        private final Sinks.Many<Frame> sink;
+        private final AtomicLong lastSeq = new AtomicLong();
+        private final AtomicInteger subscribers = new AtomicInteger();
+        private volatile Disposable upstream;
+        private volatile long finishedAt;
+
+        private TurnStream(String turnId, Long userId, int capacity) {
+            this.turnId = turnId;
+            this.userId = userId;
+            this.sink = Sinks.many().replay().limit(capacity);
+        }
+
+        // Called serially by the single upstream subscription
+        void publish(ServerSentEvent<String> event) {
+            sink.tryEmitNext(new Frame(lastSeq.incrementAndGet(), event.event(), event.data()));
+        }
+
+        void complete() {
+            sink.tryEmitComplete();
+        }
+
+        void fail(Throwable error) {
+            log.error("Upstream failed for turn {}: {}", turnId, error.getMessage());
+            sink.tryEmitError(error);
+        }
+
+        Flux<ServerSentEvent<String>> attach(long afterSeq) {
+            // The gap is read off the replayed seqs, since frames can be evicted while subscribing
+            Flux<ServerSentEvent<String>> frames = Flux.defer(() -> {
+                long[] previousSeq = {afterSeq};
+                return sink.asFlux()
+                        .filter(frame -> frame.seq() > afterSeq)
+                        .concatMapIterable(frame -> {
+                            ServerSentEvent<String> event = ServerSentEvent.builder(frame.data())
+                                    .id(turnId + ":" + frame.seq())
+                                    .event(frame.event())
+                                    .build();
+                            boolean gap = frame.seq() > previousSeq[0] + 1;
+                            previousSeq[0] = frame.seq();
+                            if (!gap) {
+                                return List.of(event);
+                            }
+                            gaps.increment();
+                            return List.of(ServerSentEvent.builder(GAP_FRAME).event("gap").build(), event);
+                        });
+            });
+            return frames
+                    .doOnSubscribe(subscription -> subscribers.incrementAndGet())
+                    .doFinally(signal -> detached());
+        }
+
+        private void detached() {
+            if (subscribers.decrementAndGet() > 0 || finishedAt != 0) {
+                return;
+            }
+            // Give a dropped client the grace period to re-attach before generation is abandoned
+            Mono.delay(detachGrace).subscribe(tick -> {
+                Disposable subscription = upstream;
+                if (subscribers.get() == 0 && finishedAt == 0 && subscription != null) {
+                    abandoned.increment();
+                    log.info("No client attached to turn {} for {} ms, cancelling upstream", turnId, detachGrace.toMillis());
+                    subscription.dispose();
+                }
+            });
+        }
+    }
+}
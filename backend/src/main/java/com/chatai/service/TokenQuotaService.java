@@ -0,0 +1,294 @@
+package com.chatai.service;
+
+import com.chatai.exception.RateLimitExceededException;
+import com.chatai.repository.UserModelPermissionRepository;
+import com.chatai.repository.UserRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Daily token budgets per user and per (user, model). A stream reserves its estimated cost
+ * (prompt + max_tokens) up front and is settled with the usage Groq reports at stream end.
+ * Everything runs on in-memory {@link DailyCounter}s that are written behind in batches.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class TokenQuotaService {
+
+    private static final String FLUSH_USER_SQL =
+        "UPDATE users SET tokens_used_today = ?, token_usage_date = ? WHERE id = ?";
+
+    private static final String FLUSH_MODEL_SQL =
+        "UPDATE user_model_permissions SET tokens_used_today = ?, token_usage_date = ? WHERE user_id = ? AND model_id = ?";
+
+    // Shared marker for (user, model) pairs without a permission row, i.e. without a model budget
+    private static final DailyCounter NO_MODEL_LIMIT = new DailyCounter(DailyCounter.UNLIMITED, null, 0);
+
+    private final UserRepository userRepository;
+    private final UserModelPermissionRepository permissionRepository;
+    private final RequestLimitService requestLimitService;
+    private final JdbcTemplate jdbcTemplate;
+
+    @Value("${app.user-limits.default-tokens-per-day:200000}")
+    private long defaultTokensPerDay;
+
+    private final Map<Long, DailyCounter> userCounters = new ConcurrentHashMap<>();
+    private final Map<ModelKey, DailyCounter> modelCounters = new ConcurrentHashMap<>();
+    private final Set<Long> dirtyUsers = ConcurrentHashMap.newKeySet();
+    private final Set<ModelKey> dirtyModels = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Rough token estimate (~4 characters per token) used until real usage is known
+     */
+    public static long estimateTokens(String text) {
+        return text == null ? 0 : (text.length() + 3) / 4;
+    }
+
+    /**
+     * Reserves tokens against both budgets or throws a 429 with Retry-After
+     */
+    public Reservation reserve(Long userId, String modelId, long promptTokens, long maxTokens) {
+        long estimated = promptTokens + maxTokens;
+        DailyCounter user = getUserCounter(userId);
+        DailyCounter model = getModelCounter(userId, modelId);
+
+        if (!user.tryAdd(estimated)) {
+            throw new RateLimitExceededException("Daily token limit exceeded", requestLimitService.getSecondsUntilReset());
+        }
+        // The shared no-limit marker is never counted on
+        if (model != NO_MODEL_LIMIT && !model.tryAdd(estimated)) {
+            user.add(-estimated);
+            throw new RateLimitExceededException("Daily token limit exceeded for model " + modelId,
+                    requestLimitService.getSecondsUntilReset());
+        }
+        markDirty(userId, modelId, model);
+        return new Reservation(userId, modelId, promptTokens, estimated);
+    }
+
+    /**
+     * Adds prompt tokens discovered after reserving (e.g. conversation history) without a limit check
+     */
+    public void extend(Reservation reservation, long extraPromptTokens) {
+        if (extraPromptTokens <= 0 || reservation.settled.get()) {
+            return;
+        }
+        reservation.promptTokens.addAndGet(extraPromptTokens);
+        reservation.reserved.addAndGet(extraPromptTokens);
+        adjust(reservation, extraPromptTokens);
+    }
+
+    /**
+     * Replaces the reservation with the actual usage; later calls are ignored
+     */
+    public void settle(Reservation reservation, long actualTokens) {
+        if (!reservation.settled.compareAndSet(false, true)) {
+            return;
+        }
+        long reserved = reservation.getReserved();
+        adjust(reservation, actualTokens - reserved);
+        log.debug("Settled token reservation for user {} on {}: reserved {}, used {}",
+                reservation.userId, reservation.modelId, reserved, actualTokens);
+    }
+
+    public long getTokensUsedToday(Long userId) {
+        return getUserCounter(userId).usedToday();
+    }
+
+    public void updateUserLimit(Long userId, Integer dailyTokenLimit, Integer dailyRequestLimit) {
+        DailyCounter counter = userCounters.get(userId);
+        if (counter != null) {
+            counter.setLimit(resolveUserLimit(dailyTokenLimit, dailyRequestLimit));
+        }
+    }
+
+    /**
+     * Re-reads the user's per-model token limits after an admin changed their permissions.
+     * Live counters keep their usage and only take the new limit; pairs cached as unlimited
+     * are dropped and load again on the next reservation.
+     */
+    public void refreshModelLimits(Long userId) {
+        for (Map.Entry<ModelKey, DailyCounter> entry : modelCounters.entrySet()) {
+            ModelKey key = entry.getKey();
+            if (!key.userId().equals(userId)) {
+                continue;
+            }
+            DailyCounter counter = entry.getValue();
+            if (counter == NO_MODEL_LIMIT) {
+                modelCounters.remove(key, NO_MODEL_LIMIT);
+                continue;
+            }
+            long limit = permissionRepository.findTokenQuotaStateRaw(userId, key.modelId()).stream()
+                    .findFirst()
+                    .filter(row -> row[0] != null)
+                    .map(row -> ((Number) row[0]).longValue())
+                    .orElse(DailyCounter.UNLIMITED);
+            counter.setLimit(limit);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.user-limits.flush-interval-ms:5000}")
+    public void flush() {
+        Date today = Date.valueOf(LocalDate.now());
+
+        List<Object[]> users = new ArrayList<>();
+        for (Long userId : dirtyUsers) {
+            dirtyUsers.remove(userId);
+            DailyCounter counter = userCounters.get(userId);
+            if (counter != null) {
+                users.add(new Object[] { counter.usedToday(), today, userId });
+            }
+        }
+
+        List<Object[]> models = new ArrayList<>();
+        for (ModelKey key : dirtyModels) {
+            dirtyModels.remove(key);
+            DailyCounter counter = modelCounters.get(key);
+            if (counter != null && counter != NO_MODEL_LIMIT) {
+                models.add(new Object[] { counter.usedToday(), today, key.userId(), key.modelId() });
+            }
+        }
+
+        if (users.isEmpty() && models.isEmpty()) {
+            return;
+        }
+
+        try {
+            jdbcTemplate.batchUpdate(FLUSH_USER_SQL, users);
+            jdbcTemplate.batchUpdate(FLUSH_MODEL_SQL, models);
+            log.debug("Flushed token counters for {} users and {} model permissions", users.size(), models.size());
+        } catch (Exception e) {
+            // Counters stay in memory; mark them again so the next run retries
+            users.forEach(row -> dirtyUsers.add((Long) row[2]));
+            models.forEach(row -> dirtyModels.add(new ModelKey((Long) row[2], (String) row[3])));
+            log.error("Failed to flush token counters: {}", e.getMessage());
+        }
+    }
+
+    @Scheduled(cron = "${app.user-limits.reset-cron:0 0 0 * * *}")
+    public void resetDailyCounters() {
+        flush();
+
+        Date today = Date.valueOf(LocalDate.now());
+        jdbcTemplate.update("UPDATE users SET tokens_used_today = 0, token_usage_date = ? WHERE tokens_used_today <> 0", today);
+        jdbcTemplate.update("UPDATE user_model_permissions SET tokens_used_today = 0, token_usage_date = ? WHERE tokens_used_today <> 0", today);
+
+        // Counters roll over by themselves; only drop the ones nobody touched today
+        userCounters.entrySet().removeIf(entry -> entry.getValue().isStale() && !dirtyUsers.contains(entry.getKey()));
+        modelCounters.entrySet().removeIf(entry -> entry.getValue().isStale() && !dirtyModels.contains(entry.getKey()));
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+    }
+
+    private void adjust(Reservation reservation, long delta) {
+        if (delta == 0) {
+            return;
+        }
+        getUserCounter(reservation.userId).add(delta);
+        DailyCounter model = getModelCounter(reservation.userId, reservation.modelId);
+        if (model != NO_MODEL_LIMIT) {
+            model.add(delta);
+        }
+        markDirty(reservation.userId, reservation.modelId, model);
+    }
+
+    private void markDirty(Long userId, String modelId, DailyCounter model) {
+        dirtyUsers.add(userId);
+        if (model != NO_MODEL_LIMIT) {
+            dirtyModels.add(new ModelKey(userId, modelId));
+        }
+    }
+
+    private DailyCounter getUserCounter(Long userId) {
+        DailyCounter counter = userCounters.get(userId);
+        if (counter != null) {
+            return counter;
+        }
+
+        Object[] row = userRepository.findTokenQuotaStateRaw(userId).stream()
+                .findFirst()
+                .orElseThrow(() -> new RuntimeException("User not found"));
+        long limit = resolveUserLimit((Integer) row[0], (Integer) row[1]);
+        long used = row[2] != null ? ((Number) row[2]).longValue() : 0;
+
+        DailyCounter loaded = new DailyCounter(limit, (LocalDate) row[3], used);
+        DailyCounter existing = userCounters.putIfAbsent(userId, loaded);
+        return existing != null ? existing : loaded;
+    }
+
+    private DailyCounter getModelCounter(Long userId, String modelId) {
+        ModelKey key = new ModelKey(userId, modelId);
+        DailyCounter counter = modelCounters.get(key);
+        if (counter != null) {
+            return counter;
+        }
+
+        DailyCounter loaded = permissionRepository.findTokenQuotaStateRaw(userId, modelId).stream()
+                .findFirst()
+                .filter(row -> row[0] != null)
+                .map(row -> new DailyCounter(((Number) row[0]).longValue(), (LocalDate) row[2],
+                        row[1] != null ? ((Number) row[1]).longValue() : 0))
+                .orElse(NO_MODEL_LIMIT);
+        DailyCounter existing = modelCounters.putIfAbsent(key, loaded);
+        return existing != null ? existing : loaded;
+    }
+
+    private long resolveUserLimit(Integer dailyTokenLimit, Integer dailyRequestLimit) {
+        // Admins (unlimited requests) are never token-limited either
+        if (dailyRequestLimit != null && dailyRequestLimit == DailyCounter.UNLIMITED) {
+            return DailyCounter.UNLIMITED;
+        }
+        return dailyTokenLimit != null ? dailyTokenLimit : defaultTokensPerDay;
+    }
+
+    private record ModelKey(Long userId, String modelId) {
+    }
+
+    /**
+     * Tokens held for one in-flight stream until it is settled. Extended on the request thread
+     * and settled from the stream's thread, hence the atomics.
+     */
+    public static class Reservation {
+        @Getter
+        private final Long userId;
+        @Getter
+        private final String modelId;
+        private final AtomicLong promptTokens;
+        private final AtomicLong reserved;
+        private final AtomicBoolean settled = new AtomicBoolean(false);
+
+        private Reservation(Long userId, String modelId, long promptTokens, long reserved) {
+            this.userId = userId;
+            this.modelId = modelId;
+            this.promptTokens = new AtomicLong(promptTokens);
+            this.reserved = new AtomicLong(reserved);
+        }
+
+        public long getPromptTokens() {
+            return promptTokens.get();
+        }
+
+        public long getReserved() {
+            return reserved.get();
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package com.chatai.service;
+
+import java.util.Map;
+
+/**
+ * Stats of a chat transport besides SSE (WebSocket, gRPC), listed by the admin stream stats
+ * under its name. Transports implement it so the service layer never depends on them.
+ */
+public interface TransportStats {
+    
+    String getTransportName();
+    
+    Map<String, Object> getStats();
+}
@@ -0,0 +1,27 @@
+package com.chatai.storage;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Columnar layout of an archived session: one list per message column.
+ * Grouping similar values together compresses much better than row-wise JSON.
+ */
+@Data
+@NoArgsConstructor
+public class ArchivedSessionPayload {
+    
+    private int version = 2;
+    private List<Long> ids = new ArrayList<>();
+    private List<String> roles = new ArrayList<>();
+    private List<String> contents = new ArrayList<>();
+    private List<String> reasoning = new ArrayList<>(); // null entries when a message has no reasoning
+    private List<String> models = new ArrayList<>();
+    private List<Integer> tokens = new ArrayList<>();
+    private List<Boolean> partial = new ArrayList<>(); // missing in version 1 archives
+    private List<LocalDateTime> createdAt = new ArrayList<>();
+}
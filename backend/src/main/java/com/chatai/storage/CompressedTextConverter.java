@@ -0,0 +1,28 @@
+package com.chatai.storage;
+
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+/**
+ * Transparently compresses large text columns through {@link MessageCompressionCodec}.
+ * Instantiated by Hibernate through Spring's bean container.
+ */
+@Component
+@Converter
+@RequiredArgsConstructor
+public class CompressedTextConverter implements AttributeConverter<String, byte[]> {
+    
+    private final MessageCompressionCodec codec;
+    
+    @Override
+    public byte[] convertToDatabaseColumn(String attribute) {
+        return codec.encode(attribute);
+    }
+    
+    @Override
+    public String convertToEntityAttribute(byte[] dbData) {
+        return codec.decode(dbData);
+    }
+}
@@ -0,0 +1,152 @@
+package com.chatai.storage;
+
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4FastDecompressor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * LZ4 codec for large message text (content and reasoning).
+ * Compressed values start with a header so legacy plain UTF-8 rows and new compressed rows coexist:
+ * [0xFF magic][codec id][original length, 4 bytes big-endian][LZ4 block].
+ * 0xFF never appears in valid UTF-8, so anything without the magic byte is read as plain text.
+ */
+@Component
+public class MessageCompressionCodec {
+    
+    static final byte MAGIC = (byte) 0xFF;
+    static final byte CODEC_LZ4 = 1;
+    static final int HEADER_SIZE = 6;
+    
+    // Per-thread scratch buffers above this size are not kept around
+    private static final int MAX_CACHED_SCRATCH = 1024 * 1024;
+    
+    private static final LZ4Compressor COMPRESSOR = LZ4Factory.fastestInstance().fastCompressor();
+    private static final LZ4FastDecompressor DECOMPRESSOR = LZ4Factory.fastestInstance().fastDecompressor();
+    private static final ThreadLocal<byte[]> SCRATCH = ThreadLocal.withInitial(() -> new byte[64 * 1024]);
+    
+    @Value("${app.storage.compression.threshold-bytes:512}")
+    private int thresholdBytes = 512;
+    
+    // Live space/CPU statistics on real traffic
+    private final LongAdder compressedValues = new LongAdder();
+    private final LongAdder plainValues = new LongAdder();
+    private final LongAdder rawBytes = new LongAdder();
+    private final LongAdder storedBytes = new LongAdder();
+    private final LongAdder encodeNanos = new LongAdder();
+    private final LongAdder decodedValues = new LongAdder();
+    private final LongAdder decodeNanos = new LongAdder();
+    
+    public byte[] encode(String value) {
+        if (value == null) {
+            return null;
+        }
+        
+        long start = System.nanoTime();
+        byte[] raw = value.getBytes(StandardCharsets.UTF_8);
+        byte[] stored = raw;
+        
+        if (raw.length >= thresholdBytes) {
+            int maxLength = HEADER_SIZE + COMPRESSOR.maxCompressedLength(raw.length);
+            byte[] scratch = scratch(maxLength);
+            int compressedLength = COMPRESSOR.compress(raw, 0, raw.length, scratch, HEADER_SIZE, maxLength - HEADER_SIZE);
+            
+            // Keep incompressible values plain
+            if (HEADER_SIZE + compressedLength < raw.length) {
+                scratch[0] = MAGIC;
+                scratch[1] = CODEC_LZ4;
+                writeInt(scratch, 2, raw.length);
+                stored = Arrays.copyOf(scratch, HEADER_SIZE + compressedLength);
+            }
+        }
+        
+        if (stored != raw) {
+            compressedValues.increment();
+        } else {
+            plainValues.increment();
+        }
+        rawBytes.add(raw.length);
+        storedBytes.add(stored.length);
+        encodeNanos.add(System.nanoTime() - start);
+        return stored;
+    }
+    
+    public String decode(byte[] data) {
+        if (data == null) {
+            return null;
+        }
+        
+        if (data.length < HEADER_SIZE || data[0] != MAGIC) {
+            return new String(data, StandardCharsets.UTF_8);
+        }
+        
+        if (data[1] != CODEC_LZ4) {
+            throw new IllegalStateException("Unknown compression codec: " + data[1]);
+        }
+        
+        long start = System.nanoTime();
+        int originalLength = readInt(data, 2);
+        byte[] scratch = scratch(originalLength);
+        DECOMPRESSOR.decompress(data, HEADER_SIZE, scratch, 0, originalLength);
+        String value = new String(scratch, 0, originalLength, StandardCharsets.UTF_8);
+        
+        decodedValues.increment();
+        decodeNanos.add(System.nanoTime() - start);
+        return value;
+    }
+    
+    public Map<String, Object> getStats() {
+        long compressed = compressedValues.sum();
+        long plain = plainValues.sum();
+        long raw = rawBytes.sum();
+        long stored = storedBytes.sum();
+        long encoded = compressed + plain;
+        long decoded = decodedValues.sum();
+        
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("codec", "lz4");
+        stats.put("thresholdBytes", thresholdBytes);
+        stats.put("compressedValues", compressed);
+        stats.put("plainValues", plain);
+        stats.put("rawBytes", raw);
+        stats.put("storedBytes", stored);
+        stats.put("spaceSavingPercent", raw > 0 ? Math.round((1.0 - (double) stored / raw) * 1000) / 10.0 : 0.0);
+        stats.put("avgEncodeMicros", encoded > 0 ? encodeNanos.sum() / encoded / 1000.0 : 0.0);
+        stats.put("decodedValues", decoded);
+        stats.put("avgDecodeMicros", decoded > 0 ? decodeNanos.sum() / decoded / 1000.0 : 0.0);
+        return stats;
+    }
+    
+    private byte[] scratch(int size) {
+        if (size > MAX_CACHED_SCRATCH) {
+            return new byte[size];
+        }
+        byte[] buffer = SCRATCH.get();
+        if (buffer.length < size) {
+            buffer = new byte[Math.min(MAX_CACHED_SCRATCH, Math.max(size, buffer.length * 2))];
+            SCRATCH.set(buffer);
+        }
+        return buffer;
+    }
+    
+    private static void writeInt(byte[] buffer, int offset, int value) {
+        buffer[offset] = (byte) (value >>> 24);
+        buffer[offset + 1] = (byte) (value >>> 16);
+        buffer[offset + 2] = (byte) (value >>> 8);
+        buffer[offset + 3] = (byte) value;
+    }
+    
+    private static int readInt(byte[] buffer, int offset) {
+        return ((buffer[offset] & 0xFF) << 24)
+                | ((buffer[offset + 1] & 0xFF) << 16)
+                | ((buffer[offset + 2] & 0xFF) << 8)
+                | (buffer[offset + 3] & 0xFF);
+    }
+}
@@ -0,0 +1,82 @@
+package com.chatai.web;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.Deflater;
+
+/**
+ * Reuses Deflaters (and their native zlib state) across compressed responses, so a short
+ * stream does not pay for allocating and tearing one down. Idle instances are capped.
+ */
+@Component
+public class DeflaterPool {
+
+    private final int level;
+    private final int maxIdle;
+
+    // nowrap=true for gzip (header and trailer are written by the stream), false for zlib "deflate"
+    private final Pool gzip = new Pool(true);
+    private final Pool zlib = new Pool(false);
+
+    public DeflaterPool(@Value("${app.http-compression.level:6}") int level,
+                        @Value("${app.http-compression.pool-max-idle:64}") int maxIdle) {
+        this.level = level;
+        this.maxIdle = maxIdle;
+    }
+
+    public Deflater acquire(boolean nowrap) {
+        return (nowrap ? gzip : zlib).acquire();
+    }
+
+    public void release(Deflater deflater, boolean nowrap) {
+        (nowrap ? gzip : zlib).release(deflater);
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("idle", gzip.idleCount.get() + zlib.idleCount.get());
+        stats.put("created", gzip.created.sum() + zlib.created.sum());
+        stats.put("reused", gzip.reused.sum() + zlib.reused.sum());
+        return stats;
+    }
+
+    private final class Pool {
+        private final boolean nowrap;
+        private final Queue<Deflater> idle = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger idleCount = new AtomicInteger();
+        private final LongAdder created = new LongAdder();
+        private final LongAdder reused = new LongAdder();
+
+        private Pool(boolean nowrap) {
+            this.nowrap = nowrap;
+        }
+
+        Deflater acquire() {
+            Deflater deflater = idle.poll();
+            if (deflater != null) {
+                idleCount.decrementAndGet();
+                reused.increment();
+                return deflater;
+            }
+            created.increment();
+            return new Deflater(level, nowrap);
+        }
+
+        void release(Deflater deflater) {
+            deflater.reset();
+            if (idleCount.incrementAndGet() <= maxIdle) {
+                idle.offer(deflater);
+            } else {
+                idleCount.decrementAndGet();
+                deflater.end();
+            }
+        }
+    }
+}
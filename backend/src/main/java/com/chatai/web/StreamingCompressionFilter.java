@@ -0,0 +1,359 @@
+package com.chatai.web;
+
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.List;
+import java.util.Locale;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * gzip/deflate for the chat stream and history endpoints (app.http-compression.paths), negotiated
+ * from Accept-Encoding. Every flush is a zlib SYNC_FLUSH, so each SSE frame is decodable as soon
+ * as it arrives instead of waiting in the compressor. Deflaters come from {@link DeflaterPool}.
+ * For async (SSE) responses the stream is finished on the async dispatch that completes them.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 10)
+@Slf4j
+public class StreamingCompressionFilter extends OncePerRequestFilter {
+
+    private static final String RESPONSE_ATTRIBUTE = StreamingCompressionFilter.class.getName() + ".response";
+
+    private final DeflaterPool deflaterPool;
+    private final boolean enabled;
+    private final List<String> paths;
+    private final AntPathMatcher pathMatcher = new AntPathMatcher();
+
+    public StreamingCompressionFilter(DeflaterPool deflaterPool,
+                                      @Value("${app.http-compression.enabled:true}") boolean enabled,
+                                      @Value("${app.http-compression.paths:/api/chat/stream,/api/chat/sessions/**}") List<String> paths) {
+        this.deflaterPool = deflaterPool;
+        this.enabled = enabled;
+        this.paths = paths;
+    }
+
+    @Override
+    protected boolean shouldNotFilterAsyncDispatch() {
+        // The completing async dispatch is where an SSE response gets its final block
+        return false;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        CompressingResponse compressing = (CompressingResponse) request.getAttribute(RESPONSE_ATTRIBUTE);
+        boolean firstDispatch = compressing == null;
+        if (firstDispatch) {
+            String encoding = enabled && matchesPath(request) ? negotiate(request.getHeader(HttpHeaders.ACCEPT_ENCODING)) : null;
+            if (encoding == null) {
+                filterChain.doFilter(request, response);
+                return;
+            }
+            compressing = new CompressingResponse(response, encoding);
+            request.setAttribute(RESPONSE_ATTRIBUTE, compressing);
+            response = compressing;
+        }
+
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            if (!request.isAsyncStarted()) {
+                try {
+                    compressing.finish();
+                } catch (IOException e) {
+                    // Usually the client went away before the final block
+                    log.debug("Could not finish compressed response: {}", e.getMessage());
+                    compressing.release();
+                }
+            } else if (firstDispatch) {
+                // Safety net for streams that never reach a completing dispatch (client gone, timeout)
+                CompressingResponse registered = compressing;
+                request.getAsyncContext().addListener(new AsyncListener() {
+                    @Override
+                    public void onComplete(AsyncEvent event) {
+                        registered.release();
+                    }
+
+                    @Override
+                    public void onTimeout(AsyncEvent event) {
+                    }
+
+                    @Override
+                    public void onError(AsyncEvent event) {
+                        registered.release();
+                    }
+
+                    @Override
+                    public void onStartAsync(AsyncEvent event) {
+                    }
+                });
+            }
+        }
+    }
+
+    private boolean matchesPath(HttpServletRequest request) {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        for (String pattern : paths) {
+            if (pathMatcher.match(pattern.trim(), path)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * gzip when accepted, otherwise deflate; null when neither is (or both are refused with q=0)
+     */
+    static String negotiate(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return null;
+        }
+        boolean deflate = false;
+        for (String part : acceptEncoding.split(",")) {
+            String[] tokens = part.split(";");
+            String coding = tokens[0].trim().toLowerCase(Locale.ROOT);
+            boolean refused = tokens.length > 1 && tokens[1].trim().matches("q=0(\\.0*)?");
+            if (refused) {
+                continue;
+            }
+            if (coding.equals("gzip")) {
+                return "gzip";
+            }
+            deflate |= coding.equals("deflate");
+        }
+        return deflate ? "deflate" : null;
+    }
+
+    private final class CompressingResponse extends HttpServletResponseWrapper {
+        private final String encoding;
+        private ServletOutputStream stream;
+        private CompressingOutputStream compressed;
+        private PrintWriter writer;
+
+        private CompressingResponse(HttpServletResponse response, String encoding) {
+            super(response);
+            this.encoding = encoding;
+            // Caches must keep compressed and plain variants apart, even for bodies that end up uncompressed
+            response.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() throws IOException {
+            if (stream == null) {
+                stream = open();
+            }
+            return stream;
+        }
+
+        @Override
+        public PrintWriter getWriter() throws IOException {
+            if (writer == null) {
+                writer = new PrintWriter(new OutputStreamWriter(getOutputStream(), getCharacterEncoding()));
+            }
+            return writer;
+        }
+
+        private ServletOutputStream open() throws IOException {
+            HttpServletResponse response = (HttpServletResponse) getResponse();
+            int status = response.getStatus();
+            if (response.isCommitted() || status == HttpServletResponse.SC_NO_CONTENT
+                    || status == HttpServletResponse.SC_NOT_MODIFIED || response.containsHeader(HttpHeaders.CONTENT_ENCODING)) {
+                return response.getOutputStream();
+            }
+            response.setHeader(HttpHeaders.CONTENT_ENCODING, encoding);
+            response.setContentLengthLong(-1);
+            compressed = new CompressingOutputStream(response.getOutputStream(), "gzip".equals(encoding));
+            return compressed;
+        }
+
+        // The length of the uncompressed body no longer applies
+        @Override
+        public void setContentLength(int len) {
+        }
+
+        @Override
+        public void setContentLengthLong(long len) {
+        }
+
+        @Override
+        public void setHeader(String name, String value) {
+            if (!HttpHeaders.CONTENT_LENGTH.equalsIgnoreCase(name)) {
+                super.setHeader(name, weakenEtag(name, value));
+            }
+        }
+
+        @Override
+        public void addHeader(String name, String value) {
+            if (!HttpHeaders.CONTENT_LENGTH.equalsIgnoreCase(name)) {
+                super.addHeader(name, weakenEtag(name, value));
+            }
+        }
+
+        // A strong ETag promises identical bytes, which compressed and plain variants are not
+        private String weakenEtag(String name, String value) {
+            return HttpHeaders.ETAG.equalsIgnoreCase(name) && value != null && value.startsWith("\"") ? "W/" + value : value;
+        }
+
+        @Override
+        public void flushBuffer() throws IOException {
+            if (writer != null) {
+                writer.flush();
+            }
+            if (compressed != null) {
+                compressed.flush();
+            }
+            super.flushBuffer();
+        }
+
+        void finish() throws IOException {
+            if (writer != null) {
+                writer.flush();
+            }
+            if (compressed != null) {
+                compressed.finish();
+            }
+        }
+
+        void release() {
+            if (compressed != null) {
+                compressed.release();
+            }
+        }
+    }
+
+    private final class CompressingOutputStream extends ServletOutputStream {
+        private static final byte[] GZIP_HEADER = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+
+        private final ServletOutputStream target;
+        private final boolean gzip;
+        private final CRC32 crc = new CRC32();
+        private final byte[] buffer = new byte[8192];
+        private Deflater deflater;
+        private boolean headerWritten;
+
+        private CompressingOutputStream(ServletOutputStream target, boolean gzip) {
+            this.target = target;
+            this.gzip = gzip;
+            this.deflater = deflaterPool.acquire(gzip);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public synchronized void write(byte[] bytes, int off, int len) throws IOException {
+            if (deflater == null) {
+                throw new IOException("Response stream already finished");
+            }
+            writeHeader();
+            if (gzip) {
+                crc.update(bytes, off, len);
+            }
+            deflater.setInput(bytes, off, len);
+            while (!deflater.needsInput()) {
+                drain(Deflater.NO_FLUSH);
+            }
+        }
+
+        // SYNC_FLUSH pushes everything written so far out as complete deflate blocks
+        @Override
+        public synchronized void flush() throws IOException {
+            if (deflater != null && headerWritten) {
+                int written;
+                do {
+                    written = drain(Deflater.SYNC_FLUSH);
+                } while (written == buffer.length);
+            }
+            target.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            finish();
+            target.close();
+        }
+
+        synchronized void finish() throws IOException {
+            if (deflater == null) {
+                return;
+            }
+            try {
+                writeHeader();
+                deflater.finish();
+                while (!deflater.finished()) {
+                    drain(Deflater.NO_FLUSH);
+                }
+                if (gzip) {
+                    writeIntLe((int) crc.getValue());
+                    writeIntLe((int) deflater.getBytesRead());
+                }
+                target.flush();
+            } finally {
+                release();
+            }
+        }
+
+        synchronized void release() {
+            if (deflater != null) {
+                deflaterPool.release(deflater, gzip);
+                deflater = null;
+            }
+        }
+
+        private void writeHeader() throws IOException {
+            if (!headerWritten) {
+                headerWritten = true;
+                if (gzip) {
+                    target.write(GZIP_HEADER);
+                }
+            }
+        }
+
+        private int drain(int flushMode) throws IOException {
+            int written = deflater.deflate(buffer, 0, buffer.length, flushMode);
+            if (written > 0) {
+                target.write(buffer, 0, written);
+            }
+            return written;
+        }
+
+        private void writeIntLe(int value) throws IOException {
+            target.write(value & 0xff);
+            target.write((value >> 8) & 0xff);
+            target.write((value >> 16) & 0xff);
+            target.write((value >> 24) & 0xff);
+        }
+
+        @Override
+        public boolean isReady() {
+            return target.isReady();
+        }
+
+        @Override
+        public void setWriteListener(WriteListener writeListener) {
+            target.setWriteListener(writeListener);
+        }
+    }
+}
@@ -0,0 +1,68 @@
+-- Schema as it was created by ddl-auto before migrations existed.
+-- Only runs on an empty database; existing ones are baselined past it (spring.flyway.baseline-version).
+CREATE TABLE IF NOT EXISTS roles (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    name ENUM('USER', 'ADMIN') NOT NULL,
+    CONSTRAINT uk_roles_name UNIQUE (name)
+);
+
+CREATE TABLE IF NOT EXISTS users (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    username VARCHAR(255) NOT NULL,
+    email VARCHAR(255) NOT NULL,
+    password VARCHAR(255) NOT NULL,
+    full_name VARCHAR(255),
+    is_active BIT,
+    requests_used_today INT,
+    daily_request_limit INT,
+    last_request_reset DATETIME(6),
+    created_at DATETIME(6),
+    updated_at DATETIME(6),
+    CONSTRAINT uk_users_username UNIQUE (username),
+    CONSTRAINT uk_users_email UNIQUE (email)
+);
+
+CREATE TABLE IF NOT EXISTS user_roles (
+    user_id BIGINT NOT NULL,
+    role_id BIGINT NOT NULL,
+    PRIMARY KEY (user_id, role_id),
+    CONSTRAINT fk_user_roles_user FOREIGN KEY (user_id) REFERENCES users (id),
+    CONSTRAINT fk_user_roles_role FOREIGN KEY (role_id) REFERENCES roles (id)
+);
+
+CREATE TABLE IF NOT EXISTS chat_sessions (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    title VARCHAR(255) NOT NULL,
+    model_used VARCHAR(255),
+    user_id BIGINT NOT NULL,
+    created_at DATETIME(6),
+    updated_at DATETIME(6),
+    CONSTRAINT fk_chat_sessions_user FOREIGN KEY (user_id) REFERENCES users (id)
+);
+
+CREATE TABLE IF NOT EXISTS chat_messages (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    role ENUM('USER', 'ASSISTANT', 'SYSTEM') NOT NULL,
+    content TEXT NOT NULL,
+    thinking TEXT,
+    model_used VARCHAR(255),
+    tokens_used INT,
+    chat_session_id BIGINT NOT NULL,
+    created_at DATETIME(6),
+    CONSTRAINT fk_chat_messages_session FOREIGN KEY (chat_session_id) REFERENCES chat_sessions (id)
+);
+
+CREATE TABLE IF NOT EXISTS user_model_permissions (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    user_id BIGINT NOT NULL,
+    model_id VARCHAR(255) NOT NULL,
+    model_name VARCHAR(255),
+    is_allowed BIT,
+    requests_used_today INT,
+    daily_request_limit INT,
+    last_request_reset DATETIME(6),
+    created_at DATETIME(6),
+    updated_at DATETIME(6),
+    CONSTRAINT uk_user_model_permissions_user_model UNIQUE (user_id, model_id),
+    CONSTRAINT fk_user_model_permissions_user FOREIGN KEY (user_id) REFERENCES users (id)
+);
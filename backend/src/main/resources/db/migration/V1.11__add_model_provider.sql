@@ -0,0 +1,6 @@
+-- LLM provider per model (see llm.providers); NULL keeps the model on Groq
+-- ddl-auto may already have added the column, so it is only added when missing
+SET @sql := IF(EXISTS(SELECT 1 FROM information_schema.COLUMNS
+                      WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'model_management' AND COLUMN_NAME = 'provider'),
+               'DO 0', 'ALTER TABLE model_management ADD COLUMN provider VARCHAR(50) NULL');
+PREPARE stmt FROM @sql; EXECUTE stmt; DEALLOCATE PREPARE stmt;
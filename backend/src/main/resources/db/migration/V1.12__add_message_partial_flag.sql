@@ -0,0 +1,6 @@
+-- Assistant answers are checkpointed while streaming; the flag stays set if generation was cancelled or failed
+-- ddl-auto may already have added the column, so it is only added when missing
+SET @sql := IF(EXISTS(SELECT 1 FROM information_schema.COLUMNS
+                      WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'chat_messages' AND COLUMN_NAME = 'is_partial'),
+               'DO 0', 'ALTER TABLE chat_messages ADD COLUMN is_partial BOOLEAN NOT NULL DEFAULT FALSE');
+PREPARE stmt FROM @sql; EXECUTE stmt; DEALLOCATE PREPARE stmt;
@@ -0,0 +1,30 @@
+-- Move reasoning traces out of chat_messages into a lazily loaded side table
+CREATE TABLE IF NOT EXISTS chat_message_reasoning (
+    chat_message_id BIGINT PRIMARY KEY,
+    thinking MEDIUMTEXT NOT NULL,
+    created_at DATETIME(6),
+    CONSTRAINT fk_reasoning_message FOREIGN KEY (chat_message_id) REFERENCES chat_messages(id) ON DELETE CASCADE
+);
+
+-- ddl-auto may already have added the column, so it is only added when missing
+SET @sql := IF(EXISTS(SELECT 1 FROM information_schema.COLUMNS
+                      WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'chat_messages' AND COLUMN_NAME = 'has_reasoning'),
+               'DO 0', 'ALTER TABLE chat_messages ADD COLUMN has_reasoning BOOLEAN DEFAULT FALSE');
+PREPARE stmt FROM @sql; EXECUTE stmt; DEALLOCATE PREPARE stmt;
+
+-- Copy existing reasoning and flag the owning messages, then drop the legacy column
+SET @legacy := EXISTS(SELECT 1 FROM information_schema.COLUMNS
+                      WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'chat_messages' AND COLUMN_NAME = 'thinking');
+
+SET @sql := IF(@legacy, 'INSERT IGNORE INTO chat_message_reasoning (chat_message_id, thinking, created_at)
+                         SELECT id, thinking, created_at FROM chat_messages WHERE thinking IS NOT NULL AND thinking <> ''''', 'DO 0');
+PREPARE stmt FROM @sql; EXECUTE stmt; DEALLOCATE PREPARE stmt;
+
+SET @sql := IF(@legacy, 'UPDATE chat_messages SET has_reasoning = TRUE WHERE thinking IS NOT NULL AND thinking <> ''''', 'DO 0');
+PREPARE stmt FROM @sql; EXECUTE stmt; DEALLOCATE PREPARE stmt;
+
+-- Rows written before ddl-auto added the column have it NULL
+UPDATE chat_messages SET has_reasoning = FALSE WHERE has_reasoning IS NULL;
+
+SET @sql := IF(@legacy, 'ALTER TABLE chat_messages DROP COLUMN thinking', 'DO 0');
+PREPARE stmt FROM @sql; EXECUTE stmt; DEALLOCATE PREPARE stmt;
@@ -0,0 +1,4 @@
+-- Store message text as binary so large values can be LZ4-compressed.
+-- Existing rows keep their UTF-8 bytes and are read as plain text (no header).
+ALTER TABLE chat_messages MODIFY content MEDIUMBLOB NOT NULL;
+ALTER TABLE chat_message_reasoning MODIFY thinking MEDIUMBLOB NOT NULL;
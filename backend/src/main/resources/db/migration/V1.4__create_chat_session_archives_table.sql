@@ -0,0 +1,17 @@
+-- Cold storage: one compressed columnar blob per idle session
+CREATE TABLE IF NOT EXISTS chat_session_archives (
+    chat_session_id BIGINT PRIMARY KEY,
+    message_count INT NOT NULL,
+    payload LONGBLOB NOT NULL,
+    archived_at DATETIME(6),
+    CONSTRAINT fk_archive_session FOREIGN KEY (chat_session_id) REFERENCES chat_sessions(id) ON DELETE CASCADE
+);
+
+-- ddl-auto may already have added the column, so it is only added when missing
+SET @sql := IF(EXISTS(SELECT 1 FROM information_schema.COLUMNS
+                      WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'chat_sessions' AND COLUMN_NAME = 'archived_at'),
+               'DO 0', 'ALTER TABLE chat_sessions ADD COLUMN archived_at DATETIME(6) NULL');
+PREPARE stmt FROM @sql; EXECUTE stmt; DEALLOCATE PREPARE stmt;
+
+-- Archiver scans live sessions by idle time
+CREATE INDEX idx_chat_sessions_archive_scan ON chat_sessions(archived_at, updated_at);
@@ -0,0 +1,45 @@
+-- Range-partition chat_messages by month on created_at.
+-- MySQL does not allow foreign keys on (or referencing) partitioned tables, so both
+-- FKs are dropped; reasoning rows are now removed explicitly together with their messages.
+
+-- Drop every FK on both tables: ddl-auto may have created its own next to the ones from V1.0/V1.2
+SET @sql := (SELECT CONCAT('ALTER TABLE chat_message_reasoning ', GROUP_CONCAT('DROP FOREIGN KEY ', CONSTRAINT_NAME))
+             FROM information_schema.TABLE_CONSTRAINTS
+             WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'chat_message_reasoning' AND CONSTRAINT_TYPE = 'FOREIGN KEY');
+SET @sql := IFNULL(@sql, 'DO 0');
+PREPARE stmt FROM @sql; EXECUTE stmt; DEALLOCATE PREPARE stmt;
+
+SET @sql := (SELECT CONCAT('ALTER TABLE chat_messages ', GROUP_CONCAT('DROP FOREIGN KEY ', CONSTRAINT_NAME))
+             FROM information_schema.TABLE_CONSTRAINTS
+             WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'chat_messages' AND CONSTRAINT_TYPE = 'FOREIGN KEY');
+SET @sql := IFNULL(@sql, 'DO 0');
+PREPARE stmt FROM @sql; EXECUTE stmt; DEALLOCATE PREPARE stmt;
+
+-- The partition key must be part of every unique key
+UPDATE chat_messages SET created_at = NOW(6) WHERE created_at IS NULL;
+ALTER TABLE chat_messages MODIFY created_at DATETIME(6) NOT NULL;
+ALTER TABLE chat_messages DROP PRIMARY KEY, ADD PRIMARY KEY (id, created_at);
+
+CREATE INDEX idx_chat_messages_session_created ON chat_messages(chat_session_id, created_at);
+CREATE INDEX idx_chat_messages_role_created ON chat_messages(role, created_at);
+
+-- One partition per month from the oldest message through next month, so retention can drop
+-- history month by month and current writes never land in pmax. The bounds depend on the data
+-- and the migration date, hence the generated statement.
+-- MessagePartitionService splits pmax to create future months and drops expired partitions.
+SET SESSION group_concat_max_len = 1048576;
+SET @first := DATE(DATE_FORMAT(COALESCE((SELECT MIN(created_at) FROM chat_messages), CURDATE()), '%Y-%m-01'));
+SET @last := DATE(DATE_FORMAT(CURDATE(), '%Y-%m-01')) + INTERVAL 1 MONTH;
+
+SET @sql := (WITH RECURSIVE months (bound) AS (
+                 SELECT @first
+                 UNION ALL
+                 SELECT bound + INTERVAL 1 MONTH FROM months WHERE bound < @last
+             )
+             SELECT CONCAT('ALTER TABLE chat_messages PARTITION BY RANGE COLUMNS(created_at) (',
+                           GROUP_CONCAT('PARTITION p', DATE_FORMAT(bound, '%Y%m'),
+                                        ' VALUES LESS THAN (''', bound + INTERVAL 1 MONTH, ''')'
+                                        ORDER BY bound SEPARATOR ', '),
+                           ', PARTITION pmax VALUES LESS THAN (MAXVALUE))')
+             FROM months);
+PREPARE stmt FROM @sql; EXECUTE stmt; DEALLOCATE PREPARE stmt;
@@ -0,0 +1,16 @@
+-- Soft delete markers; rows are removed later in bounded chunks by the purge job
+-- ddl-auto may already have added the column, so it is only added when missing
+SET @sql := IF(EXISTS(SELECT 1 FROM information_schema.COLUMNS
+                      WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'chat_sessions' AND COLUMN_NAME = 'deleted_at'),
+               'DO 0', 'ALTER TABLE chat_sessions ADD COLUMN deleted_at DATETIME(6) NULL');
+PREPARE stmt FROM @sql; EXECUTE stmt; DEALLOCATE PREPARE stmt;
+
+SET @sql := IF(EXISTS(SELECT 1 FROM information_schema.COLUMNS
+                      WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'users' AND COLUMN_NAME = 'deleted_at'),
+               'DO 0', 'ALTER TABLE users ADD COLUMN deleted_at DATETIME(6) NULL');
+PREPARE stmt FROM @sql; EXECUTE stmt; DEALLOCATE PREPARE stmt;
+
+-- Purge job scans deleted rows; live listings filter on user_id + deleted_at
+CREATE INDEX idx_chat_sessions_deleted ON chat_sessions(deleted_at);
+CREATE INDEX idx_chat_sessions_user_deleted ON chat_sessions(user_id, deleted_at, updated_at);
+CREATE INDEX idx_users_deleted ON users(deleted_at);
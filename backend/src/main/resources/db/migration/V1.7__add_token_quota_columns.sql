@@ -0,0 +1,31 @@
+-- Token-denominated daily quotas, written behind from in-memory counters
+-- ddl-auto may already have added the column, so it is only added when missing
+SET @sql := IF(EXISTS(SELECT 1 FROM information_schema.COLUMNS
+                      WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'users' AND COLUMN_NAME = 'daily_token_limit'),
+               'DO 0', 'ALTER TABLE users ADD COLUMN daily_token_limit INT NULL');
+PREPARE stmt FROM @sql; EXECUTE stmt; DEALLOCATE PREPARE stmt;
+
+SET @sql := IF(EXISTS(SELECT 1 FROM information_schema.COLUMNS
+                      WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'users' AND COLUMN_NAME = 'tokens_used_today'),
+               'DO 0', 'ALTER TABLE users ADD COLUMN tokens_used_today BIGINT NOT NULL DEFAULT 0');
+PREPARE stmt FROM @sql; EXECUTE stmt; DEALLOCATE PREPARE stmt;
+
+SET @sql := IF(EXISTS(SELECT 1 FROM information_schema.COLUMNS
+                      WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'users' AND COLUMN_NAME = 'token_usage_date'),
+               'DO 0', 'ALTER TABLE users ADD COLUMN token_usage_date DATE NULL');
+PREPARE stmt FROM @sql; EXECUTE stmt; DEALLOCATE PREPARE stmt;
+
+SET @sql := IF(EXISTS(SELECT 1 FROM information_schema.COLUMNS
+                      WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'user_model_permissions' AND COLUMN_NAME = 'daily_token_limit'),
+               'DO 0', 'ALTER TABLE user_model_permissions ADD COLUMN daily_token_limit INT NULL');
+PREPARE stmt FROM @sql; EXECUTE stmt; DEALLOCATE PREPARE stmt;
+
+SET @sql := IF(EXISTS(SELECT 1 FROM information_schema.COLUMNS
+                      WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'user_model_permissions' AND COLUMN_NAME = 'tokens_used_today'),
+               'DO 0', 'ALTER TABLE user_model_permissions ADD COLUMN tokens_used_today BIGINT NOT NULL DEFAULT 0');
+PREPARE stmt FROM @sql; EXECUTE stmt; DEALLOCATE PREPARE stmt;
+
+SET @sql := IF(EXISTS(SELECT 1 FROM information_schema.COLUMNS
+                      WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'user_model_permissions' AND COLUMN_NAME = 'token_usage_date'),
+               'DO 0', 'ALTER TABLE user_model_permissions ADD COLUMN token_usage_date DATE NULL');
+PREPARE stmt FROM @sql; EXECUTE stmt; DEALLOCATE PREPARE stmt;
@@ -0,0 +1,8 @@
+-- Cross-instance cache invalidation: each backend polls for rows newer than the last id it saw
+CREATE TABLE IF NOT EXISTS user_change_events (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    user_id BIGINT NOT NULL,
+    origin VARCHAR(64) NOT NULL,
+    created_at DATETIME(6) NOT NULL,
+    INDEX idx_user_change_events_created (created_at)
+);
@@ -0,0 +1,92 @@
+package com.chatai.security;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ApiTokenIndexTest {
+
+    private static final String TOKEN = ApiTokenIndex.TOKEN_PREFIX + "test-token";
+
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    private ApiTokenIndex index;
+
+    @BeforeEach
+    void setUp() {
+        // 60 requests per minute with a burst of 2
+        index = new ApiTokenIndex(jdbcTemplate, "test-secret", 60, 2);
+    }
+
+    @Test
+    void admitsBurstThenAsksToWait() throws SQLException {
+        ApiTokenIndex.Entry entry = load(60);
+
+        assertThat(index.tryAcquire(entry)).isZero();
+        assertThat(index.tryAcquire(entry)).isZero();
+        assertThat(index.tryAcquire(entry)).isEqualTo(1);
+    }
+
+    @Test
+    void usesTokenOwnRate() throws SQLException {
+        ApiTokenIndex.Entry entry = load(1);
+
+        index.tryAcquire(entry);
+        index.tryAcquire(entry);
+
+        // One request per minute: the next slot is about a minute away
+        assertThat(index.tryAcquire(entry)).isBetween(59L, 60L);
+    }
+
+    @Test
+    void refusedRequestsAreCounted() throws SQLException {
+        ApiTokenIndex.Entry entry = load(60);
+        index.tryAcquire(entry);
+        index.tryAcquire(entry);
+
+        index.tryAcquire(entry);
+        index.tryAcquire(entry);
+
+        assertThat(index.getStats()).containsEntry("rateLimited", 2L);
+    }
+
+    @Test
+    void unknownTokenIsNotActive() throws SQLException {
+        load(60);
+
+        assertThat(index.isActive(TOKEN)).isTrue();
+        assertThat(index.isActive(ApiTokenIndex.TOKEN_PREFIX + "other")).isFalse();
+        assertThat(index.lookup(ApiTokenIndex.TOKEN_PREFIX + "other")).isNull();
+    }
+
+    private ApiTokenIndex.Entry load(int requestsPerMinute) throws SQLException {
+        ResultSet rs = mock(ResultSet.class);
+        when(rs.getLong(1)).thenReturn(7L);
+        when(rs.getLong(2)).thenReturn(3L);
+        when(rs.getString(3)).thenReturn(index.hash(TOKEN));
+        when(rs.getString(4)).thenReturn("chat:read,chat:write");
+        when(rs.getInt(5)).thenReturn(requestsPerMinute);
+        when(rs.getTimestamp(8)).thenReturn(new Timestamp(System.currentTimeMillis()));
+        when(rs.getString(9)).thenReturn("client");
+        when(rs.getString(10)).thenReturn("client@example.com");
+        when(rs.getBoolean(11)).thenReturn(true);
+        when(jdbcTemplate.query(anyString(), any(RowMapper.class)))
+                .thenAnswer(invocation -> List.of(invocation.<RowMapper<?>>getArgument(1).mapRow(rs, 0)));
+
+        index.preload();
+        ApiTokenIndex.Entry entry = index.lookup(TOKEN);
+        assertThat(entry).isNotNull();
+        return entry;
+    }
+}
@@ -0,0 +1,74 @@
+package com.chatai.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BurstLimitServiceTest {
+
+    @Test
+    void admitsBurstThenAsksToWait() {
+        BurstLimitService service = new BurstLimitService(true, 60, 3, 2);
+
+        assertThat(service.tryAcquireRequest(1L)).isZero();
+        assertThat(service.tryAcquireRequest(1L)).isZero();
+        assertThat(service.tryAcquireRequest(1L)).isZero();
+
+        // One request per second at the sustained rate
+        assertThat(service.tryAcquireRequest(1L)).isEqualTo(1);
+    }
+
+    @Test
+    void usersHaveSeparateBuckets() {
+        BurstLimitService service = new BurstLimitService(true, 1, 1, 2);
+
+        assertThat(service.tryAcquireRequest(1L)).isZero();
+        assertThat(service.tryAcquireRequest(1L)).isGreaterThan(0);
+
+        assertThat(service.tryAcquireRequest(2L)).isZero();
+    }
+
+    @Test
+    void refusedRequestDoesNotUseUpTheRate() {
+        BurstLimitService service = new BurstLimitService(true, 1, 1, 2);
+        service.tryAcquireRequest(1L);
+
+        long firstWait = service.tryAcquireRequest(1L);
+        long secondWait = service.tryAcquireRequest(1L);
+
+        assertThat(secondWait).isLessThanOrEqualTo(firstWait);
+    }
+
+    @Test
+    void capsConcurrentStreams() {
+        BurstLimitService service = new BurstLimitService(true, 60, 3, 2);
+
+        assertThat(service.tryAcquireStream(1L)).isTrue();
+        assertThat(service.tryAcquireStream(1L)).isTrue();
+        assertThat(service.tryAcquireStream(1L)).isFalse();
+
+        service.releaseStream(1L);
+
+        assertThat(service.tryAcquireStream(1L)).isTrue();
+    }
+
+    @Test
+    void sweepKeepsBucketsWithOpenStreams() {
+        BurstLimitService service = new BurstLimitService(true, 60, 3, 1);
+        assertThat(service.tryAcquireStream(1L)).isTrue();
+
+        service.evictIdle();
+
+        assertThat(service.tryAcquireStream(1L)).isFalse();
+    }
+
+    @Test
+    void disabledServiceAdmitsEverything() {
+        BurstLimitService service = new BurstLimitService(false, 1, 1, 1);
+
+        for (int i = 0; i < 10; i++) {
+            assertThat(service.tryAcquireRequest(1L)).isZero();
+            assertThat(service.tryAcquireStream(1L)).isTrue();
+        }
+    }
+}
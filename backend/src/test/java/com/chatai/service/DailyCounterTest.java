@@ -0,0 +1,71 @@
+package com.chatai.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DailyCounterTest {
+
+    @Test
+    void refusesAmountsBeyondLimitWithoutCountingThem() {
+        DailyCounter counter = new DailyCounter(10, LocalDate.now(), 0);
+
+        assertThat(counter.tryAdd(6)).isTrue();
+        assertThat(counter.tryAdd(5)).isFalse();
+        assertThat(counter.tryAdd(4)).isTrue();
+
+        assertThat(counter.usedToday()).isEqualTo(10);
+    }
+
+    @Test
+    void counterFromEarlierDayReadsAsZero() {
+        DailyCounter counter = new DailyCounter(5, LocalDate.now().minusDays(1), 5);
+
+        assertThat(counter.isStale()).isTrue();
+        assertThat(counter.usedToday()).isZero();
+
+        assertThat(counter.tryAdd(5)).isTrue();
+        assertThat(counter.isStale()).isFalse();
+        assertThat(counter.usedToday()).isEqualTo(5);
+    }
+
+    @Test
+    void refundNeverDropsBelowZero() {
+        DailyCounter counter = new DailyCounter(10, LocalDate.now(), 2);
+
+        counter.add(-5);
+
+        assertThat(counter.usedToday()).isZero();
+    }
+
+    @Test
+    void refundOnNewDayStartsFromZero() {
+        DailyCounter counter = new DailyCounter(10, LocalDate.now().minusDays(1), 7);
+
+        counter.add(3);
+
+        assertThat(counter.usedToday()).isEqualTo(3);
+    }
+
+    @Test
+    void unlimitedCounterOnlyCounts() {
+        DailyCounter counter = new DailyCounter(DailyCounter.UNLIMITED, LocalDate.now(), 0);
+
+        assertThat(counter.isUnlimited()).isTrue();
+        assertThat(counter.tryAdd(1L << 30)).isTrue();
+        assertThat(counter.usedToday()).isEqualTo(1L << 30);
+    }
+
+    @Test
+    void raisedLimitAppliesToCurrentUsage() {
+        DailyCounter counter = new DailyCounter(3, LocalDate.now(), 3);
+        assertThat(counter.tryAdd(1)).isFalse();
+
+        counter.setLimit(4);
+
+        assertThat(counter.tryAdd(1)).isTrue();
+        assertThat(counter.getLimit()).isEqualTo(4);
+    }
+}
@@ -0,0 +1,102 @@
+package com.chatai.service;
+
+import com.chatai.llm.LlmProvider;
+import com.chatai.llm.LlmProviderRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ModelRouterTest {
+
+    private final ModelCatalog modelCatalog = mock(ModelCatalog.class);
+    private final LlmProviderRegistry providerRegistry = mock(LlmProviderRegistry.class);
+    private final ModelRouter router = new ModelRouter(modelCatalog, providerRegistry);
+    private final List<Disposable> openStreams = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(router, "failurePenaltyMillis", 5000L);
+        ReflectionTestUtils.setField(router, "initialLatencyMillis", 500L);
+        LlmProvider provider = mock(LlmProvider.class);
+        when(provider.getName()).thenReturn("groq");
+        when(providerRegistry.get("groq")).thenReturn(provider);
+        when(modelCatalog.requireEnabled("chat")).thenReturn(new ModelCatalog.CatalogModel("chat", "Chat", null, null,
+                true, true, 0, "fast,slow", List.of("fast", "slow"), "groq"));
+    }
+
+    @AfterEach
+    void tearDown() {
+        openStreams.forEach(Disposable::dispose);
+    }
+
+    @Test
+    void prefersMeasuredFastBackendOverUnmeasuredOne() {
+        measure("fast", 50);
+
+        assertThat(router.route("chat").getUpstreamModel()).isEqualTo("fast");
+    }
+
+    @Test
+    void unmeasuredBackendIsScaledByItsStreams() {
+        measure("fast", 50);
+        // 50 ms × 11 streams beats the 500 ms prior only while the unmeasured backend is idle
+        hold("fast", 10);
+        assertThat(router.route("chat").getUpstreamModel()).isEqualTo("slow");
+
+        hold("slow", 1);
+        assertThat(router.route("chat").getUpstreamModel()).isEqualTo("fast");
+    }
+
+    @Test
+    void failedBackendIsAvoided() {
+        measure("fast", 50);
+        router.track(routeTo("fast"), Flux.error(new RuntimeException("upstream down"))).onErrorComplete().blockLast();
+
+        assertThat(router.route("chat").getUpstreamModel()).isEqualTo("slow");
+    }
+
+    @Test
+    void emptyStreamCountsAsFailure() {
+        measure("fast", 50);
+        router.track(routeTo("fast"), Flux.empty()).blockLast();
+
+        assertThat(router.route("chat").getUpstreamModel()).isEqualTo("slow");
+    }
+
+    private void measure(String upstream, long latencyMillis) {
+        router.track(routeTo(upstream), Flux.just("chunk").delaySubscription(Duration.ofMillis(latencyMillis))).blockLast();
+    }
+
+    private void hold(String upstream, int streams) {
+        for (int i = 0; i < streams; i++) {
+            openStreams.add(router.track(routeTo(upstream), Flux.never()).subscribe());
+        }
+    }
+
+    // Routes until the wanted member comes up; the other one is held busy meanwhile
+    private ModelRouter.Route routeTo(String upstream) {
+        List<Disposable> blockers = new ArrayList<>();
+        try {
+            while (true) {
+                ModelRouter.Route route = router.route("chat");
+                if (route.getUpstreamModel().equals(upstream)) {
+                    return route;
+                }
+                blockers.add(router.track(route, Flux.never()).subscribe());
+            }
+        } finally {
+            blockers.forEach(Disposable::dispose);
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.chatai.service;
+
+import com.chatai.dto.GroqRequest;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ReasoningFilterTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void fullModeLeavesStreamAlone() {
+        ReasoningFilter filter = filter(true);
+        Flux<String> chunks = Flux.just(reasoning("why"));
+
+        assertThat(filter.apply(ReasoningFilter.FULL, chunks)).isSameAs(chunks);
+        assertThat(filter.apply(null, chunks)).isSameAs(chunks);
+    }
+
+    @Test
+    void hiddenModeDropsReasoningDeltas() {
+        List<String> out = filter(true).apply(ReasoningFilter.HIDDEN,
+                Flux.just(reasoning("secret"), content("Answer"))).collectList().block();
+
+        assertThat(out).hasSize(1);
+        assertThat(out.get(0)).doesNotContain("secret").contains("Answer");
+    }
+
+    @Test
+    void hiddenModeStripsThinkBlocksAcrossDeltas() throws Exception {
+        List<String> out = filter(true).apply(ReasoningFilter.HIDDEN,
+                Flux.just(content("<think>plan"), content(" more</think>Hi"), content(" there"))).collectList().block();
+
+        assertThat(out).hasSize(2);
+        assertThat(delta(out.get(0)).path("content").asText()).isEqualTo("Hi");
+        assertThat(delta(out.get(1)).path("content").asText()).isEqualTo(" there");
+    }
+
+    @Test
+    void summaryModeSendsExcerptBeforeAnswer() throws Exception {
+        List<String> out = filter(true).apply(ReasoningFilter.SUMMARY,
+                Flux.just(reasoning("Checking the first option "), reasoning("and then the second one"),
+                        content("Answer"))).collectList().block();
+
+        assertThat(out).hasSize(2);
+        JsonNode summary = objectMapper.readTree(out.get(0).substring(6));
+        assertThat(summary.path("reasoning_summary").asBoolean()).isTrue();
+        // Cut at a word boundary within summary-chars
+        assertThat(delta(out.get(0)).path("reasoning").asText()).isEqualTo("Checking the first…");
+        assertThat(delta(out.get(1)).path("content").asText()).isEqualTo("Answer");
+    }
+
+    @Test
+    void summaryWithoutAnswerIsSentAtEnd() throws Exception {
+        List<String> out = filter(true).apply(ReasoningFilter.SUMMARY, Flux.just(reasoning("short"))).collectList().block();
+
+        assertThat(out).hasSize(1);
+        assertThat(delta(out.get(0)).path("reasoning").asText()).isEqualTo("short");
+    }
+
+    @Test
+    void asksProviderToHideReasoningNobodyNeeds() {
+        ReasoningFilter filter = filter(false);
+        GroqRequest formatted = GroqRequest.builder().build();
+        GroqRequest included = GroqRequest.builder().build();
+
+        filter.configureUpstream(formatted, "format-model", ReasoningFilter.HIDDEN);
+        filter.configureUpstream(included, "include-model", ReasoningFilter.HIDDEN);
+
+        assertThat(formatted.getReasoning_format()).isEqualTo("hidden");
+        assertThat(included.getInclude_reasoning()).isFalse();
+    }
+
+    @Test
+    void keepsParsedReasoningWhenHistoryRecordsIt() {
+        GroqRequest request = GroqRequest.builder().build();
+
+        filter(true).configureUpstream(request, "format-model", ReasoningFilter.HIDDEN);
+
+        assertThat(request.getReasoning_format()).isEqualTo("parsed");
+    }
+
+    private ReasoningFilter filter(boolean recordHidden) {
+        return new ReasoningFilter(objectMapper, recordHidden, 20, Set.of("format-model"), Set.of("include-model"));
+    }
+
+    private JsonNode delta(String chunk) throws Exception {
+        return objectMapper.readTree(chunk.trim().substring(6)).path("choices").path(0).path("delta");
+    }
+
+    private String content(String text) {
+        return chunk("content", text);
+    }
+
+    private String reasoning(String text) {
+        return chunk("reasoning", text);
+    }
+
+    private String chunk(String field, String text) {
+        ObjectNode node = objectMapper.createObjectNode();
+        node.putArray("choices").addObject().putObject("delta").put(field, text);
+        return "data: " + node + "\n\n";
+    }
+}
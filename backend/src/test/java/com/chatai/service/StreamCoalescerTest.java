@@ -0,0 +1,96 @@
+package com.chatai.service;
+
+import com.chatai.config.GroqConfig;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.codec.ServerSentEvent;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+class StreamCoalescerTest {
+
+    private static final String C = StreamFrameEncoder.EVENT_CONTENT;
+    private static final String R = StreamFrameEncoder.EVENT_REASONING;
+
+    private final GroqConfig groqConfig = new GroqConfig();
+
+    @Test
+    void sendsFirstTokenAloneThenMergesSameEvent() {
+        List<ServerSentEvent<String>> out = coalesce(coalescer(60_000, 8192),
+                frame(StreamFrameEncoder.EVENT_SESSION, "7"), frame(C, "a"), frame(C, "b"), frame(C, "c"));
+
+        assertThat(out).extracting(ServerSentEvent::event, ServerSentEvent::data).containsExactly(
+                tuple(StreamFrameEncoder.EVENT_SESSION, "7"),
+                tuple(C, "a"),
+                tuple(C, "bc"));
+    }
+
+    @Test
+    void neverMergesAcrossEvents() {
+        List<ServerSentEvent<String>> out = coalesce(coalescer(60_000, 8192),
+                frame(C, "a"), frame(R, "x"), frame(R, "y"), frame(C, "b"), frame(StreamFrameEncoder.EVENT_USAGE, "{}"));
+
+        assertThat(out).extracting(ServerSentEvent::event, ServerSentEvent::data).containsExactly(
+                tuple(C, "a"),
+                tuple(R, "xy"),
+                tuple(C, "b"),
+                tuple(StreamFrameEncoder.EVENT_USAGE, "{}"));
+    }
+
+    @Test
+    void flushesWhenBufferIsFull() {
+        List<ServerSentEvent<String>> out = coalesce(coalescer(60_000, 4),
+                frame(C, "first"), frame(C, "ab"), frame(C, "cd"), frame(C, "e"));
+
+        assertThat(out).extracting(ServerSentEvent::data).containsExactly("first", "abcd", "e");
+    }
+
+    @Test
+    void flushesWhenWindowEnds() {
+        StreamCoalescer coalescer = coalescer(20, 8192);
+        Flux<ServerSentEvent<String>> frames = Flux.just(frame(C, "a"), frame(C, "b"))
+                .concatWith(Flux.just(frame(C, "c")).delaySubscription(Duration.ofMillis(200)));
+
+        List<ServerSentEvent<String>> out = coalescer.coalesce("model", frames, StreamFrameEncoder::isCompactText)
+                .collectList().block();
+
+        assertThat(out).extracting(ServerSentEvent::data).containsExactly("a", "b", "c");
+    }
+
+    @Test
+    void zeroWindowPassesFramesThrough() {
+        Flux<ServerSentEvent<String>> frames = Flux.just(frame(C, "a"), frame(C, "b"));
+
+        assertThat(coalescer(0, 8192).coalesce("model", frames, StreamFrameEncoder::isCompactText)).isSameAs(frames);
+    }
+
+    @Test
+    void modelOverrideWins() {
+        StreamCoalescer coalescer = coalescer(60_000, 8192);
+        GroqConfig.Window window = new GroqConfig.Window();
+        window.setChunkDelay(0L);
+        groqConfig.getStreaming().getModels().put("fast", window);
+        Flux<ServerSentEvent<String>> frames = Flux.just(frame(C, "a"));
+
+        assertThat(coalescer.coalesce("fast", frames, StreamFrameEncoder::isCompactText)).isSameAs(frames);
+    }
+
+    private StreamCoalescer coalescer(long windowMillis, int maxBytes) {
+        groqConfig.getStreaming().setChunkDelay(windowMillis);
+        groqConfig.getStreaming().setBufferSize(maxBytes);
+        return new StreamCoalescer(groqConfig);
+    }
+
+    @SafeVarargs
+    private static List<ServerSentEvent<String>> coalesce(StreamCoalescer coalescer, ServerSentEvent<String>... frames) {
+        return coalescer.coalesce("model", Flux.just(frames), StreamFrameEncoder::isCompactText).collectList().block();
+    }
+
+    private static ServerSentEvent<String> frame(String event, String data) {
+        return ServerSentEvent.builder(data).event(event).build();
+    }
+}
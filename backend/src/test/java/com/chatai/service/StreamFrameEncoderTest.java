@@ -0,0 +1,103 @@
+package com.chatai.service;
+
+import com.chatai.llm.LlmProvider;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.codec.ServerSentEvent;
+import reactor.core.publisher.Flux;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class StreamFrameEncoderTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final StreamFrameEncoder encoder = new StreamFrameEncoder(objectMapper);
+    private final LlmProvider provider = mock(LlmProvider.class);
+
+    @Test
+    void splitsThinkTagsSpreadOverDeltas() {
+        List<ServerSentEvent<String>> frames = compact(
+                chunk("<think>First"),
+                chunk(" step</think>The"),
+                chunk(" answer"));
+
+        assertThat(frames).extracting(ServerSentEvent::event, ServerSentEvent::data).containsExactly(
+                tuple(StreamFrameEncoder.EVENT_REASONING, "First"),
+                tuple(StreamFrameEncoder.EVENT_REASONING, " step"),
+                tuple(StreamFrameEncoder.EVENT_CONTENT, "The"),
+                tuple(StreamFrameEncoder.EVENT_CONTENT, " answer"),
+                tuple(StreamFrameEncoder.EVENT_USAGE, "{\"model\":\"model\",\"finish_reason\":null,\"usage\":null}"));
+    }
+
+    @Test
+    void handlesSeveralThinkBlocksInOneDelta() {
+        List<ServerSentEvent<String>> frames = compact(chunk("a<think>b</think>c<think>d</think>"));
+
+        assertThat(frames).extracting(ServerSentEvent::event, ServerSentEvent::data).startsWith(
+                tuple(StreamFrameEncoder.EVENT_CONTENT, "a"),
+                tuple(StreamFrameEncoder.EVENT_REASONING, "b"),
+                tuple(StreamFrameEncoder.EVENT_CONTENT, "c"),
+                tuple(StreamFrameEncoder.EVENT_REASONING, "d"));
+        assertThat(frames).hasSize(5);
+    }
+
+    @Test
+    void sendsReasoningFieldAsReasoning() {
+        ObjectNode node = objectMapper.createObjectNode();
+        node.putArray("choices").addObject().putObject("delta").put("reasoning", "why");
+
+        List<ServerSentEvent<String>> frames = compact("data: " + node + "\n\n");
+
+        assertThat(frames.get(0).event()).isEqualTo(StreamFrameEncoder.EVENT_REASONING);
+        assertThat(frames.get(0).data()).isEqualTo("why");
+    }
+
+    @Test
+    void reportsFinishReasonAndUsageLast() throws Exception {
+        when(provider.extractUsage(any())).thenCallRealMethod();
+        ObjectNode node = objectMapper.createObjectNode();
+        node.putArray("choices").addObject().put("finish_reason", "stop").putObject("delta");
+        node.putObject("usage").put("total_tokens", 12);
+
+        List<ServerSentEvent<String>> frames = compact(chunk("Hi"), "data: " + node + "\n\ndata: [DONE]\n\n");
+
+        ServerSentEvent<String> usage = frames.get(frames.size() - 1);
+        assertThat(usage.event()).isEqualTo(StreamFrameEncoder.EVENT_USAGE);
+        assertThat(objectMapper.readTree(usage.data()).path("finish_reason").asText()).isEqualTo("stop");
+        assertThat(objectMapper.readTree(usage.data()).path("usage").path("total_tokens").asInt()).isEqualTo(12);
+    }
+
+    @Test
+    void rawFormatPassesChunksThrough() {
+        String chunk = chunk("<think>x</think>y");
+
+        List<ServerSentEvent<String>> frames = encoder.encode(StreamFrameEncoder.FORMAT_RAW, provider, "model",
+                Flux.just(chunk)).collectList().block();
+
+        assertThat(frames).extracting(ServerSentEvent::event, ServerSentEvent::data).containsExactly(tuple(null, chunk));
+    }
+
+    @Test
+    void errorFrameMatchesFormat() {
+        assertThat(encoder.errorFrame(StreamFrameEncoder.FORMAT_COMPACT).event()).isEqualTo(StreamFrameEncoder.EVENT_ERROR);
+        assertThat(encoder.errorFrame(StreamFrameEncoder.FORMAT_RAW).data()).startsWith("data: ");
+    }
+
+    private List<ServerSentEvent<String>> compact(String... chunks) {
+        return encoder.encode(StreamFrameEncoder.FORMAT_COMPACT, provider, "model", Flux.just(chunks))
+                .collectList().block();
+    }
+
+    private String chunk(String content) {
+        ObjectNode node = objectMapper.createObjectNode();
+        node.putArray("choices").addObject().putObject("delta").put("content", content);
+        return "data: " + node + "\n\n";
+    }
+}
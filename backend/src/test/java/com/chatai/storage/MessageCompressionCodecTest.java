@@ -0,0 +1,79 @@
+package com.chatai.storage;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class MessageCompressionCodecTest {
+
+    private final MessageCompressionCodec codec = new MessageCompressionCodec();
+
+    @Test
+    void compressesLargeValuesBehindHeader() {
+        String value = "The quick brown fox jumps over the lazy dog. ".repeat(100);
+        int rawLength = value.getBytes(StandardCharsets.UTF_8).length;
+
+        byte[] stored = codec.encode(value);
+
+        assertThat(stored.length).isLessThan(rawLength);
+        assertThat(stored[0]).isEqualTo(MessageCompressionCodec.MAGIC);
+        assertThat(stored[1]).isEqualTo(MessageCompressionCodec.CODEC_LZ4);
+        int storedLength = ((stored[2] & 0xFF) << 24) | ((stored[3] & 0xFF) << 16)
+                | ((stored[4] & 0xFF) << 8) | (stored[5] & 0xFF);
+        assertThat(storedLength).isEqualTo(rawLength);
+        assertThat(codec.decode(stored)).isEqualTo(value);
+    }
+
+    @Test
+    void roundTripsMultiByteText() {
+        String value = "Xin chào, đây là một câu trả lời dài 🤖 ".repeat(64);
+
+        assertThat(codec.decode(codec.encode(value))).isEqualTo(value);
+    }
+
+    @Test
+    void keepsValuesBelowThresholdPlain() {
+        String value = "short answer";
+
+        byte[] stored = codec.encode(value);
+
+        assertThat(stored).isEqualTo(value.getBytes(StandardCharsets.UTF_8));
+        assertThat(codec.decode(stored)).isEqualTo(value);
+    }
+
+    @Test
+    void keepsIncompressibleValuesPlain() {
+        StringBuilder value = new StringBuilder();
+        Random random = new Random(42);
+        while (value.length() < 2048) {
+            value.append((char) ('!' + random.nextInt(90)));
+        }
+
+        byte[] stored = codec.encode(value.toString());
+
+        assertThat(stored[0]).isNotEqualTo(MessageCompressionCodec.MAGIC);
+        assertThat(codec.decode(stored)).isEqualTo(value.toString());
+    }
+
+    @Test
+    void readsLegacyPlainRowsAndNulls() {
+        assertThat(codec.decode("legacy row".getBytes(StandardCharsets.UTF_8))).isEqualTo("legacy row");
+        assertThat(codec.decode(new byte[0])).isEmpty();
+        assertThat(codec.encode(null)).isNull();
+        assertThat(codec.decode(null)).isNull();
+    }
+
+    @Test
+    void rejectsUnknownCodec() {
+        byte[] stored = codec.encode("a".repeat(1024));
+        stored[1] = 9;
+
+        assertThatThrownBy(() -> codec.decode(stored))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("Unknown compression codec");
+    }
+}
@@ -0,0 +1,58 @@
+package com.chatai.web;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.zip.Deflater;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DeflaterPoolTest {
+
+    @Test
+    void reusesReleasedDeflater() {
+        DeflaterPool pool = new DeflaterPool(6, 4);
+
+        Deflater first = pool.acquire(true);
+        pool.release(first, true);
+        Deflater second = pool.acquire(true);
+
+        assertThat(second).isSameAs(first);
+        assertThat(pool.getStats()).containsEntry("created", 1L).containsEntry("reused", 1L);
+    }
+
+    @Test
+    void keepsGzipAndZlibApart() {
+        DeflaterPool pool = new DeflaterPool(6, 4);
+
+        Deflater gzip = pool.acquire(true);
+        pool.release(gzip, true);
+
+        assertThat(pool.acquire(false)).isNotSameAs(gzip);
+    }
+
+    @Test
+    void releasedDeflaterIsReset() {
+        DeflaterPool pool = new DeflaterPool(6, 4);
+        Deflater deflater = pool.acquire(false);
+        deflater.setInput(new byte[] {1, 2, 3});
+        deflater.finish();
+        deflater.deflate(new byte[64]);
+
+        pool.release(deflater, false);
+
+        assertThat(deflater.finished()).isFalse();
+        assertThat(deflater.getTotalIn()).isZero();
+    }
+
+    @Test
+    void capsIdleDeflaters() {
+        DeflaterPool pool = new DeflaterPool(6, 1);
+        Deflater first = pool.acquire(true);
+        Deflater second = pool.acquire(true);
+
+        pool.release(first, true);
+        pool.release(second, true);
+
+        assertThat(pool.getStats()).containsEntry("idle", 1);
+    }
+}
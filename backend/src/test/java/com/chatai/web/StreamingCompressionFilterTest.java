@@ -0,0 +1,38 @@
+package com.chatai.web;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StreamingCompressionFilterTest {
+
+    @Test
+    void prefersGzip() {
+        assertThat(StreamingCompressionFilter.negotiate("deflate, gzip")).isEqualTo("gzip");
+        assertThat(StreamingCompressionFilter.negotiate("gzip, deflate, br")).isEqualTo("gzip");
+    }
+
+    @Test
+    void fallsBackToDeflate() {
+        assertThat(StreamingCompressionFilter.negotiate("deflate")).isEqualTo("deflate");
+        assertThat(StreamingCompressionFilter.negotiate("gzip;q=0, deflate;q=0.5")).isEqualTo("deflate");
+    }
+
+    @Test
+    void honoursRefusals() {
+        assertThat(StreamingCompressionFilter.negotiate("gzip;q=0")).isNull();
+        assertThat(StreamingCompressionFilter.negotiate("gzip; q=0.0, deflate;q=0")).isNull();
+    }
+
+    @Test
+    void ignoresCase() {
+        assertThat(StreamingCompressionFilter.negotiate("GZip")).isEqualTo("gzip");
+    }
+
+    @Test
+    void noSupportedCoding() {
+        assertThat(StreamingCompressionFilter.negotiate(null)).isNull();
+        assertThat(StreamingCompressionFilter.negotiate("")).isNull();
+        assertThat(StreamingCompressionFilter.negotiate("br, identity")).isNull();
+    }
+}